@@ -4,6 +4,7 @@ import java.awt.Desktop;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.nio.file.FileSystems;
@@ -12,10 +13,17 @@ import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.script.ScriptEngine;
@@ -30,6 +38,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.model.Configuration;
+import org.openpnp.util.CachedScript;
 import org.openpnp.util.UiUtils;
 import org.pmw.tinylog.Logger;
 
@@ -38,6 +47,9 @@ import com.google.common.io.Files;
 import bsh.engine.BshScriptEngineFactory;
 
 public class Scripting {
+    static final int ASYNC_QUEUE_CAPACITY = 64;
+    static final Pattern ASYNC_TAG = Pattern.compile("@async\\b\\s*(\\w*)");
+
     JMenu menu;
     final ScriptEngineManager manager = new ScriptEngineManager();
     final String[] extensions;
@@ -45,6 +57,20 @@ public class Scripting {
     File eventsDirectory;
     WatchService watcher;
 
+    /**
+     * The scripts in the Events directory by the name of the event they handle, rebuilt when the
+     * directory changes. See loadEventScripts().
+     */
+    volatile Map<String, List<EventScript>> eventScripts = Collections.emptyMap();
+
+    /**
+     * Runs of asynchronous event scripts waiting for the event script thread.
+     */
+    final BlockingQueue<Runnable> asyncQueue = new ArrayBlockingQueue<>(ASYNC_QUEUE_CAPACITY);
+    final AtomicLong asyncQueued = new AtomicLong();
+    final AtomicLong asyncDropped = new AtomicLong();
+    final AtomicLong asyncFailed = new AtomicLong();
+
     public Scripting() {
         // Collect all the script filename extensions we know how to handle from the list of
         // available scripting engines.
@@ -102,11 +128,17 @@ public class Scripting {
         if (!eventsDirectory.exists()) {
             eventsDirectory.mkdirs();
         }
+        loadEventScripts();
+
+        Thread asyncThread = new Thread(this::runAsyncScripts, "Event Scripts");
+        asyncThread.setDaemon(true);
+        asyncThread.start();
 
         // Add a file watcher so that we can be notified if any scripts change
         try {
             watcher = FileSystems.getDefault().newWatchService();
             watchDirectory(getScriptsDirectory());
+            watchDirectory(eventsDirectory);
             Thread thread = new Thread(() -> {
                 for (;;) {
                     try {
@@ -115,6 +147,9 @@ public class Scripting {
                         key.pollEvents();
                         key.reset();
                         // rescan
+                        if (eventsDirectory.toPath().equals(key.watchable())) {
+                            loadEventScripts();
+                        }
                         synchronizeMenu(menu, getScriptsDirectory());
                     }
                     catch (Exception e) {
@@ -275,15 +310,9 @@ public class Scripting {
         ScriptEngine engine =
                 manager.getEngineByExtension(Files.getFileExtension(script.getName()));
 
-        engine.put("config", Configuration.get());
-        engine.put("machine", Configuration.get().getMachine());
-        engine.put("gui", MainFrame.get());
-        engine.put("scripting", this);
-
-        if (additionalGlobals != null) {
-            for (String name : additionalGlobals.keySet()) {
-                engine.put(name, additionalGlobals.get(name));
-            }
+        Map<String, Object> globals = createGlobals(additionalGlobals);
+        for (String name : globals.keySet()) {
+            engine.put(name, globals.get(name));
         }
 
         try (FileReader reader = new FileReader(script)) {
@@ -291,16 +320,279 @@ public class Scripting {
         }
     }
 
+    private Map<String, Object> createGlobals(Map<String, Object> additionalGlobals) {
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("config", Configuration.get());
+        globals.put("machine", Configuration.get().getMachine());
+        globals.put("gui", MainFrame.get());
+        globals.put("scripting", this);
+        if (additionalGlobals != null) {
+            globals.putAll(additionalGlobals);
+        }
+        return globals;
+    }
+
+    /**
+     * Returns true if there is a script in the Events directory for the event. Callers that fire
+     * an event often, such as on every camera capture, can use this to skip building the globals
+     * when nothing will use them.
+     * 
+     * @param event
+     * @return
+     */
+    public boolean hasEventScripts(String event) {
+        return eventScripts.containsKey(event);
+    }
+
+    /**
+     * Runs the scripts for the event. Scripts marked as asynchronous, see EventScript, are queued
+     * to run on the event script thread and this returns without waiting for them. The rest are
+     * run on the calling thread, and the first to fail stops the others and its exception is
+     * thrown.
+     * 
+     * @param event
+     * @param globals May be null.
+     * @throws Exception
+     */
     public void on(String event, Map<String, Object> globals) throws Exception {
         Logger.trace("Scripting.on " + event);
-        for (File script : FileUtils.listFiles(eventsDirectory, extensions, false)) {
-            if (!script.isFile()) {
+        List<EventScript> scripts = eventScripts.get(event);
+        if (scripts == null) {
+            return;
+        }
+        for (EventScript script : scripts) {
+            // Deleted since the directory was last read.
+            if (!script.getFile().isFile()) {
+                continue;
+            }
+            Logger.trace("Scripting.on found " + script.getFile().getName());
+            if (script.async == null) {
+                script.run(createGlobals(globals));
+            }
+            else {
+                runAsync(script, createGlobals(globals));
+            }
+        }
+    }
+
+    private void runAsync(EventScript script, Map<String, Object> globals) throws Exception {
+        Runnable task = () -> {
+            try {
+                script.run(globals);
+            }
+            catch (Exception e) {
+                asyncFailed.incrementAndGet();
+                Logger.warn(e, "Asynchronous event script {} failed.", script.getFile().getName());
+            }
+        };
+        asyncQueued.incrementAndGet();
+        if (script.async == AsyncPolicy.Wait) {
+            asyncQueue.put(task);
+        }
+        else if (!asyncQueue.offer(task)) {
+            asyncQueued.decrementAndGet();
+            asyncDropped.incrementAndGet();
+            Logger.warn("Event script queue is full, {} dropped.", script.getFile().getName());
+        }
+    }
+
+    private void runAsyncScripts() {
+        for (;;) {
+            try {
+                asyncQueue.take().run();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * The number of asynchronous event script runs that have been queued, including those that
+     * have since run.
+     */
+    public long getAsyncQueued() {
+        return asyncQueued.get();
+    }
+
+    /**
+     * The number of asynchronous event script runs dropped because the queue was full.
+     */
+    public long getAsyncDropped() {
+        return asyncDropped.get();
+    }
+
+    /**
+     * The number of asynchronous event script runs that threw an exception.
+     */
+    public long getAsyncFailed() {
+        return asyncFailed.get();
+    }
+
+    /**
+     * The number of asynchronous event script runs waiting to run.
+     */
+    public int getAsyncQueueLength() {
+        return asyncQueue.size();
+    }
+
+    /**
+     * Returns the scripts in the Events directory, with their run counts and times.
+     */
+    public List<EventScript> getEventScripts() {
+        List<EventScript> scripts = new ArrayList<>();
+        for (List<EventScript> eventScripts : this.eventScripts.values()) {
+            scripts.addAll(eventScripts);
+        }
+        return scripts;
+    }
+
+    /**
+     * Reads the Events directory and rebuilds the map of event names to scripts. Scripts that
+     * were already loaded are kept, so they are not compiled again unless they have changed, but
+     * their execution policy is read again.
+     */
+    synchronized void loadEventScripts() {
+        Map<File, EventScript> loaded = new HashMap<>();
+        for (List<EventScript> scripts : eventScripts.values()) {
+            for (EventScript script : scripts) {
+                loaded.put(script.getFile(), script);
+            }
+        }
+        List<File> files = new ArrayList<>(FileUtils.listFiles(eventsDirectory, extensions, false));
+        Collections.sort(files);
+        Map<String, List<EventScript>> eventScripts = new HashMap<>();
+        for (File file : files) {
+            if (!file.isFile()) {
                 continue;
             }
-            if (FilenameUtils.getBaseName(script.getName()).equals(event)) {
-                Logger.trace("Scripting.on found " + script.getName());
-                execute(script, globals);
+            EventScript script = loaded.get(file);
+            if (script == null) {
+                script = new EventScript(new CachedScript(manager, file));
+            }
+            script.async = readAsyncPolicy(file);
+            String event = FilenameUtils.getBaseName(file.getName());
+            List<EventScript> scripts = eventScripts.get(event);
+            if (scripts == null) {
+                scripts = new ArrayList<>();
+                eventScripts.put(event, scripts);
+            }
+            scripts.add(script);
+        }
+        this.eventScripts = eventScripts;
+    }
+
+    /**
+     * Looks for an @async tag in the comments at the top of the script, and returns the policy
+     * it names, or null if there is no tag and the script is to run synchronously.
+     */
+    static AsyncPolicy readAsyncPolicy(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (!(line.startsWith("//") || line.startsWith("#") || line.startsWith("/*")
+                        || line.startsWith("*"))) {
+                    break;
+                }
+                Matcher matcher = ASYNC_TAG.matcher(line);
+                if (matcher.find()) {
+                    return "wait".equalsIgnoreCase(matcher.group(1)) ? AsyncPolicy.Wait
+                            : AsyncPolicy.Drop;
+                }
+            }
+        }
+        catch (Exception e) {
+            Logger.warn(e);
+        }
+        return null;
+    }
+
+    /**
+     * What happens to an asynchronous event script when the queue is full.
+     */
+    public enum AsyncPolicy {
+        /**
+         * The run is dropped and counted, and the caller carries on.
+         */
+        Drop,
+        /**
+         * The caller waits until there is room in the queue.
+         */
+        Wait
+    }
+
+    /**
+     * A script in the Events directory. By default the script is run synchronously, on the thread
+     * that fired the event, which is needed for scripts that change the state of the machine or
+     * the job. Scripts that only report, such as logging to another system, can instead be run on
+     * the event script thread by putting an @async tag in a comment at the top of the script:
+     * 
+     * // @async
+     * 
+     * These are queued and run in order. If the queue is full the run is dropped, or with
+     * "@async wait" the caller waits for room.
+     */
+    public static class EventScript {
+        private final CachedScript script;
+        volatile AsyncPolicy async;
+
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalNs = new AtomicLong();
+        private final AtomicLong maxNs = new AtomicLong();
+
+        EventScript(CachedScript script) {
+            this.script = script;
+        }
+
+        void run(Map<String, Object> globals) throws Exception {
+            long t = System.nanoTime();
+            try {
+                script.eval(globals);
+            }
+            catch (Exception e) {
+                failures.incrementAndGet();
+                throw e;
             }
+            finally {
+                t = System.nanoTime() - t;
+                runs.incrementAndGet();
+                totalNs.addAndGet(t);
+                maxNs.accumulateAndGet(t, Math::max);
+            }
+        }
+
+        public File getFile() {
+            return script.getFile();
+        }
+
+        /**
+         * Returns the policy the script is run asynchronously with, or null if it runs
+         * synchronously.
+         */
+        public AsyncPolicy getAsyncPolicy() {
+            return async;
+        }
+
+        public long getRuns() {
+            return runs.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getAverageNs() {
+            long runs = this.runs.get();
+            return runs == 0 ? 0 : totalNs.get() / runs;
+        }
+
+        public long getMaxNs() {
+            return maxNs.get();
         }
     }
 }
@@ -251,9 +251,7 @@ public class JobPastePanel extends JPanel {
 
         @Override
         public void actionPerformed(ActionEvent arg0) {
-            for (BoardPad pad : getSelections()) {
-                boardLocation.getBoard().removeSolderPastePad(pad);
-            }
+            boardLocation.getBoard().removeSolderPastePads(getSelections());
             tableModel.fireTableDataChanged();
         }
     };
@@ -0,0 +1,309 @@
+package org.openpnp.gui.importer;
+
+import java.awt.Component;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.openpnp.gui.support.MessageBoxes;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardPad;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Package;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+
+/**
+ * Adds placements and solder paste pads to a Board as an importer reads them, so that importers
+ * don't need to hold a whole file, or everything read from it, before building the Board. The
+ * placements and pads are added to the Board in batches. Parts and Packages created along the way
+ * are kept here and only added to the Configuration by finish(), so that a file with tens of
+ * thousands of lines fires a couple of changes rather than one or more per line, and a cancelled
+ * or failed import leaves the Configuration as it was.
+ *
+ * Progress is measured in bytes read from the files opened with open() or openStream(), or up to
+ * the position of the buffers returned by map(), out of the total size of the files given to the
+ * constructor, and is reported each time a placement or pad is added or fireProgress() is called.
+ * cancel() can be called from any thread and makes the importer stop with a CancellationException
+ * at the next placement or pad it adds.
+ */
+public class BoardImport {
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    public interface ProgressListener {
+        void progress(long bytesRead, long bytesTotal);
+    }
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final Board board;
+    private final long bytesTotal;
+
+    private final List<Placement> placements = new ArrayList<>();
+    private final List<BoardPad> pads = new ArrayList<>();
+
+    /**
+     * Parts and Packages created during the import, by upper case id as in Configuration.
+     */
+    private final Map<String, Part> parts = new LinkedHashMap<>();
+    private final Map<String, Package> packages = new LinkedHashMap<>();
+
+    private ProgressListener progressListener;
+    private CountingInputStream in;
+    private ByteBuffer mapped;
+    private long bytesClosed;
+    private int permille = -1;
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param board The Board to add to.
+     * @param files The files that will be read, to measure progress against. Files that don't
+     *        exist are ignored.
+     */
+    public BoardImport(Board board, File... files) {
+        this.board = board;
+        long bytesTotal = 0;
+        for (File file : files) {
+            if (file != null && file.exists()) {
+                bytesTotal += file.length();
+            }
+        }
+        this.bytesTotal = bytesTotal;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public BufferedReader open(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(file)));
+    }
+
+    public InputStream openStream(File file) throws IOException {
+        bytesClosed += getBytesRead();
+        mapped = null;
+        in = new CountingInputStream(new FileInputStream(file));
+        return in;
+    }
+
+    /**
+     * Maps the file into memory read only. The buffer's position is taken as the number of bytes
+     * read from it.
+     */
+    public ByteBuffer map(File file) throws IOException {
+        bytesClosed += getBytesRead();
+        in = null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        return mapped;
+    }
+
+    public Part getPart(String id) {
+        Part part = parts.get(id.toUpperCase());
+        if (part == null) {
+            part = Configuration.get().getPart(id);
+        }
+        return part;
+    }
+
+    public Package getPackage(String id) {
+        Package pkg = packages.get(id.toUpperCase());
+        if (pkg == null) {
+            pkg = Configuration.get().getPackage(id);
+        }
+        return pkg;
+    }
+
+    /**
+     * Adds the Part to the Configuration when the import finishes, replacing any Part with the
+     * same id. Until then getPart() returns it.
+     */
+    public void addPart(Part part) {
+        parts.put(part.getId().toUpperCase(), part);
+    }
+
+    /**
+     * Adds the Package to the Configuration when the import finishes. Until then getPackage()
+     * returns it.
+     */
+    public void addPackage(Package pkg) {
+        packages.put(pkg.getId().toUpperCase(), pkg);
+    }
+
+    /**
+     * Returns the Part with the given id, creating it, and the Package with the given id if that
+     * doesn't exist either, if there is no such Part.
+     */
+    public Part getOrCreatePart(String partId, String packageId) {
+        Part part = getPart(partId);
+        if (part == null) {
+            part = new Part(partId);
+            Package pkg = getPackage(packageId);
+            if (pkg == null) {
+                pkg = new Package(packageId);
+                addPackage(pkg);
+            }
+            part.setPackage(pkg);
+            addPart(part);
+        }
+        return part;
+    }
+
+    public void addPlacement(Placement placement) {
+        checkCancelled();
+        placements.add(placement);
+        if (placements.size() >= BATCH_SIZE) {
+            board.addPlacements(placements);
+            placements.clear();
+        }
+        fireProgress();
+    }
+
+    public void addSolderPastePad(BoardPad pad) {
+        checkCancelled();
+        pads.add(pad);
+        if (pads.size() >= BATCH_SIZE) {
+            board.addSolderPastePads(pads);
+            pads.clear();
+        }
+        fireProgress();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Adds what is left of the placements and pads to the Board, and the new Packages and Parts to
+     * the Configuration. Call on the event dispatch thread if the Configuration is in use by the
+     * GUI.
+     */
+    public void finish() {
+        board.addPlacements(placements);
+        placements.clear();
+        board.addSolderPastePads(pads);
+        pads.clear();
+        Configuration.get().addPackages(packages.values());
+        Configuration.get().addParts(parts.values());
+        packages.clear();
+        parts.clear();
+    }
+
+    /**
+     * Runs the task on a new thread while showing its progress in a ProgressMonitor, whose Cancel
+     * button cancels it. The parent is disabled until the task ends. If the task completes, this
+     * calls finish() and then done on the event dispatch thread, if it fails the error is shown and
+     * done is not called.
+     */
+    public void start(Component parent, Task task, Runnable done) {
+        ProgressMonitor monitor = new ProgressMonitor(parent, "Importing...", null, 0, 1000);
+        setProgressListener((bytesRead, bytesTotal) -> SwingUtilities.invokeLater(() -> {
+            if (monitor.isCanceled()) {
+                cancel();
+            }
+            else {
+                monitor.setProgress((int) (bytesRead * 1000 / bytesTotal));
+            }
+        }));
+        parent.setEnabled(false);
+        Thread thread = new Thread(() -> {
+            Exception error = null;
+            try {
+                task.run();
+            }
+            catch (Exception e) {
+                error = e;
+            }
+            finally {
+                closeStream();
+            }
+            Exception e = error;
+            SwingUtilities.invokeLater(() -> {
+                monitor.close();
+                parent.setEnabled(true);
+                if (e == null) {
+                    finish();
+                    done.run();
+                }
+                else if (!(e instanceof CancellationException)) {
+                    MessageBoxes.errorBox(parent, "Import Error", e);
+                }
+            });
+        }, "Board Import");
+        thread.start();
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Import cancelled.");
+        }
+    }
+
+    /**
+     * Reports the progress to the listener if it has changed. Importers that read a lot of a file
+     * without adding placements or pads, such as the libraries of an EAGLE board, call this as
+     * they read so that the progress shows and the import can be cancelled meanwhile.
+     */
+    public void fireProgress() {
+        if (progressListener == null || bytesTotal == 0) {
+            return;
+        }
+        long bytesRead = bytesClosed + getBytesRead();
+        int permille = (int) (bytesRead * 1000 / bytesTotal);
+        if (permille != this.permille) {
+            this.permille = permille;
+            progressListener.progress(bytesRead, bytesTotal);
+        }
+    }
+
+    /**
+     * Returns the number of bytes read from the file last opened or mapped.
+     */
+    private long getBytesRead() {
+        if (in != null) {
+            return in.getByteCount();
+        }
+        if (mapped != null) {
+            return mapped.position();
+        }
+        return 0;
+    }
+
+    private void closeStream() {
+        try {
+            if (in != null) {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+        }
+    }
+}
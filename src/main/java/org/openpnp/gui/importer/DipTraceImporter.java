@@ -25,11 +25,8 @@ import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -47,14 +44,10 @@ import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.border.TitledBorder;
 
-import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
-import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
-import org.openpnp.model.Package;
-import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
 
 import com.jgoodies.forms.layout.ColumnSpec;
@@ -88,11 +81,9 @@ public class DipTraceImporter implements BoardImporter {
         return board;
     }
 
-    private static List<Placement> parseFile(File file, boolean createMissingParts)
-            throws Exception {
-        BufferedReader reader =
-                new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-        ArrayList<Placement> placements = new ArrayList<>();
+    private static void parseFile(File file, boolean createMissingParts,
+            BoardImport boardImport) throws Exception {
+        BufferedReader reader = boardImport.open(file);
         String line;
         int lineCount = 0;
 
@@ -124,30 +115,15 @@ public class DipTraceImporter implements BoardImporter {
             Placement placement = new Placement(placementId);
             placement.setLocation(new Location(LengthUnit.Millimeters, placementX, placementY, 0,
                     placementRotation));
-            Configuration cfg = Configuration.get();
-            if (cfg != null && createMissingParts) {
+            if (createMissingParts) {
                 String partId = pkgName + "-" + partValue;
-                Part part = cfg.getPart(partId);
-                if (part == null) {
-                    part = new Part(partId);
-                    Package pkg = cfg.getPackage(pkgName);
-                    if (pkg == null) {
-                        pkg = new Package(pkgName);
-                        cfg.addPackage(pkg);
-                    }
-                    part.setPackage(pkg);
-
-                    cfg.addPart(part);
-                }
-                placement.setPart(part);
-
+                placement.setPart(boardImport.getOrCreatePart(partId, pkgName));
             }
 
             placement.setSide(placementLayer.charAt(0) == 'T' ? Side.Top : Side.Bottom);
-            placements.add(placement);
+            boardImport.addPlacement(placement);
         }
         reader.close();
-        return placements;
     }
 
     class Dlg extends JDialog {
@@ -253,24 +229,26 @@ public class DipTraceImporter implements BoardImporter {
 
             public void actionPerformed(ActionEvent e) {
                 fileName = new File(textFieldFileName.getText());
-                board = new Board();
-                List<Placement> placements = new ArrayList<>();
-                try {
+                boolean createMissingParts = chckbxCreateMissingParts.isSelected();
+                BoardImport boardImport = new BoardImport(new Board(), fileName);
+                boardImport.start(Dlg.this, () -> {
                     if (fileName.exists()) {
-                        placements.addAll(parseFile(fileName, chckbxCreateMissingParts.isSelected()));
-                        
+                        try {
+                            parseFile(fileName, createMissingParts, boardImport);
+                        }
+                        catch (CancellationException e1) {
+                            throw e1;
+                        }
+                        catch (Exception e1) {
+                            throw new Exception("The expected file format is the default file export in DipTrace "
+                            		+ "PCB: File -> Export -> Pick and Place. The first line indicates RefDes, Name, X (mm), Y (mm), Side, Rotate, Value."
+                            		+ "The lines that follow are data.", e1);
+                        }
                     }
-                }
-                catch (Exception e1) {
-                    MessageBoxes.errorBox(Dlg.this, "Import Error", "The expected file format is the default file export in DipTrace "
-                    		+ "PCB: File -> Export -> Pick and Place. The first line indicates RefDes, Name, X (mm), Y (mm), Side, Rotate, Value."
-                    		+ "The lines that follow are data.");
-                    return;
-                }
-                for (Placement placement : placements) {
-                    board.addPlacement(placement);
-                }
-                setVisible(false);
+                }, () -> {
+                    board = boardImport.getBoard();
+                    setVisible(false);
+                });
             }
         }
 
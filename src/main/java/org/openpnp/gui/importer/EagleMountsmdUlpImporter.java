@@ -25,10 +25,7 @@ import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -50,14 +47,10 @@ import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.border.TitledBorder;
 
-import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
-import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
-import org.openpnp.model.Package;
-import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
 
 import com.jgoodies.forms.layout.ColumnSpec;
@@ -92,9 +85,15 @@ public class EagleMountsmdUlpImporter implements BoardImporter {
 
     public static List<Placement> parseFile(File file, Side side, boolean createMissingParts)
             throws Exception {
-        BufferedReader reader =
-                new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-        ArrayList<Placement> placements = new ArrayList<>();
+        BoardImport boardImport = new BoardImport(new Board(), file);
+        parseFile(file, side, createMissingParts, boardImport);
+        boardImport.finish();
+        return boardImport.getBoard().getPlacements();
+    }
+
+    public static void parseFile(File file, Side side, boolean createMissingParts,
+            BoardImport boardImport) throws Exception {
+        BufferedReader reader = boardImport.open(file);
         String line;
         while ((line = reader.readLine()) != null) {
             line = line.trim();
@@ -114,8 +113,7 @@ public class EagleMountsmdUlpImporter implements BoardImporter {
             placement.setLocation(new Location(LengthUnit.Millimeters,
                     Double.parseDouble(fields[1]), Double.parseDouble(fields[2]), 0,
                     Double.parseDouble(fields[3])));
-            Configuration cfg = Configuration.get();
-            if (cfg != null && createMissingParts) {
+            if (createMissingParts) {
                 String value = null, packageId = null;
                 if (fields.length > 4) {
                     value = fields[4].trim();
@@ -133,27 +131,13 @@ public class EagleMountsmdUlpImporter implements BoardImporter {
                 if (value != null && !value.isEmpty()) {
                     partId += "-" + value;
                 }
-                Part part = cfg.getPart(partId);
-                if (part == null) {
-                    part = new Part(partId);
-                    Package pkg = cfg.getPackage(packageId);
-                    if (pkg == null) {
-                        pkg = new Package(packageId);
-                        cfg.addPackage(pkg);
-                    }
-                    part.setPackage(pkg);
-
-                    cfg.addPart(part);
-                }
-                placement.setPart(part);
-
+                placement.setPart(boardImport.getOrCreatePart(partId, packageId));
             }
 
             placement.setSide(side);
-            placements.add(placement);
+            boardImport.addPlacement(placement);
         }
         reader.close();
-        return placements;
     }
 
     class Dlg extends JDialog {
@@ -295,26 +279,19 @@ public class EagleMountsmdUlpImporter implements BoardImporter {
             public void actionPerformed(ActionEvent e) {
                 topFile = new File(textFieldTopFile.getText());
                 bottomFile = new File(textFieldBottomFile.getText());
-                board = new Board();
-                List<Placement> placements = new ArrayList<>();
-                try {
+                boolean createMissingParts = chckbxCreateMissingParts.isSelected();
+                BoardImport boardImport = new BoardImport(new Board(), topFile, bottomFile);
+                boardImport.start(Dlg.this, () -> {
                     if (topFile.exists()) {
-                        placements.addAll(parseFile(topFile, Side.Top,
-                                chckbxCreateMissingParts.isSelected()));
+                        parseFile(topFile, Side.Top, createMissingParts, boardImport);
                     }
                     if (bottomFile.exists()) {
-                        placements.addAll(parseFile(bottomFile, Side.Bottom,
-                                chckbxCreateMissingParts.isSelected()));
+                        parseFile(bottomFile, Side.Bottom, createMissingParts, boardImport);
                     }
-                }
-                catch (Exception e1) {
-                    MessageBoxes.errorBox(Dlg.this, "Import Error", e1);
-                    return;
-                }
-                for (Placement placement : placements) {
-                    board.addPlacement(placement);
-                }
-                setVisible(false);
+                }, () -> {
+                    board = boardImport.getBoard();
+                    setVisible(false);
+                });
             }
         }
 
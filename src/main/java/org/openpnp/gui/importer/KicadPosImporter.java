@@ -25,11 +25,7 @@ import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,14 +45,10 @@ import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.border.TitledBorder;
 
-import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
-import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
-import org.openpnp.model.Package;
-import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
 
 import com.jgoodies.forms.layout.ColumnSpec;
@@ -89,11 +81,9 @@ public class KicadPosImporter implements BoardImporter {
         return board;
     }
 
-    private static List<Placement> parseFile(File file, Side side, boolean createMissingParts)
-            throws Exception {
-        BufferedReader reader =
-                new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-        ArrayList<Placement> placements = new ArrayList<>();
+    private static void parseFile(File file, Side side, boolean createMissingParts,
+            BoardImport boardImport) throws Exception {
+        BufferedReader reader = boardImport.open(file);
         String line;
 
         // See:
@@ -132,30 +122,15 @@ public class KicadPosImporter implements BoardImporter {
             Placement placement = new Placement(placementId);
             placement.setLocation(new Location(LengthUnit.Millimeters, placementX, placementY, 0,
                     placementRotation));
-            Configuration cfg = Configuration.get();
-            if (cfg != null && createMissingParts) {
+            if (createMissingParts) {
                 String partId = pkgName + "-" + partValue;
-                Part part = cfg.getPart(partId);
-                if (part == null) {
-                    part = new Part(partId);
-                    Package pkg = cfg.getPackage(pkgName);
-                    if (pkg == null) {
-                        pkg = new Package(pkgName);
-                        cfg.addPackage(pkg);
-                    }
-                    part.setPackage(pkg);
-
-                    cfg.addPart(part);
-                }
-                placement.setPart(part);
-
+                placement.setPart(boardImport.getOrCreatePart(partId, pkgName));
             }
 
             placement.setSide(side);
-            placements.add(placement);
+            boardImport.addPlacement(placement);
         }
         reader.close();
-        return placements;
     }
 
     class Dlg extends JDialog {
@@ -297,26 +272,19 @@ public class KicadPosImporter implements BoardImporter {
             public void actionPerformed(ActionEvent e) {
                 topFile = new File(textFieldTopFile.getText());
                 bottomFile = new File(textFieldBottomFile.getText());
-                board = new Board();
-                List<Placement> placements = new ArrayList<>();
-                try {
+                boolean createMissingParts = chckbxCreateMissingParts.isSelected();
+                BoardImport boardImport = new BoardImport(new Board(), topFile, bottomFile);
+                boardImport.start(Dlg.this, () -> {
                     if (topFile.exists()) {
-                        placements.addAll(parseFile(topFile, Side.Top,
-                                chckbxCreateMissingParts.isSelected()));
+                        parseFile(topFile, Side.Top, createMissingParts, boardImport);
                     }
                     if (bottomFile.exists()) {
-                        placements.addAll(parseFile(bottomFile, Side.Bottom,
-                                chckbxCreateMissingParts.isSelected()));
+                        parseFile(bottomFile, Side.Bottom, createMissingParts, boardImport);
                     }
-                }
-                catch (Exception e1) {
-                    MessageBoxes.errorBox(Dlg.this, "Import Error", e1);
-                    return;
-                }
-                for (Placement placement : placements) {
-                    board.addPlacement(placement);
-                }
-                setVisible(false);
+                }, () -> {
+                    board = boardImport.getBoard();
+                    setVisible(false);
+                });
             }
         }
 
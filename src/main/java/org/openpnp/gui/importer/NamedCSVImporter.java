@@ -25,12 +25,8 @@ import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
-import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -48,14 +44,12 @@ import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.border.TitledBorder;
 
-import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
-import org.openpnp.model.Package;
 import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
 import org.pmw.tinylog.Logger;
@@ -264,11 +258,9 @@ public class NamedCSVImporter implements BoardImporter {
      */
     //////////////////////////////////////////////////////////
 
-    private static List<Placement> parseFile(File file, boolean createMissingParts,
-            boolean updateHeights) throws Exception {
-        BufferedReader reader =
-                new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-        ArrayList<Placement> placements = new ArrayList<>();
+    private static void parseFile(File file, boolean createMissingParts, boolean updateHeights,
+            BoardImport boardImport) throws Exception {
+        BufferedReader reader = boardImport.open(file);
         String line;
 
         for (int i = 0; i++ < 50 && (line = reader.readLine()) != null;) {
@@ -336,26 +328,18 @@ public class NamedCSVImporter implements BoardImporter {
                 Configuration cfg = Configuration.get();
                 if (cfg != null && createMissingParts) {
                     String partId = as[Pack] + "-" + as[Val];
-                    Part part = cfg.getPart(partId);
+                    Part part = boardImport.getPart(partId);
 
                     if (part == null) {
-                        part = new Part(partId);
+                        part = boardImport.getOrCreatePart(partId, as[Pack]);
                         Length l = new Length(heightZ, LengthUnit.Millimeters);
                         part.setHeight(l);
-                        Package pkg = cfg.getPackage(as[Pack]);
-                        if (pkg == null) {
-                            pkg = new Package(as[Pack]);
-                            cfg.addPackage(pkg);
-                        }
-                        part.setPackage(pkg);
-
-                        cfg.addPart(part);
                     }
 
                     // if part exists and height exist and user wants height updated do it.
                     if (cfg != null && updateHeights && HT != -1) {
                         String partId2 = as[Pack] + "-" + as[Val];
-                        Part part2 = cfg.getPart(partId2);
+                        Part part2 = boardImport.getPart(partId2);
                         if (part2 != null) {
                             Length l = new Length(heightZ, LengthUnit.Millimeters);
                             part2.setHeight(l);
@@ -371,11 +355,10 @@ public class NamedCSVImporter implements BoardImporter {
                 }
                 placement.setSide(c == 'B' || c == 'b' ? Side.Bottom : Side.Top);
                 c = 0;
-                placements.add(placement);
+                boardImport.addPlacement(placement);
             }
         }
         reader.close();
-        return placements;
     }
 
     class Dlg extends JDialog {
@@ -493,22 +476,17 @@ public class NamedCSVImporter implements BoardImporter {
             public void actionPerformed(ActionEvent e) {
                 Logger.debug("Parsing " + textFieldTopFile.getText() + " CSV FIle");
                 topFile = new File(textFieldTopFile.getText());
-                board = new Board();
-                List<Placement> placements = new ArrayList<>();
-                try {
+                boolean createMissingParts = chckbxCreateMissingParts.isSelected();
+                boolean updateHeights = chckbxUpdatePartHeight.isSelected();
+                BoardImport boardImport = new BoardImport(new Board(), topFile);
+                boardImport.start(Dlg.this, () -> {
                     if (topFile.exists()) {
-                        placements.addAll(parseFile(topFile, chckbxCreateMissingParts.isSelected(),
-                                chckbxUpdatePartHeight.isSelected()));
+                        parseFile(topFile, createMissingParts, updateHeights, boardImport);
                     }
-                }
-                catch (Exception e1) {
-                    MessageBoxes.errorBox(Dlg.this, "Import Error", e1);
-                    return;
-                }
-                for (Placement placement : placements) {
-                    board.addPlacement(placement);
-                }
-                setVisible(false);
+                }, () -> {
+                    board = boardImport.getBoard();
+                    setVisible(false);
+                });
             }
         }
 
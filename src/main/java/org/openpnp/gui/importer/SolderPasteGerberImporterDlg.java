@@ -5,8 +5,6 @@ import java.awt.FlowLayout;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -24,10 +22,8 @@ import javax.swing.KeyStroke;
 import javax.swing.border.TitledBorder;
 
 import org.openpnp.gui.importer.rs274x.Rs274xParser;
-import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
-import org.openpnp.model.BoardPad;
 
 import com.jgoodies.forms.layout.ColumnSpec;
 import com.jgoodies.forms.layout.FormLayout;
@@ -165,36 +161,28 @@ class SolderPasteGerberImporterDlg extends JDialog {
                     new File(textFieldTopFile.getText());
             SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.bottomFile =
                     new File(textFieldBottomFile.getText());
-            SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.board = new Board();
-            List<BoardPad> pads = new ArrayList<>();
-            try {
-                if (SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.topFile.exists()) {
-                    List<BoardPad> topPads = new Rs274xParser().parseSolderPastePads(
-                            SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.topFile);
-                    for (BoardPad pad : topPads) {
+            File topFile = SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.topFile;
+            File bottomFile =
+                    SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.bottomFile;
+            BoardImport boardImport = new BoardImport(new Board(), topFile, bottomFile);
+            boardImport.start(SolderPasteGerberImporterDlg.this, () -> {
+                if (topFile.exists()) {
+                    new Rs274xParser().parseSolderPastePads(boardImport.map(topFile), pad -> {
                         pad.setSide(Side.Top);
-                    }
-                    pads.addAll(topPads);
+                        boardImport.addSolderPastePad(pad);
+                    });
                 }
-                if (SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.bottomFile
-                        .exists()) {
-                    List<BoardPad> bottomPads = new Rs274xParser().parseSolderPastePads(
-                            SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.bottomFile);
-                    for (BoardPad pad : bottomPads) {
+                if (bottomFile.exists()) {
+                    new Rs274xParser().parseSolderPastePads(boardImport.map(bottomFile), pad -> {
                         pad.setSide(Side.Bottom);
-                    }
-                    pads.addAll(bottomPads);
+                        boardImport.addSolderPastePad(pad);
+                    });
                 }
-            }
-            catch (Exception e1) {
-                MessageBoxes.errorBox(SolderPasteGerberImporterDlg.this, "Import Error", e1);
-                return;
-            }
-            for (BoardPad pad : pads) {
-                SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.board
-                        .addSolderPastePad(pad);
-            }
-            setVisible(false);
+            }, () -> {
+                SolderPasteGerberImporterDlg.this.solderPasteGerberImporter.board =
+                        boardImport.getBoard();
+                setVisible(false);
+            });
         }
     }
 
@@ -1,16 +1,20 @@
 package org.openpnp.gui.importer.rs274x;
 
-import java.awt.geom.Point2D;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 import org.openpnp.model.BoardPad;
 import org.openpnp.model.LengthUnit;
@@ -21,9 +25,15 @@ import org.pmw.tinylog.Logger;
 /**
  * A simple RS-274X parser. Not intended to be a general parser, but implements only OpenPnP
  * specific functionality.
+ *
+ * Input is read either from a Reader or from a ByteBuffer, usually a memory mapped file. The
+ * ByteBuffer is read in place, a byte at a time, and integers and coordinates are read from it
+ * without building Strings. Reading from a Reader is the original, slower implementation and is
+ * kept as the reference the ByteBuffer reading is tested against.
  */
 public class Rs274xParser {
-
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L,
+            10000000L, 100000000L, 1000000000L, 10000000000L};
 
     enum LevelPolarity {
         Dark, Clear
@@ -34,11 +44,16 @@ public class Rs274xParser {
     }
 
     private BufferedReader reader;
+    /**
+     * If not null, the input is read from here instead of from reader.
+     */
+    private ByteBuffer buffer;
 
     // Context
     private LengthUnit unit;
     private Aperture currentAperture;
-    private Point2D.Double currentPoint;
+    private double currentX;
+    private double currentY;
     private LevelPolarity levelPolarity;
     private InterpolationMode interpolationMode;
     private boolean multiQuadrantMode;
@@ -47,18 +62,14 @@ public class Rs274xParser {
     private int coordinateFormatDecimalLength;
     private boolean coordinateFormatTrailingZeroOmission;
     private boolean coordinateFormatIncremental;
-    private Map<Integer, Aperture> apertures = new HashMap<>();
-    /**
-     * Maps Aperture indexes to a count to aid in generation of pad names.
-     */
-    private Map<Integer, Integer> apertureUseCounts = new HashMap<>();
+    private ApertureTable apertures = new ApertureTable();
 
     private boolean stopped;
     private int lineNumber;
     private ParseStatistics parseStatistics;
     private boolean regionStarted;
 
-    private List<BoardPad> pads;
+    private Consumer<BoardPad> padConsumer;
 
     public Rs274xParser() {
         reset();
@@ -67,14 +78,59 @@ public class Rs274xParser {
     /**
      * Parse the given File for solder paste pads.
      * 
-     * @see #parseSolderPastePads(Reader)
+     * @see #parseSolderPastePads(File, Consumer)
      * @param file
      * @return
      * @throws Exception
      */
     public List<BoardPad> parseSolderPastePads(File file) throws Exception {
+        List<BoardPad> pads = new ArrayList<>();
+        parseSolderPastePads(file, pads::add);
+        return pads;
+    }
+
+    /**
+     * Parse the given File for solder paste pads, memory mapping it and passing each pad to the
+     * Consumer as it is read.
+     * 
+     * @see #parseSolderPastePads(ByteBuffer, Consumer)
+     * @param file
+     * @param padConsumer
+     * @throws Exception
+     */
+    public void parseSolderPastePads(File file, Consumer<BoardPad> padConsumer)
+            throws Exception {
         Logger.info("Parsing " + file);
-        return parseSolderPastePads(new FileReader(file));
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        parseSolderPastePads(buffer, padConsumer);
+    }
+
+    /**
+     * Parse the bytes from the buffer's position to its limit for solder paste pads, passing each
+     * pad to the Consumer as it is read. The buffer's position is advanced as it is read, so it
+     * can be used to follow the progress of the parse. The Consumer may throw a
+     * CancellationException to stop the parse, which is thrown on from here.
+     * 
+     * @see #parseSolderPastePads(Reader)
+     * @param buffer
+     * @param padConsumer
+     * @throws Exception
+     */
+    public void parseSolderPastePads(ByteBuffer buffer, Consumer<BoardPad> padConsumer)
+            throws Exception {
+        reset();
+
+        this.buffer = buffer;
+        this.padConsumer = padConsumer;
+        try {
+            parse();
+        }
+        finally {
+            this.buffer = null;
+        }
     }
 
     /**
@@ -95,19 +151,27 @@ public class Rs274xParser {
     public List<BoardPad> parseSolderPastePads(Reader reader) throws Exception {
         reset();
 
+        List<BoardPad> pads = new ArrayList<>();
         this.reader = new BufferedReader(reader);
+        this.padConsumer = pads::add;
+        parse();
 
+        return pads;
+    }
+
+    private void parse() throws Exception {
         try {
             while (!stopped) {
                 readCommand();
             }
         }
+        catch (CancellationException e) {
+            throw e;
+        }
         catch (Exception e) {
             parseStatistics.errored = true;
             error("Uncaught error: " + e.getMessage());
         }
-
-        return pads;
     }
 
     private void readCommand() throws Exception {
@@ -124,9 +188,11 @@ public class Rs274xParser {
         // followed by a D.
         // X, Y
         // TODO: Make sure this becomes the current point.
-        Point2D.Double coordinate = new Point2D.Double(currentPoint.getX(), currentPoint.getY());
+        double x = currentX;
+        double y = currentY;
         // I, J
-        Point2D.Double arcCoordinate = new Point2D.Double(0, 0);
+        double i = 0;
+        double j = 0;
         while (!stopped) {
             int ch = read();
             switch (ch) {
@@ -136,7 +202,7 @@ public class Rs274xParser {
                     return;
                 }
                 case 'D': {
-                    readDcode(coordinate, arcCoordinate);
+                    readDcode(x, y, i, j);
                     return;
                 }
                 case 'G': {
@@ -149,19 +215,19 @@ public class Rs274xParser {
                 }
                     // TODO: See 7.2 Coordinate Data without Operation Code
                 case 'X': {
-                    coordinate.x = readCoordinateValue();
+                    x = readCoordinateValue();
                     break;
                 }
                 case 'Y': {
-                    coordinate.y = readCoordinateValue();
+                    y = readCoordinateValue();
                     break;
                 }
                 case 'I': {
-                    arcCoordinate.x = readCoordinateValue();
+                    i = readCoordinateValue();
                     break;
                 }
                 case 'J': {
-                    arcCoordinate.y = readCoordinateValue();
+                    j = readCoordinateValue();
                     break;
                 }
                 default: {
@@ -242,20 +308,19 @@ public class Rs274xParser {
         }
     }
 
-    private void readDcode(Point2D.Double coordinate, Point2D.Double arcCoordinate)
-            throws Exception {
+    private void readDcode(double x, double y, double i, double j) throws Exception {
         int code = readInteger();
         switch (code) {
             case 1: {
-                performD01(coordinate, arcCoordinate);
+                performD01(x, y, i, j);
                 break;
             }
             case 2: {
-                performD02(coordinate);
+                performD02(x, y);
                 break;
             }
             case 3: {
-                performD03(coordinate);
+                performD03(x, y);
                 break;
             }
             default: {
@@ -298,22 +363,23 @@ public class Rs274xParser {
      * Linear or circular interpolation. If in region mode, add a line or arc to the current
      * contour. Otherwise draw a line or arc.
      * 
-     * @param coordinate
-     * @param arcCoordinate
+     * @param x
+     * @param y
+     * @param i
+     * @param j
      * @throws Exception
      */
-    private void performD01(Point2D.Double coordinate, Point2D.Double arcCoordinate)
-            throws Exception {
+    private void performD01(double x, double y, double i, double j) throws Exception {
         if (interpolationMode == null) {
             error("Interpolation most must be set before using D02");
         }
 
         if (regionMode) {
             if (interpolationMode == InterpolationMode.Linear) {
-                addRegionLine(coordinate);
+                addRegionLine(x, y);
             }
             else {
-                addRegionArc(coordinate, arcCoordinate);
+                addRegionArc(x, y, i, j);
             }
         }
         else {
@@ -326,16 +392,18 @@ public class Rs274xParser {
                 warn("Circular interpolation not yet supported");
             }
         }
-        currentPoint = coordinate;
+        currentX = x;
+        currentY = y;
     }
 
     /**
      * Move / set the current coordinate. Additionally, in region mode end the current contour.
      * 
-     * @param coordinate
+     * @param x
+     * @param y
      * @throws Exception
      */
-    private void performD02(Point2D.Double coordinate) throws Exception {
+    private void performD02(double x, double y) throws Exception {
         if (interpolationMode == null) {
             error("Interpolation mode must be set before using D02");
         }
@@ -344,16 +412,18 @@ public class Rs274xParser {
             closeRegion();
         }
 
-        currentPoint = coordinate;
+        currentX = x;
+        currentY = y;
     }
 
     /**
      * Flash the current aperture at the given coordinate.
      * 
-     * @param coordinate
+     * @param x
+     * @param y
      * @throws Exception
      */
-    private void performD03(Point2D.Double coordinate) throws Exception {
+    private void performD03(double x, double y) throws Exception {
         if (currentAperture == null) {
             error("Can't flash, no current aperture");
         }
@@ -363,25 +433,38 @@ public class Rs274xParser {
 
         parseStatistics.flashCount++;
 
-        Integer counter = apertureUseCounts.get(currentAperture.getIndex());
-        if (counter == null) {
-            counter = 0;
-        }
-        else {
-            counter++;
-        }
-        apertureUseCounts.put(currentAperture.getIndex(), counter);
+        int counter = apertures.use(currentAperture.getIndex());
 
-        BoardPad pad = currentAperture.createPad(unit, coordinate);
-        pad.setName(String.format("D%02d-%03d", currentAperture.getIndex(), counter++));
-        pads.add(pad);
+        BoardPad pad = currentAperture.createPad(unit, x, y);
+        pad.setName(padName(currentAperture.getIndex(), counter));
+        padConsumer.accept(pad);
         parseStatistics.padCount++;
 
-        currentPoint = coordinate;
+        currentX = x;
+        currentY = y;
 
         parseStatistics.flashPerformedCount++;
     }
 
+    /**
+     * Returns String.format("D%02d-%03d", index, counter) for the non-negative index and counter,
+     * without the cost of String.format.
+     */
+    private static String padName(int index, int counter) {
+        StringBuilder sb = new StringBuilder(12).append('D');
+        if (index < 10) {
+            sb.append('0');
+        }
+        sb.append(index).append('-');
+        if (counter < 10) {
+            sb.append("00");
+        }
+        else if (counter < 100) {
+            sb.append('0');
+        }
+        return sb.append(counter).toString();
+    }
+
     private void enableRegionMode() throws Exception {
         if (regionMode) {
             error("Can't start region mode when already in region mode");
@@ -390,7 +473,7 @@ public class Rs274xParser {
         regionStarted = false;
     }
 
-    private void addRegionLine(Point2D.Double coordinate) throws Exception {
+    private void addRegionLine(double x, double y) throws Exception {
         if (!regionMode) {
             error("Can't add region line outside of region mode");
         }
@@ -401,8 +484,7 @@ public class Rs274xParser {
         warn("Linear interpolation in region mode not yet supported");
     }
 
-    private void addRegionArc(Point2D.Double coordinate, Point2D.Double arcCoordinate)
-            throws Exception {
+    private void addRegionArc(double x, double y, double i, double j) throws Exception {
         if (!regionMode) {
             error("Can't add region arc outside of region mode");
         }
@@ -776,6 +858,9 @@ public class Rs274xParser {
     }
 
     private int readInteger() throws Exception {
+        if (buffer != null) {
+            return readBufferInteger();
+        }
         boolean negative = false;
         int ch = peek();
         if (ch == '-') {
@@ -793,6 +878,41 @@ public class Rs274xParser {
         return (negative ? -1 : 1) * Integer.parseInt(sb.toString());
     }
 
+    /**
+     * readInteger() for the buffer, accumulating the digits instead of parsing a String. If there
+     * are no digits, or too many for an int, the digits are parsed as a String after all so that
+     * the same exception is thrown.
+     */
+    private int readBufferInteger() throws Exception {
+        boolean negative = false;
+        int ch = peek();
+        if (ch == '-') {
+            negative = true;
+            read();
+        }
+        else if (ch == '+') {
+            read();
+        }
+        long value = 0;
+        int digits = 0;
+        while ((ch = peek()) >= '0' && ch <= '9') {
+            buffer.get();
+            value = value * 10 + (ch - '0');
+            digits++;
+            if (value > Integer.MAX_VALUE) {
+                StringBuilder sb = new StringBuilder().append(value);
+                while ((ch = peek()) >= '0' && ch <= '9') {
+                    sb.append((char) buffer.get());
+                }
+                return Integer.parseInt(sb.toString());
+            }
+        }
+        if (digits == 0) {
+            return Integer.parseInt("");
+        }
+        return (int) (negative ? -value : value);
+    }
+
     private double readCoordinateValue() throws Exception {
         if (coordinateFormatIncremental) {
             error("Incremental coordinate format not supported");
@@ -807,6 +927,11 @@ public class Rs274xParser {
         // something that isn't an integer character, then pad it out and then
         // break up the components.
         int value = readInteger();
+        if (buffer != null && coordinateFormatIntegerLength >= 0
+                && coordinateFormatIntegerLength <= 6 && coordinateFormatDecimalLength >= 1
+                && coordinateFormatDecimalLength <= 6) {
+            return coordinateValue(value);
+        }
         String sValue = Integer.toString(Math.abs(value));
         while (sValue.length() < coordinateFormatIntegerLength + coordinateFormatDecimalLength) {
             sValue = "0" + sValue;
@@ -817,6 +942,24 @@ public class Rs274xParser {
         return (value < 0 ? -1 : 1) * Double.parseDouble(integerPart + "." + decimalPart);
     }
 
+    /**
+     * Does what readCoordinateValue() does with the value's digits with arithmetic instead. The
+     * digits that the String would keep, which are all but the last of the integer and decimal
+     * lengths once padded, are divided out of the value and then scaled by the decimal length.
+     * Both numbers are exact doubles, so the division gives the same double as parsing.
+     */
+    private double coordinateValue(int value) {
+        long abs = Math.abs((long) value);
+        int length = coordinateFormatIntegerLength + coordinateFormatDecimalLength;
+        int digits = 1;
+        for (long v = abs; v >= 10; v /= 10) {
+            digits++;
+        }
+        long kept = abs / POWERS_OF_TEN[digits > length ? digits - length + 1 : 1];
+        double result = kept / (double) POWERS_OF_TEN[coordinateFormatDecimalLength - 1];
+        return value < 0 ? -result : result;
+    }
+
     /**
      * Read the next character in the stream, skipping any \r or \n that precede it.
      * 
@@ -825,6 +968,12 @@ public class Rs274xParser {
      */
     private int read() throws Exception {
         skipCrLf();
+        if (buffer != null) {
+            if (!buffer.hasRemaining()) {
+                error("Unexpected end of stream");
+            }
+            return buffer.get() & 0xff;
+        }
         int ch = reader.read();
         if (ch == -1) {
             error("Unexpected end of stream");
@@ -849,6 +998,20 @@ public class Rs274xParser {
      * @throws Exception
      */
     private void skipCrLf() throws Exception {
+        if (buffer != null) {
+            // The end of the buffer is left for read() and peek() to report.
+            while (buffer.hasRemaining()) {
+                int ch = buffer.get(buffer.position());
+                if (ch == '\n') {
+                    lineNumber++;
+                }
+                else if (ch != '\r') {
+                    return;
+                }
+                buffer.get();
+            }
+            return;
+        }
         while (true) {
             int ch = peekInternal();
             if (ch == '\n') {
@@ -871,6 +1034,12 @@ public class Rs274xParser {
      * @throws Exception
      */
     private int peekInternal() throws Exception {
+        if (buffer != null) {
+            if (!buffer.hasRemaining()) {
+                error("Unexpected end of stream");
+            }
+            return buffer.get(buffer.position()) & 0xff;
+        }
         reader.mark(1);
         int ch = reader.read();
         if (ch == -1) {
@@ -883,7 +1052,8 @@ public class Rs274xParser {
     private void reset() {
         unit = null;
         currentAperture = null;
-        currentPoint = new Point2D.Double(0, 0);
+        currentX = 0;
+        currentY = 0;
         levelPolarity = LevelPolarity.Dark;
         /*
          * This is non-standard, but expected by Eagle, at least. The standard says that
@@ -897,11 +1067,9 @@ public class Rs274xParser {
         coordinateFormatDecimalLength = -1;
         coordinateFormatTrailingZeroOmission = false;
         coordinateFormatIncremental = false;
-        apertures = new HashMap<>();
+        apertures = new ApertureTable();
         lineNumber = 1;
-        pads = new ArrayList<>();
         regionStarted = false;
-        apertureUseCounts = new HashMap<>();
 
         parseStatistics = new ParseStatistics();
     }
@@ -981,7 +1149,83 @@ public class Rs274xParser {
             return index;
         }
 
-        public abstract BoardPad createPad(LengthUnit unit, Point2D.Double coordinate);
+        public abstract BoardPad createPad(LengthUnit unit, double x, double y);
+    }
+
+    /**
+     * Apertures by their D code, along with how many times each D code has been flashed to aid in
+     * generation of pad names. An open addressing hash table of ints, so that looking up the
+     * current aperture and counting its uses for every flash doesn't box the D codes and counts.
+     */
+    static class ApertureTable {
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        private int[] keys = newKeys(16);
+        private Aperture[] values = new Aperture[16];
+        private int[] useCounts = new int[16];
+        private int size;
+
+        public Aperture get(int code) {
+            int i = find(code);
+            return keys[i] == EMPTY ? null : values[i];
+        }
+
+        public void put(int code, Aperture aperture) {
+            int i = find(code);
+            if (keys[i] == EMPTY) {
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    i = find(code);
+                }
+                keys[i] = code;
+                size++;
+            }
+            values[i] = aperture;
+        }
+
+        /**
+         * Counts a use of the D code and returns how many times it was used before.
+         */
+        public int use(int code) {
+            int i = find(code);
+            if (keys[i] == EMPTY) {
+                put(code, null);
+                i = find(code);
+            }
+            return useCounts[i]++;
+        }
+
+        private int find(int code) {
+            int mask = keys.length - 1;
+            int i = (code * 0x9E3779B9) >>> 16 & mask;
+            while (keys[i] != EMPTY && keys[i] != code) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Aperture[] oldValues = values;
+            int[] oldUseCounts = useCounts;
+            keys = newKeys(oldKeys.length * 2);
+            values = new Aperture[keys.length];
+            useCounts = new int[keys.length];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = find(oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                    useCounts[i] = oldUseCounts[j];
+                }
+            }
+        }
+
+        private static int[] newKeys(int length) {
+            int[] keys = new int[length];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
     }
 
     static abstract class StandardAperture extends Aperture {
@@ -1002,14 +1246,13 @@ public class Rs274xParser {
             this.holeDiameter = holeDiameter;
         }
 
-        public BoardPad createPad(LengthUnit unit, Point2D.Double coordinate) {
+        public BoardPad createPad(LengthUnit unit, double x, double y) {
             Pad.RoundRectangle pad = new Pad.RoundRectangle();
             pad.setUnits(unit);
             pad.setWidth(width);
             pad.setHeight(height);
             pad.setRoundness(0);
-            BoardPad boardPad =
-                    new BoardPad(pad, new Location(unit, coordinate.x, coordinate.y, 0, 0));
+            BoardPad boardPad = new BoardPad(pad, new Location(unit, x, y, 0, 0));
             return boardPad;
         }
 
@@ -1030,12 +1273,11 @@ public class Rs274xParser {
             this.holeDiameter = holeDiameter;
         }
 
-        public BoardPad createPad(LengthUnit unit, Point2D.Double coordinate) {
+        public BoardPad createPad(LengthUnit unit, double x, double y) {
             Pad.Circle pad = new Pad.Circle();
             pad.setRadius(diameter / 2);
             pad.setUnits(unit);
-            BoardPad boardPad =
-                    new BoardPad(pad, new Location(unit, coordinate.x, coordinate.y, 0, 0));
+            BoardPad boardPad = new BoardPad(pad, new Location(unit, x, y, 0, 0));
             return boardPad;
         }
 
@@ -1081,7 +1323,7 @@ public class Rs274xParser {
         }
 
         @Override
-        public BoardPad createPad(LengthUnit unit, java.awt.geom.Point2D.Double coordinate) {
+        public BoardPad createPad(LengthUnit unit, double x, double y) {
             return null;
         }
     }
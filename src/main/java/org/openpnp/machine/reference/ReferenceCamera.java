@@ -20,12 +20,16 @@
 package org.openpnp.machine.reference;
 
 import java.awt.Color;
+import java.awt.FileDialog;
 import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -39,10 +43,14 @@ import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
+import org.openpnp.CameraListener;
+import org.openpnp.Scripting;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.support.Icons;
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.gui.wizards.CameraConfigurationWizard;
+import org.openpnp.machine.reference.camera.FrameRecorder;
+import org.openpnp.machine.reference.camera.FrameRecording;
 import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Length;
@@ -50,9 +58,11 @@ import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.spi.base.AbstractCamera;
 import org.openpnp.util.OpenCvUtils;
+import org.openpnp.util.UiUtils;
 import org.openpnp.vision.LensCalibration;
 import org.openpnp.vision.LensCalibration.LensModel;
 import org.openpnp.vision.LensCalibration.Pattern;
+import org.openpnp.vision.UndistortionMaps;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -112,10 +122,13 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     private CalibrationCallback calibrationCallback;
     private int calibrationCountGoal = 25;
 
-    private Mat undistortionMap1;
-    private Mat undistortionMap2;
+    private UndistortionMaps undistortionMaps;
 
     private LensCalibration lensCalibration;
+
+    private List<CameraListener> captureListeners = new CopyOnWriteArrayList<>();
+
+    private FrameRecorder recorder;
     
     public ReferenceCamera() {
     }
@@ -123,18 +136,27 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     @Override
     public BufferedImage capture() {
         try {
-            Map<String, Object> globals = new HashMap<>();
-            globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.BeforeCapture", globals);
+            Scripting scripting = Configuration.get().getScripting();
+            if (scripting.hasEventScripts("Camera.BeforeCapture")) {
+                Map<String, Object> globals = new HashMap<>();
+                globals.put("camera", this);
+                scripting.on("Camera.BeforeCapture", globals);
+            }
         }
         catch (Exception e) {
             Logger.warn(e);
         }
         BufferedImage image = safeInternalCapture();
+        for (CameraListener listener : captureListeners) {
+            listener.frameReceived(image);
+        }
         try {
-            Map<String, Object> globals = new HashMap<>();
-            globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.AfterCapture", globals);
+            Scripting scripting = Configuration.get().getScripting();
+            if (scripting.hasEventScripts("Camera.AfterCapture")) {
+                Map<String, Object> globals = new HashMap<>();
+                globals.put("camera", this);
+                scripting.on("Camera.AfterCapture", globals);
+            }
         }
         catch (Exception e) {
             Logger.warn(e);
@@ -143,6 +165,19 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
     
     protected abstract BufferedImage internalCapture();
+
+    /**
+     * Adds a listener that receives every image returned by capture(). Unlike the listeners given
+     * to startContinuousCapture() these are called synchronously, on the capturing thread, and
+     * see exactly the frames that vision operations work on.
+     */
+    public void addCaptureListener(CameraListener listener) {
+        captureListeners.add(listener);
+    }
+
+    public void removeCaptureListener(CameraListener listener) {
+        captureListeners.remove(listener);
+    }
     
     /**
      * Wraps internalCapture() to ensure that a null image is never returned. Attempts to
@@ -302,8 +337,20 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
 
     protected BufferedImage transformImage(BufferedImage image) {
-        Mat mat = OpenCvUtils.toMat(image);
+        return transformImage(OpenCvUtils.toMat(image));
+    }
 
+    /**
+     * Applies the configured transforms to the given Mat and returns the result as a
+     * BufferedImage. This lets camera implementations that already hold a native frame skip the
+     * BufferedImage to Mat conversion. The Mat is consumed by this method and should not be used
+     * by the caller afterwards. The pixels of the Mat are never written, so it may be a submat
+     * view into a larger image that the caller keeps.
+     * 
+     * @param mat
+     * @return
+     */
+    protected BufferedImage transformImage(Mat mat) {
         mat = crop(mat);
 
         mat = calibrate(mat);
@@ -327,10 +374,13 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
             else {
                 flipCode = flipX ? 0 : 1;
             }
-            Core.flip(mat, mat, flipCode);
+            Mat dst = new Mat();
+            Core.flip(mat, dst, flipCode);
+            mat.release();
+            mat = dst;
         }
 
-        image = OpenCvUtils.toBufferedImage(mat);
+        BufferedImage image = OpenCvUtils.toBufferedImage(mat);
         mat.release();
         return image;
     }
@@ -429,24 +479,51 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
             return mat;
         }
 
-        if (undistortionMap1 == null || undistortionMap2 == null) {
-            undistortionMap1 = new Mat();
-            undistortionMap2 = new Mat();
-            Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
-            Imgproc.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
-                    calibration.getDistortionCoefficientsMat(), rectification,
-                    calibration.getCameraMatrixMat(), mat.size(), CvType.CV_32FC1, undistortionMap1,
-                    undistortionMap2);
-            rectification.release();
+        if (undistortionMaps == null || !undistortionMaps.getSize().equals(mat.size())) {
+            clearUndistortionMaps();
+            undistortionMaps = UndistortionMaps.get(calibration.getCameraMatrixMat(),
+                    calibration.getDistortionCoefficientsMat(), mat.size(),
+                    getUndistortionMapsDirectory(), getId());
         }
 
-        Mat dst = mat.clone();
-        Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
+        Mat dst = undistortionMaps.remap(mat);
         mat.release();
 
         return dst;
     }
 
+    /**
+     * Loads the undistortion maps saved for the current calibration, if there are any, so that
+     * the first frame does not wait for them. Subclasses call this when they open the device.
+     */
+    protected synchronized void preloadUndistortionMaps() {
+        if (!calibration.isEnabled() || undistortionMaps != null) {
+            return;
+        }
+        File cacheDirectory = getUndistortionMapsDirectory();
+        if (cacheDirectory != null) {
+            undistortionMaps = UndistortionMaps.preload(calibration.getCameraMatrixMat(),
+                    calibration.getDistortionCoefficientsMat(), cacheDirectory, getId());
+        }
+    }
+
+    private static File getUndistortionMapsDirectory() {
+        try {
+            return Configuration.get().getResourceDirectory(UndistortionMaps.class);
+        }
+        catch (Exception e) {
+            Logger.debug(e);
+            return null;
+        }
+    }
+
+    private void clearUndistortionMaps() {
+        if (undistortionMaps != null) {
+            undistortionMaps.release();
+            undistortionMaps = null;
+        }
+    }
+
     private Mat calibrate(Mat mat) {
         if (!calibrating) {
             return mat;
@@ -455,12 +532,16 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
         // Get the number of images counted so far.
         int count = lensCalibration.getPatternFoundCount();
 
-        // Submit an image for counting. If it is good the count will increase.
-        Mat appliedMat = lensCalibration.apply(mat);
+        // Submit an image for counting. If it is good the count will increase. The pattern is
+        // drawn onto the image, so give it a copy.
+        Mat copy = mat.clone();
+        Mat appliedMat = lensCalibration.apply(copy);
         if (appliedMat == null) {
             // nothing was found in the image
+            copy.release();
             return mat;
         }
+        mat.release();
 
         // If the count changed then we have counted a new image, so let the caller know.
         if (count != lensCalibration.getPatternFoundCount()) {
@@ -473,14 +554,7 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
                 calibration
                         .setDistortionCoefficientsMat(lensCalibration.getDistortionCoefficients());
                 // Clear the calibration cache
-                if (undistortionMap1 != null) {
-                    undistortionMap1.release();
-                    undistortionMap1 = null;
-                }
-                if (undistortionMap2 != null) {
-                    undistortionMap2.release();
-                    undistortionMap2 = null;
-                }
+                clearUndistortionMaps();
                 calibration.setEnabled(true);
 
                 lensCalibration.close();
@@ -535,7 +609,9 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
 
     @Override
-    public void close() throws IOException {}
+    public void close() throws IOException {
+        stopRecording();
+    }
 
     @Override
     public PropertySheet[] getPropertySheets() {
@@ -547,10 +623,65 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     
     @Override
     public Action[] getPropertySheetHolderActions() {
-        return new Action[] { deleteAction };
+        return new Action[] { deleteAction, recordAction };
+    }
+
+    public synchronized void startRecording(File file, FrameRecording.Encoding encoding)
+            throws IOException {
+        stopRecording();
+        recorder = new FrameRecorder(this, file, encoding);
+        addCaptureListener(recorder);
+        recordAction.putValue(Action.NAME, "Stop Recording");
     }
+
+    public synchronized void stopRecording() throws IOException {
+        if (recorder == null) {
+            return;
+        }
+        removeCaptureListener(recorder);
+        Logger.info("Recorded {} frames from {}", recorder.getFrameCount(), this);
+        recorder.close();
+        recorder = null;
+        recordAction.putValue(Action.NAME, "Record Frames");
+    }
+
+    public synchronized boolean isRecording() {
+        return recorder != null;
+    }
+
+    public Action recordAction = new AbstractAction("Record Frames") {
+        private static final long serialVersionUID = 1L;
+
+        {
+            putValue(SMALL_ICON, Icons.captureCamera);
+            putValue(NAME, "Record Frames");
+            putValue(SHORT_DESCRIPTION,
+                    "Record every captured frame to a file that can be played back with a ReplayCamera.");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent arg0) {
+            UiUtils.messageBoxOnException(() -> {
+                if (isRecording()) {
+                    stopRecording();
+                    return;
+                }
+                FileDialog fileDialog = new FileDialog(MainFrame.get(), "Record Frames To...",
+                        FileDialog.SAVE);
+                fileDialog.setFile(getName() + ".frames");
+                fileDialog.setVisible(true);
+                if (fileDialog.getFile() == null) {
+                    return;
+                }
+                startRecording(new File(fileDialog.getDirectory(), fileDialog.getFile()),
+                        FrameRecording.Encoding.Raw);
+            });
+        }
+    };
     
     public Action deleteAction = new AbstractAction("Delete Camera") {
+        private static final long serialVersionUID = 1L;
+
         {
             putValue(SMALL_ICON, Icons.delete);
             putValue(NAME, "Delete Camera");
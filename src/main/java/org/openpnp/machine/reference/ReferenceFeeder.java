@@ -1,7 +1,10 @@
 package org.openpnp.machine.reference;
 
+import org.openpnp.ConfigurationListener;
+import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.openpnp.model.StateJournal;
 import org.openpnp.spi.base.AbstractFeeder;
 import org.simpleframework.xml.Element;
 
@@ -9,6 +12,28 @@ public abstract class ReferenceFeeder extends AbstractFeeder {
     @Element
     protected Location location = new Location(LengthUnit.Millimeters);
 
+    public ReferenceFeeder() {
+        // Feeders that count their feeds fire feedCount as it changes. The count is recorded in
+        // the state journal so that it is not lost if OpenPnP stops before the configuration is
+        // saved, and the last one recorded is restored when the configuration is loaded.
+        addPropertyChangeListener("feedCount", e -> {
+            StateJournal journal = Configuration.get().getStateJournal();
+            if (journal != null) {
+                journal.putFeedCount(getId(), (Integer) e.getNewValue());
+            }
+        });
+        Configuration.get().addListener(new ConfigurationListener.Adapter() {
+            @Override
+            public void configurationLoaded(Configuration configuration) throws Exception {
+                StateJournal journal = configuration.getStateJournal();
+                Integer feedCount = journal == null ? null : journal.getFeedCount(getId());
+                if (feedCount != null) {
+                    restoreFeedCount(feedCount);
+                }
+            }
+        });
+    }
+
     public Location getLocation() {
         return location;
     }
@@ -18,4 +43,10 @@ public abstract class ReferenceFeeder extends AbstractFeeder {
         this.location = location;
         firePropertyChange("location", oldValue, location);
     }
+
+    /**
+     * Called when the configuration is loaded with a feed count that was recorded in the state
+     * journal after the configuration was last saved. Feeders that fire feedCount should set it.
+     */
+    protected void restoreFeedCount(int feedCount) {}
 }
@@ -31,8 +31,10 @@ import org.openpnp.ConfigurationListener;
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.camera.ImageCamera;
+import org.openpnp.machine.reference.camera.MjpegCamera;
 import org.openpnp.machine.reference.camera.OnvifIPCamera;
 import org.openpnp.machine.reference.camera.OpenCvCamera;
+import org.openpnp.machine.reference.camera.ReplayCamera;
 import org.openpnp.machine.reference.camera.SimulatedUpCamera;
 import org.openpnp.machine.reference.camera.Webcams;
 import org.openpnp.machine.reference.driver.NullDriver;
@@ -233,6 +235,8 @@ public class ReferenceMachine extends AbstractMachine {
         l.add(Webcams.class);
         l.add(OpenCvCamera.class);
         l.add(OnvifIPCamera.class);
+        l.add(MjpegCamera.class);
+        l.add(ReplayCamera.class);
         l.add(ImageCamera.class);
         l.add(SimulatedUpCamera.class);
         return l;
@@ -13,6 +13,7 @@ import javax.swing.Action;
 import javax.swing.JOptionPane;
 
 import org.apache.commons.io.IOUtils;
+import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.opencv.features2d.KeyPoint;
 import org.openpnp.ConfigurationListener;
@@ -22,6 +23,7 @@ import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.wizards.ReferenceNozzleTipConfigurationWizard;
 import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Part;
@@ -36,13 +38,16 @@ import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.UiUtils;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
 import org.simpleframework.xml.core.Commit;
+import org.simpleframework.xml.core.Persist;
 
 public class ReferenceNozzleTip extends AbstractNozzleTip {
 
@@ -336,14 +341,25 @@ public class ReferenceNozzleTip extends AbstractNozzleTip {
             }
         }
 
+        /**
+         * Created on first use if the configuration does not have one, rather than for every
+         * nozzle tip as it is loaded only to be replaced with the configured one.
+         */
         @Element(required = false)
-        private CvPipeline pipeline = createDefaultPipeline();
+        private CvPipeline pipeline;
 
         @Attribute(required = false)
         private double angleIncrement = 15;
         
         @Attribute(required = false)
         private boolean enabled;
+
+        /**
+         * Size of the square window, centered in the bottom camera image, that the calibration
+         * pipeline processes. Zero processes the full camera image.
+         */
+        @Element(required = false)
+        private Length roiSize = new Length(0, LengthUnit.Millimeters);
         
         private boolean calibrating;
 
@@ -427,15 +443,19 @@ public class ReferenceNozzleTip extends AbstractNozzleTip {
 
         private Location findCircle() throws Exception {
             Camera camera = VisionUtils.getBottomVisionCamera();
+            CvPipeline pipeline = getOrCreatePipeline();
+            pipeline.setResultRetention(ResultRetention.Production);
             pipeline.setProperty("camera", camera);
+            pipeline.setProperty("roi", VisionUtils.getCenteredRoi(camera, roiSize));
             pipeline.process();
+            Rect roi = ImageCapture.getCapturedRoi(pipeline);
             Location location;
             Object result = pipeline.getResult("result").model;
             if (result instanceof List) {
                 if (((List) result).get(0) instanceof Result.Circle) {
                     List<Result.Circle> circles = (List<Result.Circle>) result;
                     List<Location> locations = circles.stream().map(circle -> {
-                        return VisionUtils.getPixelCenterOffsets(camera, circle.x, circle.y);
+                        return VisionUtils.getPixelCenterOffsets(camera, roi, circle.x, circle.y);
                     }).sorted((a, b) -> {
                         double a1 =
                                 a.getLinearDistanceTo(new Location(LengthUnit.Millimeters, 0, 0, 0, 0));
@@ -447,7 +467,7 @@ public class ReferenceNozzleTip extends AbstractNozzleTip {
                 }
                 else if (((List) result).get(0) instanceof KeyPoint) {
                     KeyPoint keyPoint = ((List<KeyPoint>) result).get(0);
-                    location = VisionUtils.getPixelCenterOffsets(camera, keyPoint.pt.x, keyPoint.pt.y);
+                    location = VisionUtils.getPixelCenterOffsets(camera, roi, keyPoint.pt.x, keyPoint.pt.y);
                 }
                 else {
                     throw new Exception("Unrecognized result " + result);
@@ -455,7 +475,7 @@ public class ReferenceNozzleTip extends AbstractNozzleTip {
             }
             else if (result instanceof RotatedRect) {
                 RotatedRect rect = (RotatedRect) result;
-                location = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
+                location = VisionUtils.getPixelCenterOffsets(camera, roi, rect.center.x, rect.center.y);
             }
             else {
                 throw new Exception("Unrecognized result " + result);
@@ -519,7 +539,29 @@ public class ReferenceNozzleTip extends AbstractNozzleTip {
             this.enabled = enabled;
         }
 
+        public Length getRoiSize() {
+            return roiSize;
+        }
+
+        public void setRoiSize(Length roiSize) {
+            this.roiSize = roiSize;
+        }
+
+        @Persist
+        private void persist() {
+            // Write the pipeline out even if it was never used, as it always was.
+            getOrCreatePipeline();
+        }
+
+        private CvPipeline getOrCreatePipeline() {
+            if (pipeline == null) {
+                pipeline = createDefaultPipeline();
+            }
+            return pipeline;
+        }
+
         public CvPipeline getPipeline() throws Exception {
+            CvPipeline pipeline = getOrCreatePipeline();
             pipeline.setProperty("camera", VisionUtils.getBottomVisionCamera());
             return pipeline;
         }
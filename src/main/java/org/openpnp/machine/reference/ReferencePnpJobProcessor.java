@@ -40,6 +40,7 @@ import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
 import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
+import org.openpnp.model.StateJournal;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.FiducialLocator;
 import org.openpnp.spi.Head;
@@ -273,6 +274,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
         fireTextStatus("Checking job for setup errors.");
 
+        // Placements are only journaled for jobs that have been saved, see getJournalKey().
+        StateJournal journal =
+                job.getFile() == null ? null : Configuration.get().getStateJournal();
+        int resumed = 0;
         for (BoardLocation boardLocation : job.getBoardLocations()) {
             // Only check enabled boards
             if (!boardLocation.isEnabled()) {
@@ -310,9 +315,20 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 // Make sure there is at least one compatible and enabled feeder available
                 findFeeder(machine, placement.getPart());
 
+                // If OpenPnP stopped part way through this job, don't place again what was
+                // already placed.
+                if (journal != null && journal.isPlacementComplete(getJournalKey(jobPlacement))) {
+                    jobPlacement.status = Status.Complete;
+                    resumed++;
+                }
+
                 jobPlacements.add(jobPlacement);
             }
         }
+        if (resumed > 0) {
+            Logger.info("Resuming job, {} placements were already placed.", resumed);
+            fireTextStatus("Resuming job, %d placements were already placed.", resumed);
+        }
 
         // Everything looks good, so prepare the machine.
         fireTextStatus("Preparing machine.");
@@ -721,6 +737,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             // Mark the placement as finished
             jobPlacement.status = Status.Complete;
+            StateJournal journal =
+                    job.getFile() == null ? null : Configuration.get().getStateJournal();
+            if (journal != null) {
+                journal.putPlacementComplete(getJournalKey(jobPlacement));
+            }
 
             plannedPlacement.stepComplete = true;
 
@@ -756,6 +777,15 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         params.put("job", job);
         params.put("jobProcessor", this);
         Configuration.get().getScripting().on("Job.Finished", params);
+
+        // The job ran to the end or was stopped on purpose, so the next run starts over.
+        StateJournal journal = Configuration.get().getStateJournal();
+        if (journal != null) {
+            journal.removePlacements();
+        }
+
+        // Save the feeder counts and other machine state the job changed.
+        Configuration.get().requestSave();
     }
 
     protected void doReset() throws Exception {
@@ -779,6 +809,15 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
 
+    /**
+     * Identifies the placement in the state journal by the job file, the position of its board in
+     * the job, since a board can be in a job more than once, and its id.
+     */
+    protected String getJournalKey(JobPlacement jobPlacement) {
+        return job.getFile() + "/" + job.getBoardLocations().indexOf(jobPlacement.boardLocation)
+                + "/" + jobPlacement.placement.getId();
+    }
+
     protected void clearStepComplete() {
         for (PlannedPlacement plannedPlacement : plannedPlacements) {
             plannedPlacement.stepComplete = false;
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.highgui.Highgui;
+import org.openpnp.CameraListener;
+import org.openpnp.machine.reference.camera.FrameRecording.Encoding;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.spi.Camera;
+import org.openpnp.util.OpenCvUtils;
+import org.pmw.tinylog.Logger;
+
+/**
+ * A CameraListener that appends every frame it receives, along with the time and the camera's
+ * location, to a frame recording that can be played back with ReplayCamera. See FrameRecording
+ * for the file format.
+ *
+ * The file is written through a memory mapping that is extended in MAP_SIZE chunks, so recording
+ * a frame is a copy into the page cache and does not block on the disk. Raw encoding is the
+ * cheapest to record, PNG trades CPU time during recording for a much smaller file.
+ *
+ * Register it with ReferenceCamera.addCaptureListener() to record the frames vision operations
+ * use, or with Camera.startContinuousCapture() to record the live view.
+ */
+public class FrameRecorder implements CameraListener, Closeable {
+    private static final long MAP_SIZE = 64 * 1024 * 1024;
+
+    private final Camera camera;
+    private final Encoding encoding;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private long position;
+    private int frameCount;
+
+    public FrameRecorder(Camera camera, File file, Encoding encoding) throws IOException {
+        this.camera = camera;
+        this.encoding = encoding;
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        channel.truncate(0);
+        map(0, FrameRecording.FILE_HEADER_SIZE);
+        buffer.putInt(FrameRecording.MAGIC);
+        buffer.putInt(FrameRecording.VERSION);
+        position = FrameRecording.FILE_HEADER_SIZE;
+    }
+
+    private void map(long start, long minimumSize) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                Math.max(MAP_SIZE, minimumSize));
+        bufferStart = start;
+    }
+
+    @Override
+    public void frameReceived(BufferedImage img) {
+        try {
+            write(img);
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Failed to record frame from {}", camera);
+        }
+    }
+
+    public synchronized void write(BufferedImage img) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Recorder is closed.");
+        }
+        Location location = camera.getLocation().convertToUnits(LengthUnit.Millimeters);
+        Mat mat = OpenCvUtils.toMat(img);
+        byte[] payload;
+        if (encoding == Encoding.Png) {
+            MatOfByte png = new MatOfByte();
+            Highgui.imencode(".png", mat, png);
+            payload = png.toArray();
+            png.release();
+        }
+        else {
+            payload = new byte[(int) (mat.total() * mat.elemSize())];
+            mat.get(0, 0, payload);
+        }
+
+        long recordSize = FrameRecording.RECORD_HEADER_SIZE + payload.length;
+        if (position + recordSize > bufferStart + buffer.capacity()) {
+            map(position, recordSize);
+        }
+        buffer.position((int) (position - bufferStart));
+        buffer.putInt(FrameRecording.RECORD_MARKER);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putDouble(location.getX());
+        buffer.putDouble(location.getY());
+        buffer.putDouble(location.getZ());
+        buffer.putDouble(location.getRotation());
+        buffer.putInt(mat.cols());
+        buffer.putInt(mat.rows());
+        buffer.putInt(mat.type());
+        buffer.put((byte) encoding.ordinal());
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        mat.release();
+
+        position += recordSize;
+        frameCount++;
+    }
+
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Flushes the recording and trims the unused tail of the last mapped chunk. If the trim fails,
+     * as it can on platforms that do not allow truncating a file that is still mapped, the file
+     * is left padded with zeros which FrameRecording ignores.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        buffer.force();
+        buffer = null;
+        try {
+            channel.truncate(position);
+        }
+        catch (IOException e) {
+            Logger.debug(e, "Unable to trim frame recording");
+        }
+        finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.highgui.Highgui;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.util.OpenCvUtils;
+
+/**
+ * Read side of the frame recording format written by FrameRecorder.
+ *
+ * A recording is a single append only file. It starts with a file header (MAGIC, VERSION) and is
+ * followed by one record per frame. Each record is a fixed size header holding the capture
+ * timestamp, the camera location in millimeters, the frame geometry and the payload encoding,
+ * followed by the payload itself which is either the raw BGR pixels or a PNG.
+ *
+ * Opening a recording walks the record headers to build an in memory index, so frames can be
+ * looked up by time or location without reading any pixels. A record with a bad marker or a
+ * payload that runs past the end of the file ends the index, which means a recording that was cut
+ * short by a crash is still readable up to the last complete frame.
+ */
+public class FrameRecording implements Closeable {
+    static final int MAGIC = 0x4F50464D; // "OPFM"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+
+    static final int RECORD_MARKER = 0x46524D45; // "FRME"
+    /**
+     * marker, timestamp, x, y, z, rotation, width, height, type, encoding, payload length
+     */
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 8 * 4 + 4 + 4 + 4 + 1 + 4;
+
+    /**
+     * Frames whose locations are within this many millimeters of each other are considered to
+     * have been captured at the same spot.
+     */
+    private static final double LOCATION_TOLERANCE = 0.001;
+
+    public enum Encoding {
+        Raw,
+        Png
+    }
+
+    public static class Frame {
+        private final int index;
+        private final long offset;
+        private final long timestamp;
+        private final Location location;
+        private final int width;
+        private final int height;
+        private final int type;
+        private final Encoding encoding;
+        private final int length;
+
+        Frame(int index, long offset, long timestamp, Location location, int width, int height,
+                int type, Encoding encoding, int length) {
+            this.index = index;
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.location = location;
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            this.encoding = encoding;
+            this.length = length;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Capture time in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Camera location at capture time, in millimeters.
+         */
+        public Location getLocation() {
+            return location;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public Encoding getEncoding() {
+            return encoding;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final List<Frame> frames;
+
+    public FrameRecording(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        try {
+            this.frames = Collections.unmodifiableList(readIndex());
+        }
+        catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    private List<Frame> readIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Math.max(FILE_HEADER_SIZE, RECORD_HEADER_SIZE));
+        header.limit(FILE_HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a frame recording.");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported frame recording version " + version + ".");
+        }
+
+        List<Frame> frames = new ArrayList<>();
+        long size = channel.size();
+        long offset = FILE_HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            header.limit(RECORD_HEADER_SIZE);
+            readFully(header, offset);
+            if (header.getInt() != RECORD_MARKER) {
+                break;
+            }
+            long timestamp = header.getLong();
+            Location location = new Location(LengthUnit.Millimeters, header.getDouble(),
+                    header.getDouble(), header.getDouble(), header.getDouble());
+            int width = header.getInt();
+            int height = header.getInt();
+            int type = header.getInt();
+            int encoding = header.get();
+            int length = header.getInt();
+            if (encoding < 0 || encoding >= Encoding.values().length || length < 0
+                    || offset + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            frames.add(new Frame(frames.size(), offset + RECORD_HEADER_SIZE, timestamp, location,
+                    width, height, type, Encoding.values()[encoding], length));
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return frames;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of frame recording.");
+            }
+        }
+        buffer.flip();
+    }
+
+    public List<Frame> getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the frame that was captured closest to the given X, Y location. When more than one
+     * frame was captured at that location, which is normal when vision retries or when the camera
+     * does not move, the first one recorded after the previously served frame is returned and the
+     * search wraps around to the first one. This makes replaying a sequence of captures at the same
+     * spot return the frames in the order they were recorded.
+     *
+     * @param location
+     * @param previous Index of the previously served frame or -1.
+     * @return The frame or null if the recording is empty.
+     */
+    public Frame findClosest(Location location, int previous) {
+        location = location.convertToUnits(LengthUnit.Millimeters);
+        double best = Double.MAX_VALUE;
+        for (Frame frame : frames) {
+            best = Math.min(best, frame.location.getLinearDistanceTo(location));
+        }
+        Frame first = null;
+        for (Frame frame : frames) {
+            if (frame.location.getLinearDistanceTo(location) > best + LOCATION_TOLERANCE) {
+                continue;
+            }
+            if (first == null) {
+                first = frame;
+            }
+            if (frame.index > previous) {
+                return frame;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the last frame captured at or before the given offset in milliseconds from the start
+     * of the recording. Offsets past the end wrap around so that a recording can be looped.
+     *
+     * @return The frame or null if the recording is empty.
+     */
+    public Frame findByTime(long offset) {
+        if (frames.isEmpty()) {
+            return null;
+        }
+        long start = frames.get(0).timestamp;
+        long duration = frames.get(frames.size() - 1).timestamp - start + 1;
+        long timestamp = start + Math.floorMod(offset, duration);
+        int low = 0;
+        int high = frames.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (frames.get(mid).timestamp <= timestamp) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return frames.get(low);
+    }
+
+    /**
+     * Decodes the frame into a new Mat. The caller owns the returned Mat.
+     */
+    public synchronized Mat readMat(Frame frame) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(frame.length);
+        readFully(payload, frame.offset);
+        if (frame.encoding == Encoding.Png) {
+            MatOfByte png = new MatOfByte();
+            png.fromArray(payload.array());
+            Mat mat = Highgui.imdecode(png, Highgui.CV_LOAD_IMAGE_UNCHANGED);
+            png.release();
+            return mat;
+        }
+        Mat mat = new Mat(frame.height, frame.width, frame.type);
+        mat.put(0, 0, payload.array());
+        return mat;
+    }
+
+    public BufferedImage read(Frame frame) throws IOException {
+        Mat mat = readMat(frame);
+        BufferedImage image = OpenCvUtils.toBufferedImage(mat);
+        mat.release();
+        return image;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
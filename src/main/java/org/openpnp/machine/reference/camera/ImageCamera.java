@@ -19,7 +19,6 @@
 
 package org.openpnp.machine.reference.camera;
 
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeSupport;
 import java.net.URL;
@@ -27,6 +26,8 @@ import java.net.URL;
 import javax.imageio.ImageIO;
 import javax.swing.Action;
 
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.openpnp.CameraListener;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.ReferenceCamera;
@@ -35,6 +36,7 @@ import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.spi.PropertySheetHolder;
+import org.openpnp.util.OpenCvUtils;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.core.Commit;
@@ -54,7 +56,7 @@ public class ImageCamera extends ReferenceCamera implements Runnable {
     @Attribute(required = false)
     private int height = 480;
 
-    private BufferedImage source;
+    private Mat source;
 
     private Thread thread;
 
@@ -103,6 +105,7 @@ public class ImageCamera extends ReferenceCamera implements Runnable {
 
     private synchronized void start() {
         if (thread == null) {
+            preloadUndistortionMaps();
             thread = new Thread(this);
             thread.setDaemon(true);
             thread.start();
@@ -122,13 +125,6 @@ public class ImageCamera extends ReferenceCamera implements Runnable {
 
     @Override
     public synchronized BufferedImage internalCapture() {
-        /*
-         * Create a buffer that we will render the center tile and it's surrounding tiles to.
-         */
-        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-        Graphics gFrame = frame.getGraphics();
-
         Location location = getLocation();
         double locationX = location.getX();
         double locationY = location.getY();
@@ -137,26 +133,53 @@ public class ImageCamera extends ReferenceCamera implements Runnable {
         double pixelY = locationY / getUnitsPerPixel().getY();
 
         int dx1 = (int) (pixelX - (width / 2));
-        int dy1 = (int) (source.getHeight() - (pixelY + (height / 2)));
+        int dy1 = (int) (source.rows() - (pixelY + (height / 2)));
 
-        gFrame.drawImage(source, 0, 0, width - 1, height - 1, dx1, dy1, dx1 + width - 1,
-                dy1 + height - 1, null);
-
-        gFrame.dispose();
+        return transformImage(renderFrame(dx1, dy1));
+    }
 
-        return transformImage(frame);
+    /**
+     * Returns the width x height tile of the source image with it's top left corner at dx1, dy1.
+     * When the tile lies entirely within the source this is a submat view of the source and no
+     * pixels are copied. Otherwise the parts of the source that are in view are copied into a
+     * black frame.
+     */
+    private Mat renderFrame(int dx1, int dy1) {
+        Rect tile = new Rect(dx1, dy1, width, height);
+        if (dx1 >= 0 && dy1 >= 0 && dx1 + width <= source.cols() && dy1 + height <= source.rows()) {
+            return source.submat(tile);
+        }
+        Mat frame = Mat.zeros(height, width, source.type());
+        int x1 = Math.max(dx1, 0);
+        int y1 = Math.max(dy1, 0);
+        int x2 = Math.min(dx1 + width, source.cols());
+        int y2 = Math.min(dy1 + height, source.rows());
+        if (x2 > x1 && y2 > y1) {
+            Mat src = source.submat(y1, y2, x1, x2);
+            Mat dst = frame.submat(y1 - dy1, y2 - dy1, x1 - dx1, x2 - dx1);
+            src.copyTo(dst);
+            src.release();
+            dst.release();
+        }
+        return frame;
     }
 
     private synchronized void initialize() throws Exception {
         stop();
 
+        BufferedImage image;
         if (sourceUri.startsWith("classpath://")) {
-            source = ImageIO.read(getClass().getClassLoader()
+            image = ImageIO.read(getClass().getClassLoader()
                     .getResourceAsStream(sourceUri.substring("classpath://".length())));
         }
         else {
-            source = ImageIO.read(new URL(sourceUri));
+            image = ImageIO.read(new URL(sourceUri));
+        }
+        // Keep the source as a BGR Mat so that frames can be served as views into it.
+        if (source != null) {
+            source.release();
         }
+        source = OpenCvUtils.toMat(image);
 
         if (listeners.size() > 0) {
             start();
@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2017 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.highgui.Highgui;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.CameraListener;
+import org.openpnp.gui.support.Wizard;
+import org.openpnp.machine.reference.ReferenceCamera;
+import org.openpnp.machine.reference.camera.wizards.MjpegCameraConfigurationWizard;
+import org.openpnp.spi.PropertySheetHolder;
+import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
+
+/**
+ * A Camera implementation for IP cameras and streaming servers that serve MJPEG over HTTP using
+ * multipart/x-mixed-replace. A single connection is held open and a reader thread keeps the most
+ * recent JPEG frame from the stream. Frames are only decoded, with OpenCV, when they are captured.
+ */
+public class MjpegCamera extends ReferenceCamera implements Runnable {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 5000;
+    private static final int FRAME_TIMEOUT_MS = 2000;
+    private static final int RECONNECT_DELAY_MS = 1000;
+    private static final int MAX_HEADER_LINE_LENGTH = 1024;
+
+    @Attribute(required = false)
+    private String url;
+
+    @Attribute(required = false)
+    private String username;
+
+    @Attribute(required = false)
+    private String password;
+
+    @Attribute(required = false)
+    private int resizeWidth;
+
+    @Attribute(required = false)
+    private int resizeHeight;
+
+    @Attribute(required = false)
+    private int fps = 24;
+
+    private Thread thread;
+    private Thread streamThread;
+    private boolean dirty = false;
+
+    /**
+     * Guards the frame buffer that the stream thread publishes completed JPEG frames into.
+     */
+    private final Object frameLock = new Object();
+    private byte[] frameData = new byte[0];
+    private int frameLength;
+    private long frameNumber;
+
+    /**
+     * Length of the frame most recently read by readJpeg. Only used by the stream thread.
+     */
+    private int lastJpegLength;
+
+    /**
+     * Native copy of the most recent JPEG frame, reused between captures and only grown when a
+     * larger frame arrives.
+     */
+    private Mat jpegMat;
+
+    public MjpegCamera() {}
+
+    @Override
+    public synchronized BufferedImage internalCapture() {
+        if (thread == null) {
+            initCamera();
+        }
+        Mat mat = null;
+        try {
+            Mat jpeg;
+            synchronized (frameLock) {
+                long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MS;
+                while (frameNumber == 0) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0 || streamThread == null) {
+                        return null;
+                    }
+                    frameLock.wait(wait);
+                }
+                if (jpegMat == null || jpegMat.cols() != frameData.length) {
+                    if (jpegMat != null) {
+                        jpegMat.release();
+                    }
+                    jpegMat = new Mat(1, frameData.length, CvType.CV_8UC1);
+                }
+                // Mat.put() stops at the end of the Mat, so putting into a header of just the
+                // frame's length copies only the frame rather than the whole buffer.
+                jpeg = jpegMat.colRange(0, frameLength);
+                jpeg.put(0, 0, frameData);
+            }
+            mat = Highgui.imdecode(jpeg, Highgui.CV_LOAD_IMAGE_COLOR);
+            jpeg.release();
+            if (mat.empty()) {
+                mat.release();
+                return null;
+            }
+            mat = resize(mat);
+            BufferedImage image = transformImage(mat);
+            mat = null;
+            return image;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (Exception e) {
+            Logger.warn(e);
+            return null;
+        }
+        finally {
+            if (mat != null) {
+                mat.release();
+            }
+        }
+    }
+
+    private Mat resize(Mat mat) {
+        int width = resizeWidth == 0 ? mat.cols() : resizeWidth;
+        int height = resizeHeight == 0 ? mat.rows() : resizeHeight;
+        if (width == mat.cols() && height == mat.rows()) {
+            return mat;
+        }
+        Mat dst = new Mat();
+        Imgproc.resize(mat, dst, new Size(width, height), 0, 0, Imgproc.INTER_AREA);
+        mat.release();
+        return dst;
+    }
+
+    @Override
+    public synchronized void startContinuousCapture(CameraListener listener, int maximumFps) {
+        if (thread == null) {
+            initCamera();
+        }
+        super.startContinuousCapture(listener, maximumFps);
+    }
+
+    public void run() {
+        while (!Thread.interrupted()) {
+            try {
+                if (!listeners.isEmpty()) {
+                    BufferedImage image = internalCapture();
+                    if (image != null) {
+                        broadcastCapture(image);
+                    }
+                }
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            try {
+                Thread.sleep(1000 / fps);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Holds a single connection to the stream open and reads frames from it for as long as the
+     * thread is running, reconnecting if the connection drops.
+     */
+    private void readStream() {
+        byte[] buffer = new byte[64 * 1024];
+        while (!Thread.currentThread().isInterrupted()) {
+            HttpURLConnection connection = null;
+            try {
+                connection = openConnection();
+                InputStream in = new BufferedInputStream(connection.getInputStream());
+                while (!Thread.currentThread().isInterrupted()) {
+                    int contentLength = readPartHeaders(in);
+                    int length;
+                    if (contentLength >= 0) {
+                        buffer = ensureCapacity(buffer, contentLength, 0);
+                        readFully(in, buffer, contentLength);
+                        length = contentLength;
+                    }
+                    else {
+                        buffer = readJpeg(in, buffer);
+                        length = lastJpegLength;
+                    }
+                    buffer = publishFrame(buffer, length);
+                }
+            }
+            catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                Logger.warn("Error reading MJPEG stream {} for camera {}: {}", url, this,
+                        e.toString());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                }
+                catch (InterruptedException e1) {
+                    break;
+                }
+            }
+            finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (username != null && !username.isEmpty()) {
+            String credentials = username + ":" + (password == null ? "" : password);
+            connection.setRequestProperty("Authorization", "Basic "
+                    + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("HTTP " + status + " from " + url);
+        }
+        Logger.debug("Camera {} connected to {} ({})", this, url, connection.getContentType());
+        return connection;
+    }
+
+    /**
+     * Swaps the just read frame into the shared frame buffer and returns the previous shared
+     * buffer for the stream thread to read the next frame into. No buffers are allocated once the
+     * stream reaches its steady state frame size.
+     */
+    private byte[] publishFrame(byte[] buffer, int length) {
+        synchronized (frameLock) {
+            byte[] previous = frameData;
+            frameData = buffer;
+            frameLength = length;
+            frameNumber++;
+            frameLock.notifyAll();
+            return previous.length >= buffer.length ? previous : new byte[buffer.length];
+        }
+    }
+
+    /**
+     * Reads the boundary and headers that precede a part's body. Returns the Content-Length of
+     * the part or -1 if the server did not send one.
+     */
+    private static int readPartHeaders(InputStream in) throws IOException {
+        int contentLength = -1;
+        boolean headers = false;
+        while (true) {
+            String line = readLine(in);
+            if (line.isEmpty()) {
+                if (headers) {
+                    return contentLength;
+                }
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (line.startsWith("--") || colon < 0) {
+                continue;
+            }
+            headers = true;
+            if (line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) != '\n') {
+            if (ch == -1) {
+                throw new EOFException();
+            }
+            if (ch != '\r' && sb.length() < MAX_HEADER_LINE_LENGTH) {
+                sb.append((char) ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Fallback for servers that do not send a Content-Length with each part: reads from the
+     * JPEG start of image marker through the end of image marker.
+     */
+    private byte[] readJpeg(InputStream in, byte[] buffer) throws IOException {
+        int prev = -1;
+        int ch;
+        while (true) {
+            ch = in.read();
+            if (ch == -1) {
+                throw new EOFException();
+            }
+            if (prev == 0xff && ch == 0xd8) {
+                break;
+            }
+            prev = ch;
+        }
+        buffer[0] = (byte) 0xff;
+        buffer[1] = (byte) 0xd8;
+        int length = 2;
+        prev = ch;
+        while (true) {
+            ch = in.read();
+            if (ch == -1) {
+                throw new EOFException();
+            }
+            buffer = ensureCapacity(buffer, length + 1, length);
+            buffer[length++] = (byte) ch;
+            if (prev == 0xff && ch == 0xd9) {
+                break;
+            }
+            prev = ch;
+        }
+        lastJpegLength = length;
+        return buffer;
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int capacity, int preserve) {
+        if (buffer.length >= capacity) {
+            return buffer;
+        }
+        byte[] b = new byte[Math.max(capacity, buffer.length * 2)];
+        System.arraycopy(buffer, 0, b, 0, preserve);
+        return b;
+    }
+
+    private void stopThreads() {
+        boolean interrupted = false;
+        for (Thread t : new Thread[] {thread, streamThread}) {
+            if (t != null) {
+                t.interrupt();
+                try {
+                    t.join(3000);
+                }
+                catch (InterruptedException e) {
+                    Logger.warn("Interrupted while waiting for {} to stop.", t.getName());
+                    interrupted = true;
+                }
+            }
+        }
+        thread = null;
+        streamThread = null;
+        // Restored only after both threads have been told to stop, so that the second join is
+        // not cut short by the first interruption.
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void initCamera() {
+        stopThreads();
+        setDirty(false);
+        width = null;
+        height = null;
+        synchronized (frameLock) {
+            frameNumber = 0;
+        }
+        if (url != null && !url.isEmpty()) {
+            streamThread = new Thread(this::readStream, getClass().getSimpleName() + " " + url);
+            streamThread.setDaemon(true);
+            streamThread.start();
+        }
+        preloadUndistortionMaps();
+        thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        stopThreads();
+        if (jpegMat != null) {
+            jpegMat.release();
+            jpegMat = null;
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public synchronized void setUrl(String url) {
+        this.url = url;
+        setDirty(true);
+
+        initCamera();
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+        setDirty(true);
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+        setDirty(true);
+    }
+
+    public int getResizeWidth() {
+        return resizeWidth;
+    }
+
+    public void setResizeWidth(int resizeWidth) {
+        this.resizeWidth = resizeWidth;
+    }
+
+    public int getResizeHeight() {
+        return resizeHeight;
+    }
+
+    public void setResizeHeight(int resizeHeight) {
+        this.resizeHeight = resizeHeight;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public void setFps(int fps) {
+        this.fps = fps;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    @Override
+    public Wizard getConfigurationWizard() {
+        return new MjpegCameraConfigurationWizard(this);
+    }
+
+    @Override
+    public String getPropertySheetHolderTitle() {
+        return getClass().getSimpleName() + " " + getName();
+    }
+
+    @Override
+    public PropertySheetHolder[] getChildPropertySheetHolders() {
+        return null;
+    }
+}
@@ -281,6 +281,7 @@ public class OnvifIPCamera extends ReferenceCamera implements Runnable {
             e.printStackTrace();
             return;
         }
+        preloadUndistortionMaps();
         thread = new Thread(this);
         thread.setDaemon(true);
         thread.start();
@@ -184,6 +184,7 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
             e.printStackTrace();
             return;
         }
+        preloadUndistortionMaps();
         thread = new Thread(this);
         thread.setDaemon(true);
         thread.start();
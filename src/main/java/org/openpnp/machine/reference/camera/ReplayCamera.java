@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import org.openpnp.CameraListener;
+import org.openpnp.gui.support.Wizard;
+import org.openpnp.machine.reference.ReferenceCamera;
+import org.openpnp.machine.reference.camera.FrameRecording.Frame;
+import org.openpnp.machine.reference.camera.wizards.ReplayCameraConfigurationWizard;
+import org.openpnp.spi.PropertySheetHolder;
+import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
+
+/**
+ * A camera that plays back a frame recording made with FrameRecorder. Together with the NullDriver
+ * this allows a job's vision to be run again offline against the frames that were captured on the
+ * machine, which is useful for reproducing vision failures and for comparing pipeline changes.
+ *
+ * In Location mode each capture returns the recorded frame closest to where the camera is now,
+ * and repeated captures at the same spot step through the frames recorded there in order. In Time
+ * mode the recording is played back, looped, in real time from the first capture.
+ *
+ * Recorded frames have already been through the recording camera's transforms, so they are
+ * served as is and this camera's own transform settings should be left at their defaults.
+ */
+public class ReplayCamera extends ReferenceCamera implements Runnable {
+    public enum ReplayMode {
+        Location,
+        Time
+    }
+
+    @Attribute(required = false)
+    private String file = "";
+
+    @Attribute(required = false)
+    private ReplayMode mode = ReplayMode.Location;
+
+    @Attribute(required = false)
+    private int fps = 24;
+
+    private FrameRecording recording;
+
+    private int lastFrameIndex = -1;
+
+    private long playbackStart = -1;
+
+    private Thread thread;
+
+    public String getFile() {
+        return file;
+    }
+
+    public synchronized void setFile(String file) {
+        String oldValue = this.file;
+        this.file = file;
+        firePropertyChange("file", oldValue, file);
+        closeRecording();
+    }
+
+    public ReplayMode getMode() {
+        return mode;
+    }
+
+    public synchronized void setMode(ReplayMode mode) {
+        ReplayMode oldValue = this.mode;
+        this.mode = mode;
+        firePropertyChange("mode", oldValue, mode);
+        lastFrameIndex = -1;
+        playbackStart = -1;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public void setFps(int fps) {
+        int oldValue = this.fps;
+        this.fps = fps;
+        firePropertyChange("fps", oldValue, fps);
+    }
+
+    @Override
+    public synchronized BufferedImage internalCapture() {
+        try {
+            if (recording == null) {
+                if (file == null || file.isEmpty()) {
+                    return null;
+                }
+                recording = new FrameRecording(new File(file));
+                Logger.debug("Opened {} with {} frames", file, recording.getFrames().size());
+            }
+            Frame frame;
+            if (mode == ReplayMode.Time) {
+                long now = System.currentTimeMillis();
+                if (playbackStart < 0) {
+                    playbackStart = now;
+                }
+                frame = recording.findByTime(now - playbackStart);
+            }
+            else {
+                frame = recording.findClosest(getLocation(), lastFrameIndex);
+            }
+            if (frame == null) {
+                return null;
+            }
+            lastFrameIndex = frame.getIndex();
+            return recording.read(frame);
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Unable to replay {}", file);
+            closeRecording();
+            return null;
+        }
+    }
+
+    private synchronized void closeRecording() {
+        if (recording != null) {
+            try {
+                recording.close();
+            }
+            catch (IOException e) {
+                Logger.debug(e);
+            }
+            recording = null;
+        }
+        lastFrameIndex = -1;
+        playbackStart = -1;
+    }
+
+    @Override
+    public synchronized void startContinuousCapture(CameraListener listener, int maximumFps) {
+        start();
+        super.startContinuousCapture(listener, maximumFps);
+    }
+
+    @Override
+    public synchronized void stopContinuousCapture(CameraListener listener) {
+        super.stopContinuousCapture(listener);
+        if (listeners.size() == 0) {
+            stop();
+        }
+    }
+
+    private synchronized void stop() {
+        if (thread != null && thread.isAlive()) {
+            thread.interrupt();
+            try {
+                thread.join(3000);
+            }
+            catch (Exception e) {
+
+            }
+            thread = null;
+        }
+    }
+
+    private synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void run() {
+        while (!Thread.interrupted()) {
+            // The live view shows the frame last served to vision rather than stepping through
+            // the recording, so that it does not disturb the Location mode frame sequence.
+            BufferedImage frame = null;
+            synchronized (this) {
+                if (mode == ReplayMode.Time || lastFrameIndex < 0) {
+                    frame = internalCapture();
+                }
+                else if (recording != null) {
+                    try {
+                        frame = recording.read(recording.getFrames().get(lastFrameIndex));
+                    }
+                    catch (IOException e) {
+                        Logger.debug(e);
+                    }
+                }
+            }
+            if (frame != null) {
+                broadcastCapture(frame);
+            }
+            try {
+                Thread.sleep(1000 / fps);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        stop();
+        closeRecording();
+    }
+
+    @Override
+    public Wizard getConfigurationWizard() {
+        return new ReplayCameraConfigurationWizard(this);
+    }
+
+    @Override
+    public String getPropertySheetHolderTitle() {
+        return getClass().getSimpleName() + " " + getName();
+    }
+
+    @Override
+    public PropertySheetHolder[] getChildPropertySheetHolders() {
+        return null;
+    }
+}
@@ -1,14 +1,19 @@
 package org.openpnp.machine.reference.camera;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.openpnp.CameraListener;
 import org.openpnp.gui.support.Wizard;
@@ -16,6 +21,7 @@ import org.openpnp.machine.reference.ReferenceCamera;
 import org.openpnp.machine.reference.camera.wizards.SimulatedUpCameraConfigurationWizard;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Footprint;
+import org.openpnp.model.Footprint.Pad;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Part;
@@ -29,6 +35,8 @@ import org.simpleframework.xml.Root;
 
 @Root
 public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
+    private static final int MAX_CACHED_FOOTPRINT_SHAPES = 64;
+
     protected int width = 1280;
 
     protected int height = 1280;
@@ -40,6 +48,15 @@ public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
     @Element(required=false)
     private Location errorOffsets = new Location(LengthUnit.Millimeters);
 
+    @SuppressWarnings("serial")
+    private final Map<FootprintShapesKey, Shape[]> footprintShapes =
+            new LinkedHashMap<FootprintShapesKey, Shape[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<FootprintShapesKey, Shape[]> eldest) {
+                    return size() > MAX_CACHED_FOOTPRINT_SHAPES;
+                }
+            };
+
     public SimulatedUpCamera() {
         setUnitsPerPixel(new Location(LengthUnit.Millimeters, 0.0234375D, 0.0234375D, 0, 0));
         setLooking(Looking.Up);
@@ -47,7 +64,9 @@ public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
 
     @Override
     public BufferedImage internalCapture() {
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // Render straight into a BGR image so that it can be converted to a Mat without first
+        // converting the pixel format.
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
         Graphics2D g = (Graphics2D) image.getGraphics();
         AffineTransform tx = g.getTransform();
         // invert the image in Y so that Y+ is up
@@ -89,7 +108,6 @@ public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
 
 
     private void drawNozzle(Graphics2D g, Nozzle nozzle) {
-        g.setStroke(new BasicStroke(2f));
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         LengthUnit units = LengthUnit.Millimeters;
@@ -120,11 +138,49 @@ public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
             throw new Error("Not yet supported.");
         }
         
+        Shape[] shapes = getFootprintShapes(footprint, unitsPerPixel, offsets.getRotation());
+
+        AffineTransform tx = g.getTransform();
+        g.translate(offsets.getX() / unitsPerPixel.getX(), offsets.getY() / unitsPerPixel.getY());
+
         // First draw the body in dark grey.
-        fillShape(g, footprint.getBodyShape(), new Color(60, 60, 60), unitsPerPixel, offsets, true);
+        g.setColor(new Color(60, 60, 60));
+        g.fill(shapes[0]);
         
         // Then draw the pads in white
-        fillShape(g, footprint.getPadsShape(), Color.white, unitsPerPixel, offsets, true);
+        g.setColor(Color.white);
+        g.fill(shapes[1]);
+
+        g.setTransform(tx);
+    }
+
+    /**
+     * Returns the body and pads shapes of the footprint, scaled to pixels and rotated to the given
+     * rotation plus the error offsets. Only the translation to the nozzle position is left for the
+     * caller to apply. Shapes are cached so that a part held still over the camera, or rotated
+     * back and forth, is not rebuilt and transformed on every frame.
+     */
+    private Shape[] getFootprintShapes(Footprint footprint, Location unitsPerPixel,
+            double rotation) {
+        FootprintShapesKey key = new FootprintShapesKey(footprint, unitsPerPixel, rotation,
+                errorOffsets);
+        synchronized (footprintShapes) {
+            Shape[] shapes = footprintShapes.get(key);
+            if (shapes == null) {
+                AffineTransform tx = new AffineTransform();
+                // Scale to pixels
+                tx.scale(1.0 / unitsPerPixel.getX(), 1.0 / unitsPerPixel.getY());
+                // Rotate to offsets
+                tx.rotate(Math.toRadians(Utils2D.normalizeAngle(rotation)));
+                // Translate and rotate to error offsets
+                tx.translate(errorOffsets.getX(), errorOffsets.getY());
+                tx.rotate(Math.toRadians(Utils2D.normalizeAngle(errorOffsets.getRotation())));
+                shapes = new Shape[] {new Path2D.Double(footprint.getBodyShape(), tx),
+                        new Path2D.Double(footprint.getPadsShape(), tx)};
+                footprintShapes.put(key, shapes);
+            }
+            return shapes;
+        }
     }
     
     private void fillShape(Graphics2D g, Shape shape, Color color, Location unitsPerPixel, Location offsets, boolean addError) {
@@ -217,4 +273,34 @@ public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
         // TODO Auto-generated method stub
         return null;
     }
+
+    /**
+     * Identifies a set of cached footprint shapes. The footprint's geometry is part of the key,
+     * rather than it's identity, so that edits made to a package's footprint are picked up.
+     */
+    private static class FootprintShapesKey {
+        private final List<Double> geometry = new ArrayList<>();
+
+        public FootprintShapesKey(Footprint footprint, Location unitsPerPixel, double rotation,
+                Location errorOffsets) {
+            Collections.addAll(geometry, footprint.getBodyWidth(), footprint.getBodyHeight(),
+                    unitsPerPixel.getX(), unitsPerPixel.getY(), rotation, errorOffsets.getX(),
+                    errorOffsets.getY(), errorOffsets.getRotation());
+            for (Pad pad : footprint.getPads()) {
+                Collections.addAll(geometry, pad.getX(), pad.getY(), pad.getWidth(),
+                        pad.getHeight(), pad.getRotation(), pad.getRoundness());
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return geometry.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof FootprintShapesKey
+                    && geometry.equals(((FootprintShapesKey) obj).geometry);
+        }
+    }
 }
@@ -161,6 +161,7 @@ public class Webcams extends ReferenceCamera implements Runnable, WebcamImageTra
             e.printStackTrace();
             return;
         }
+        preloadUndistortionMaps();
         thread = new Thread(this);
         thread.setDaemon(true);
         thread.start();
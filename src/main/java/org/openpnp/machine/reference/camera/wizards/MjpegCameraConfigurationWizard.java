@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 Jason von Nieda <jason@vonnieda.org>
+ * 
+ * This file is part of OpenPnP.
+ * 
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ * 
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera.wizards;
+
+import java.awt.Color;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.border.EtchedBorder;
+import javax.swing.border.TitledBorder;
+
+import org.openpnp.gui.components.ComponentDecorators;
+import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.machine.reference.camera.MjpegCamera;
+import org.openpnp.machine.reference.wizards.ReferenceCameraConfigurationWizard;
+
+import com.jgoodies.forms.layout.ColumnSpec;
+import com.jgoodies.forms.layout.FormLayout;
+import com.jgoodies.forms.layout.FormSpecs;
+import com.jgoodies.forms.layout.RowSpec;
+
+@SuppressWarnings("serial")
+public class MjpegCameraConfigurationWizard extends ReferenceCameraConfigurationWizard {
+    private final MjpegCamera camera;
+
+    private JPanel panelGeneral;
+
+    public MjpegCameraConfigurationWizard(MjpegCamera camera) {
+        super(camera);
+
+        this.camera = camera;
+
+        panelGeneral = new JPanel();
+        contentPanel.add(panelGeneral);
+        panelGeneral.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null),
+                "General", TitledBorder.LEADING, TitledBorder.TOP, null, new Color(0, 0, 0)));
+        panelGeneral.setLayout(new FormLayout(new ColumnSpec[] {
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,
+                FormSpecs.RELATED_GAP_COLSPEC,
+                        FormSpecs.DEFAULT_COLSPEC,},
+            new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,}));
+
+        lblUrl = new JLabel("Stream URL");
+        panelGeneral.add(lblUrl, "2, 2, right, default");
+
+        urlTextField = new JTextField();
+        panelGeneral.add(urlTextField, "4, 2");
+        urlTextField.setColumns(32);
+
+        lbluseFor_url = new JLabel("(http://host:port/path)");
+        panelGeneral.add(lbluseFor_url, "6, 2");
+
+        lblUsername = new JLabel("Username");
+        panelGeneral.add(lblUsername, "2, 4, right, default");
+
+        usernameTextField = new JTextField();
+        panelGeneral.add(usernameTextField, "4, 4");
+        usernameTextField.setColumns(16);
+
+        lbluseFor_un = new JLabel("(leave blank for none)");
+        panelGeneral.add(lbluseFor_un, "6, 4");
+
+        lblPassword = new JLabel("Password");
+        panelGeneral.add(lblPassword, "2, 6, right, default");
+
+        passwordTextField = new JTextField();
+        panelGeneral.add(passwordTextField, "4, 6");
+        passwordTextField.setColumns(16);
+
+        lbluseFor_pw = new JLabel("(leave blank for none)");
+        panelGeneral.add(lbluseFor_pw, "6, 6");
+
+        lblFps = new JLabel("FPS");
+        panelGeneral.add(lblFps, "2, 8, right, default");
+
+        fpsTextField = new JTextField();
+        panelGeneral.add(fpsTextField, "4, 8");
+        fpsTextField.setColumns(10);
+
+        lbluseFor_fps = new JLabel("(refresh rate)");
+        panelGeneral.add(lbluseFor_fps, "6, 8");
+
+        lblResizeWidth = new JLabel("Target Width");
+        panelGeneral.add(lblResizeWidth, "2, 10, right, default");
+
+        resizeWidthTextField = new JTextField();
+        panelGeneral.add(resizeWidthTextField, "4, 10");
+        resizeWidthTextField.setColumns(10);
+
+        lbluseFor_rw = new JLabel("(Use 0 for no resizing)");
+        panelGeneral.add(lbluseFor_rw, "6, 10");
+
+        lblResizeHeight = new JLabel("Target Height");
+        panelGeneral.add(lblResizeHeight, "2, 12, right, default");
+
+        resizeHeightTextField = new JTextField();
+        panelGeneral.add(resizeHeightTextField, "4, 12");
+        resizeHeightTextField.setColumns(10);
+
+        lbluseFor_rh = new JLabel("(Use 0 for no resizing)");
+        panelGeneral.add(lbluseFor_rh, "6, 12");
+    }
+    
+    @Override
+    public void createBindings() {
+        IntegerConverter intConverter = new IntegerConverter();
+        super.createBindings();
+        addWrappedBinding(camera, "resizeWidth", resizeWidthTextField, "text", intConverter);
+        addWrappedBinding(camera, "resizeHeight", resizeHeightTextField, "text", intConverter);
+        addWrappedBinding(camera, "fps", fpsTextField, "text", intConverter);
+        addWrappedBinding(camera, "username", usernameTextField, "text");
+        addWrappedBinding(camera, "password", passwordTextField, "text");
+        // Should always be last so that it doesn't trigger multiple camera reloads.
+        addWrappedBinding(camera, "url", urlTextField, "text");
+
+        ComponentDecorators.decorateWithAutoSelect(fpsTextField);
+        ComponentDecorators.decorateWithAutoSelect(urlTextField);
+        ComponentDecorators.decorateWithAutoSelect(usernameTextField);
+        ComponentDecorators.decorateWithAutoSelect(passwordTextField);
+        ComponentDecorators.decorateWithAutoSelect(resizeWidthTextField);
+        ComponentDecorators.decorateWithAutoSelect(resizeHeightTextField);
+    }
+
+    @Override
+    protected void saveToModel() {
+        super.saveToModel();
+        if (camera.isDirty()) {
+            camera.setUrl(camera.getUrl());
+        }
+    }
+
+    private JLabel lblUrl;
+    private JTextField urlTextField;
+    private JLabel lblUsername;
+    private JTextField usernameTextField;
+    private JLabel lblPassword;
+    private JTextField passwordTextField;
+    private JLabel lblFps;
+    private JTextField fpsTextField;
+    private JLabel lblResizeWidth;
+    private JTextField resizeWidthTextField;
+    private JLabel lblResizeHeight;
+    private JTextField resizeHeightTextField;
+    private JLabel lbluseFor_url;
+    private JLabel lbluseFor_un;
+    private JLabel lbluseFor_pw;
+    private JLabel lbluseFor_fps;
+    private JLabel lbluseFor_rw;
+    private JLabel lbluseFor_rh;
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ * 
+ * This file is part of OpenPnP.
+ * 
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ * 
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera.wizards;
+
+import java.awt.Color;
+import java.awt.FileDialog;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.io.File;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.border.EtchedBorder;
+import javax.swing.border.TitledBorder;
+
+import org.openpnp.gui.components.ComponentDecorators;
+import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.machine.reference.camera.ReplayCamera;
+import org.openpnp.machine.reference.camera.ReplayCamera.ReplayMode;
+import org.openpnp.machine.reference.wizards.ReferenceCameraConfigurationWizard;
+
+import com.jgoodies.forms.layout.ColumnSpec;
+import com.jgoodies.forms.layout.FormLayout;
+import com.jgoodies.forms.layout.FormSpecs;
+import com.jgoodies.forms.layout.RowSpec;
+
+@SuppressWarnings("serial")
+public class ReplayCameraConfigurationWizard extends ReferenceCameraConfigurationWizard {
+    private final ReplayCamera camera;
+
+    private JPanel panelGeneral;
+    private JLabel lblFile;
+    private JTextField textFieldFile;
+    private JButton btnBrowse;
+    private JLabel lblMode;
+    private JComboBox<ReplayMode> modeComboBox;
+    private JLabel lblFps;
+    private JTextField fpsTextField;
+
+    public ReplayCameraConfigurationWizard(ReplayCamera camera) {
+        super(camera);
+
+        this.camera = camera;
+
+        panelGeneral = new JPanel();
+        contentPanel.add(panelGeneral);
+        panelGeneral.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null),
+                "General", TitledBorder.LEADING, TitledBorder.TOP, null, new Color(0, 0, 0)));
+        panelGeneral.setLayout(new FormLayout(
+                new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
+                        FormSpecs.RELATED_GAP_COLSPEC, ColumnSpec.decode("default:grow"),
+                        FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
+                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
+
+        lblFile = new JLabel("Recording");
+        panelGeneral.add(lblFile, "2, 2, right, default");
+
+        textFieldFile = new JTextField();
+        panelGeneral.add(textFieldFile, "4, 2, fill, default");
+        textFieldFile.setColumns(10);
+
+        btnBrowse = new JButton(browseAction);
+        panelGeneral.add(btnBrowse, "6, 2");
+
+        lblMode = new JLabel("Replay By");
+        panelGeneral.add(lblMode, "2, 4, right, default");
+
+        modeComboBox = new JComboBox<>(ReplayMode.values());
+        panelGeneral.add(modeComboBox, "4, 4, left, default");
+
+        lblFps = new JLabel("FPS");
+        panelGeneral.add(lblFps, "2, 6, right, default");
+
+        fpsTextField = new JTextField();
+        panelGeneral.add(fpsTextField, "4, 6, left, default");
+        fpsTextField.setColumns(10);
+    }
+
+    @Override
+    public void createBindings() {
+        super.createBindings();
+        addWrappedBinding(camera, "mode", modeComboBox, "selectedItem");
+        addWrappedBinding(camera, "fps", fpsTextField, "text", new IntegerConverter());
+        addWrappedBinding(camera, "file", textFieldFile, "text");
+        ComponentDecorators.decorateWithAutoSelect(textFieldFile);
+        ComponentDecorators.decorateWithAutoSelect(fpsTextField);
+    }
+
+    private Action browseAction = new AbstractAction() {
+        {
+            putValue(NAME, "Browse");
+            putValue(SHORT_DESCRIPTION, "Browse");
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            FileDialog fileDialog = new FileDialog((Frame) getTopLevelAncestor());
+            fileDialog.setFilenameFilter((dir, name) -> name.toLowerCase().endsWith(".frames"));
+            fileDialog.setVisible(true);
+            if (fileDialog.getFile() == null) {
+                return;
+            }
+            File file = new File(new File(fileDialog.getDirectory()), fileDialog.getFile());
+            textFieldFile.setText(file.getAbsolutePath());
+        }
+    };
+}
@@ -38,18 +38,24 @@ import org.openpnp.util.MovableUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.simpleframework.xml.Element;
+import org.simpleframework.xml.core.Persist;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class AdvancedLoosePartFeeder extends ReferenceFeeder {
     private final static Logger logger = LoggerFactory.getLogger(AdvancedLoosePartFeeder.class);
 
+    /**
+     * Created on first use if the configuration does not have one, rather than for every feeder
+     * as it is loaded only to be replaced with the configured one.
+     */
     @Element(required = false)
-    private CvPipeline pipeline = createDefaultPipeline();
+    private CvPipeline pipeline;
 
     @Element(required = false)
-    private CvPipeline trainingPipeline = createDefaultTrainingPipeline();
+    private CvPipeline trainingPipeline;
 
     private Location pickLocation;
 
@@ -70,7 +76,9 @@ public class AdvancedLoosePartFeeder extends ReferenceFeeder {
     }
 
     private Location getPickLocation(Camera camera, Nozzle nozzle) throws Exception {
+        CvPipeline pipeline = getPipeline();
         // Process the pipeline to extract RotatedRect results
+        pipeline.setResultRetention(ResultRetention.Production);
         pipeline.setProperty("camera", camera);
         pipeline.setProperty("nozzle", nozzle);
         pipeline.setProperty("feeder", this);
@@ -105,7 +113,17 @@ public class AdvancedLoosePartFeeder extends ReferenceFeeder {
         return location;
     }
 
+    @Persist
+    private void persist() {
+        // Write the pipelines out even if they were never used, as they always were.
+        getPipeline();
+        getTrainingPipeline();
+    }
+
     public CvPipeline getPipeline() {
+        if (pipeline == null) {
+            pipeline = createDefaultPipeline();
+        }
         return pipeline;
     }
 
@@ -114,6 +132,9 @@ public class AdvancedLoosePartFeeder extends ReferenceFeeder {
     }
 
     public CvPipeline getTrainingPipeline() {
+        if (trainingPipeline == null) {
+            trainingPipeline = createDefaultTrainingPipeline();
+        }
         return trainingPipeline;
     }
 
@@ -38,7 +38,9 @@ import org.openpnp.util.MovableUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.simpleframework.xml.Element;
+import org.simpleframework.xml.core.Persist;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,8 +58,12 @@ import org.slf4j.LoggerFactory;
 public class ReferenceLoosePartFeeder extends ReferenceFeeder {
     private final static Logger logger = LoggerFactory.getLogger(ReferenceLoosePartFeeder.class);
 
+    /**
+     * Created on first use if the configuration does not have one, rather than for every feeder
+     * as it is loaded only to be replaced with the configured one.
+     */
     @Element(required = false)
-    private CvPipeline pipeline = createDefaultPipeline();
+    private CvPipeline pipeline;
 
     private Location pickLocation;
 
@@ -78,7 +84,9 @@ public class ReferenceLoosePartFeeder extends ReferenceFeeder {
     }
 
     private Location getPickLocation(Camera camera, Nozzle nozzle) throws Exception {
+        CvPipeline pipeline = getPipeline();
         // Process the pipeline to extract RotatedRect results
+        pipeline.setResultRetention(ResultRetention.Production);
         pipeline.setProperty("camera", camera);
         pipeline.setProperty("nozzle", nozzle);
         pipeline.setProperty("feeder", this);
@@ -113,7 +121,17 @@ public class ReferenceLoosePartFeeder extends ReferenceFeeder {
         return location;
     }
 
+    @Persist
+    private void persist() {
+        // Create the pipeline before writing so it is saved even if the feeder never used it,
+        // as it was before the pipeline was created lazily.
+        getPipeline();
+    }
+
     public CvPipeline getPipeline() {
+        if (pipeline == null) {
+            pipeline = createDefaultPipeline();
+        }
         return pipeline;
     }
 
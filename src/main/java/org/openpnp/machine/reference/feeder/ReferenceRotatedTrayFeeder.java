@@ -163,6 +163,11 @@ public class ReferenceRotatedTrayFeeder extends ReferenceFeeder {
 		firePropertyChange("feedCount", oldValue, feedCount);
 	}
 
+	@Override
+	protected void restoreFeedCount(int feedCount) {
+		this.feedCount = feedCount;
+	}
+
 	@Override
 	public String toString() {
 		return getName();
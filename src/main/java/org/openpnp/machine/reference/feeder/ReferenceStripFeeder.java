@@ -40,6 +40,7 @@ import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.util.MovableUtils;
 import org.openpnp.util.Utils2D;
+import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.FluentCv;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -105,6 +106,13 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
     @Attribute
     private int feedCount = 0;
 
+    /**
+     * Size of the square window, centered on the expected hole location, that vision is limited
+     * to when looking for the reference hole. Zero processes the full camera image.
+     */
+    @Element(required = false)
+    private Length visionRoiSize = new Length(0, LengthUnit.Millimeters);
+
     private Length holeDiameter = new Length(1.5, LengthUnit.Millimeters);
 
     private Length holePitch = new Length(4, LengthUnit.Millimeters);
@@ -257,6 +265,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         List<Location> holeLocations = new ArrayList<>();
         BufferedImage image = new FluentCv()
                 .setCamera(camera)
+                .setRoi(VisionUtils.getCenteredRoi(camera, visionRoiSize))
                 .settleAndCapture("original")
                 .saveDebugImage(ReferenceStripFeeder.class, "findClosestHole", "original")
                 .toGray()
@@ -341,6 +350,14 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         this.tapeWidth = tapeWidth;
     }
 
+    public Length getVisionRoiSize() {
+        return visionRoiSize;
+    }
+
+    public void setVisionRoiSize(Length visionRoiSize) {
+        this.visionRoiSize = visionRoiSize;
+    }
+
     public int getFeedCount() {
         return feedCount;
     }
@@ -352,6 +369,11 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    protected void restoreFeedCount(int feedCount) {
+        this.feedCount = feedCount;
+    }
+
     public Length getReferenceHoleToPartLinear() {
         return referenceHoleToPartLinear;
     }
@@ -127,6 +127,11 @@ public class ReferenceTrayFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    protected void restoreFeedCount(int feedCount) {
+        this.feedCount = feedCount;
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -87,6 +87,7 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
     private JTextField textFieldFeedEndY;
     private JTextField textFieldFeedEndZ;
     private JTextField textFieldTapeWidth;
+    private JTextField textFieldVisionRoiSize;
     private JLabel lblPartPitch;
     private JTextField textFieldPartPitch;
     private JPanel panelTapeSettings;
@@ -214,6 +215,15 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         chckbxUseVision = new JCheckBox("");
         panelTapeSettings.add(chckbxUseVision, "4, 8");
 
+        JLabel lblVisionRoiSize = new JLabel("Vision ROI Size");
+        lblVisionRoiSize.setToolTipText(
+                "Size of the area around the expected hole that vision searches. 0 searches the whole camera image.");
+        panelTapeSettings.add(lblVisionRoiSize, "8, 8, right, default");
+
+        textFieldVisionRoiSize = new JTextField();
+        panelTapeSettings.add(textFieldVisionRoiSize, "10, 8");
+        textFieldVisionRoiSize.setColumns(5);
+
         panelLocations = new JPanel();
         contentPanel.add(panelLocations);
         panelLocations.setBorder(new TitledBorder(null, "Locations", TitledBorder.LEADING,
@@ -316,9 +326,12 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         addWrappedBinding(feedEndLocation, "lengthZ", textFieldFeedEndZ, "text", lengthConverter);
 
         addWrappedBinding(feeder, "visionEnabled", chckbxUseVision, "selected");
+        addWrappedBinding(feeder, "visionRoiSize", textFieldVisionRoiSize, "text",
+                lengthConverter);
 
         ComponentDecorators.decorateWithAutoSelect(textFieldLocationRotation);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldTapeWidth);
+        ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldVisionRoiSize);
         ComponentDecorators.decorateWithAutoSelect(retryCountTf);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldPartPitch);
         ComponentDecorators.decorateWithAutoSelect(textFieldFeedCount);
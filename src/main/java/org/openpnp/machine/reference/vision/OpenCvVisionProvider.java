@@ -43,7 +43,9 @@ import org.openpnp.util.ImageUtils;
 import org.openpnp.util.LogUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.VisionUtils;
+import org.openpnp.vision.PyramidTemplateMatcher;
 import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Root;
 
 @Root
@@ -57,6 +59,36 @@ public class OpenCvVisionProvider implements VisionProvider {
 
     protected Camera camera;
 
+    /**
+     * When greater than 0 template matching is done coarse to fine with this many pyramid levels,
+     * see PyramidTemplateMatcher. 0 matches at full resolution.
+     */
+    @Attribute(required = false)
+    private int pyramidLevels = 0;
+
+    /**
+     * Refine getTemplateMatches() locations to a fraction of a pixel. Only used when pyramidLevels
+     * is greater than 0.
+     */
+    @Attribute(required = false)
+    private boolean subPixel = false;
+
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+
+    public void setPyramidLevels(int pyramidLevels) {
+        this.pyramidLevels = pyramidLevels;
+    }
+
+    public boolean isSubPixel() {
+        return subPixel;
+    }
+
+    public void setSubPixel(boolean subPixel) {
+        this.subPixel = subPixel;
+    }
+
     @Override
     public void setCamera(Camera camera) {
         this.camera = camera;
@@ -92,31 +124,48 @@ public class OpenCvVisionProvider implements VisionProvider {
 
         Mat templateMat = OpenCvUtils.toMat(template);
         Mat imageMat = OpenCvUtils.toMat(image);
-        Mat resultMat = new Mat();
-
-        Imgproc.matchTemplate(imageMat, templateMat, resultMat, Imgproc.TM_CCOEFF_NORMED);
+        Mat resultMat = null;
 
         Mat debugMat = null;
         if (LogUtils.isDebugEnabled()) {
             debugMat = imageMat.clone();
         }
 
-        MinMaxLocResult mmr = Core.minMaxLoc(resultMat);
-        double maxVal = mmr.maxVal;
-
         // TODO: Externalize?
         double threshold = 0.7f;
         double corr = 0.85f;
 
-        double rangeMin = Math.max(threshold, corr * maxVal);
-        double rangeMax = maxVal;
+        List<PyramidTemplateMatcher.Match> found = new ArrayList<>();
+        double maxVal;
+        if (pyramidLevels > 0) {
+            found = new PyramidTemplateMatcher()
+                    .setLevels(pyramidLevels)
+                    .setSubPixel(subPixel)
+                    .match(imageMat, templateMat, threshold, corr);
+            maxVal = found.isEmpty() ? 1.0 : found.get(0).score;
+        }
+        else {
+            resultMat = new Mat();
+            Imgproc.matchTemplate(imageMat, templateMat, resultMat, Imgproc.TM_CCOEFF_NORMED);
+
+            MinMaxLocResult mmr = Core.minMaxLoc(resultMat);
+            maxVal = mmr.maxVal;
+
+            double rangeMin = Math.max(threshold, corr * maxVal);
+            double rangeMax = maxVal;
+
+            for (Point point : OpenCvUtils.matMaxima(resultMat, rangeMin, rangeMax)) {
+                found.add(new PyramidTemplateMatcher.Match(point.x, point.y,
+                        resultMat.get(point.y, point.x)[0]));
+            }
+        }
 
         List<TemplateMatch> matches = new ArrayList<>();
-        for (Point point : OpenCvUtils.matMaxima(resultMat, rangeMin, rangeMax)) {
+        for (PyramidTemplateMatcher.Match candidate : found) {
             TemplateMatch match = new TemplateMatch();
-            int x = point.x;
-            int y = point.y;
-            match.score = resultMat.get(y, x)[0] / maxVal;
+            double x = candidate.x;
+            double y = candidate.y;
+            match.score = candidate.score / maxVal;
 
             if (LogUtils.isDebugEnabled()) {
                 Core.rectangle(debugMat, new org.opencv.core.Point(x, y),
@@ -163,6 +212,24 @@ public class OpenCvVisionProvider implements VisionProvider {
         Mat cameraImage = OpenCvUtils.toMat(cameraImage_);
         Mat roiImage = new Mat(cameraImage, new Rect(roiX, roiY, roiWidth, roiHeight));
 
+        if (pyramidLevels > 0) {
+            // Normalized scores, so the same threshold as getTemplateMatches() can be used. If
+            // nothing reaches it the full resolution match below is used, as before.
+            double threshold = 0.7f;
+            List<PyramidTemplateMatcher.Match> found = new PyramidTemplateMatcher()
+                    .setLevels(pyramidLevels)
+                    .match(roiImage, templateImage, threshold, 1.0);
+            if (!found.isEmpty()) {
+                org.opencv.core.Point matchLoc =
+                        new org.opencv.core.Point(found.get(0).x, found.get(0).y);
+                Logger.debug(String.format("locateTemplateMatches certainty %f at %f, %f",
+                        found.get(0).score, matchLoc.x, matchLoc.y));
+                locateTemplateMatchesDebug(roiImage, templateImage, matchLoc);
+                return new Point[] {
+                        new Point(((int) matchLoc.x) + roiX, ((int) matchLoc.y) + roiY)};
+            }
+        }
+
         // http://stackoverflow.com/questions/17001083/opencv-template-matching-example-in-android
         Mat resultImage = new Mat(roiImage.cols() - templateImage.cols() + 1,
                 roiImage.rows() - templateImage.rows() + 1, CvType.CV_32FC1);
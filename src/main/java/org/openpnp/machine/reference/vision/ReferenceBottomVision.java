@@ -28,6 +28,7 @@ import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.openpnp.vision.pipeline.CvStage.Result;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -99,6 +100,8 @@ public class ReferenceBottomVision implements PartAlignment {
                                                                      0.0))
                                                              .derive(null, null, null, angle));
             CvPipeline pipeline = partSettings.getPipeline();
+            pipeline.setResultRetention(ResultRetention.Production);
+            pipeline.setMatPoolEnabled(true);
             pipeline.setProperty("camera", camera);
             pipeline.setProperty("nozzle", nozzle);
             pipeline.process();
@@ -160,6 +163,8 @@ public class ReferenceBottomVision implements PartAlignment {
 
         CvPipeline pipeline = partSettings.getPipeline();
 
+        pipeline.setResultRetention(ResultRetention.Production);
+        pipeline.setMatPoolEnabled(true);
         pipeline.setProperty("camera", camera);
         pipeline.setProperty("nozzle", nozzle);
         pipeline.process();
@@ -11,6 +11,7 @@ import javax.swing.Action;
 import javax.swing.Icon;
 
 import org.apache.commons.io.IOUtils;
+import org.opencv.core.Rect;
 import org.opencv.features2d.KeyPoint;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
@@ -21,6 +22,7 @@ import org.openpnp.model.Board;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Footprint;
+import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
@@ -36,6 +38,8 @@ import org.openpnp.util.MovableUtils;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -54,6 +58,14 @@ public class ReferenceFiducialLocator implements FiducialLocator {
     @ElementMap(required = false)
     protected Map<String, PartSettings> partSettingsByPartId = new HashMap<>();
 
+    /**
+     * Size of the square window, centered on the expected fiducial location, that the pipeline
+     * processes. Zero processes the full camera image. The window must be larger than the
+     * fiducial template.
+     */
+    @Element(required = false)
+    protected Length roiSize = new Length(0, LengthUnit.Millimeters);
+
     public Location locateBoard(BoardLocation boardLocation) throws Exception {
         return locateBoard(boardLocation, false);
     }
@@ -188,14 +200,19 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         
         MovableUtils.moveToLocationAtSafeZ(camera, location);
 
+        pipeline.setResultRetention(ResultRetention.Production);
+        pipeline.setMatPoolEnabled(true);
         pipeline.setProperty("camera", camera);
         pipeline.setProperty("part", part);
         pipeline.setProperty("package", pkg);
         pipeline.setProperty("footprint", footprint);
+
+        pipeline.setProperty("roi", VisionUtils.getCenteredRoi(camera, roiSize));
         
         for (int i = 0; i < 3; i++) {
             // Perform vision operation
             pipeline.process();
+            Rect roi = ImageCapture.getCapturedRoi(pipeline);
             
             // Get the results
             List<KeyPoint> keypoints = (List<KeyPoint>) pipeline.getResult("results").getModel();
@@ -207,7 +224,7 @@ public class ReferenceFiducialLocator implements FiducialLocator {
             // Convert to Locations
             List<Location> locations = new ArrayList<Location>();
             for (KeyPoint keypoint : keypoints) {
-                locations.add(VisionUtils.getPixelLocation(camera, keypoint.pt.x, keypoint.pt.y));
+                locations.add(VisionUtils.getPixelLocation(camera, roi, keypoint.pt.x, keypoint.pt.y));
             }
             
             System.out.println(locations);
@@ -280,6 +297,14 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         return pipeline;
     }
 
+    public Length getRoiSize() {
+        return roiSize;
+    }
+
+    public void setRoiSize(Length roiSize) {
+        this.roiSize = roiSize;
+    }
+
     public void setPipeline(CvPipeline pipeline) {
         this.pipeline = pipeline;
     }
@@ -19,26 +19,68 @@
 
 package org.openpnp.machine.reference.vision.wizards;
 
+import java.awt.Color;
+
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.border.EtchedBorder;
+import javax.swing.border.TitledBorder;
 
+import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.machine.reference.vision.OpenCvVisionProvider;
 
+import com.jgoodies.forms.layout.ColumnSpec;
+import com.jgoodies.forms.layout.FormLayout;
+import com.jgoodies.forms.layout.FormSpecs;
+import com.jgoodies.forms.layout.RowSpec;
+
 @SuppressWarnings("serial")
 public class OpenCvVisionProviderConfigurationWizard extends AbstractConfigurationWizard {
     private final OpenCvVisionProvider visionProvider;
 
     private JPanel panelGeneral;
+    private JTextField pyramidLevelsTextField;
+    private JCheckBox subPixelCheckBox;
 
     public OpenCvVisionProviderConfigurationWizard(OpenCvVisionProvider visionProvider) {
         this.visionProvider = visionProvider;
 
-        JLabel lblOpencvvisionproviderconfigurationwizardPlaceholder =
-                new JLabel("OpenCvVisionProviderConfigurationWizard Placeholder");
-        contentPanel.add(lblOpencvvisionproviderconfigurationwizardPlaceholder);
+        panelGeneral = new JPanel();
+        contentPanel.add(panelGeneral);
+        panelGeneral.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null),
+                "Template Matching", TitledBorder.LEADING, TitledBorder.TOP, null,
+                new Color(0, 0, 0)));
+        panelGeneral.setLayout(new FormLayout(
+                new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
+                        FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
+                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
+
+        JLabel lblPyramidLevels = new JLabel("Pyramid Levels");
+        lblPyramidLevels.setToolTipText(
+                "Match at 1/2^levels scale first and refine at full resolution. 0 to disable.");
+        panelGeneral.add(lblPyramidLevels, "2, 2, right, default");
+
+        pyramidLevelsTextField = new JTextField();
+        panelGeneral.add(pyramidLevelsTextField, "4, 2, left, default");
+        pyramidLevelsTextField.setColumns(5);
+
+        JLabel lblSubPixel = new JLabel("Sub-Pixel");
+        panelGeneral.add(lblSubPixel, "2, 4, right, default");
+
+        subPixelCheckBox = new JCheckBox("");
+        panelGeneral.add(subPixelCheckBox, "4, 4");
     }
 
     @Override
-    public void createBindings() {}
+    public void createBindings() {
+        addWrappedBinding(visionProvider, "pyramidLevels", pyramidLevelsTextField, "text",
+                new IntegerConverter());
+        addWrappedBinding(visionProvider, "subPixel", subPixelCheckBox, "selected");
+        ComponentDecorators.decorateWithAutoSelect(pyramidLevelsTextField);
+    }
 }
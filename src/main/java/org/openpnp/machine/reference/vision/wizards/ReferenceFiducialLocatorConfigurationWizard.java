@@ -11,10 +11,13 @@ import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.border.TitledBorder;
 
 import org.openpnp.gui.MainFrame;
+import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator.PartSettings;
@@ -37,6 +40,7 @@ import com.jgoodies.forms.layout.RowSpec;
 public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigurationWizard {
     private final ReferenceFiducialLocator fiducialLocator;
     private static Part defaultPart = createDefaultPart();
+    private JTextField textFieldRoiSize;
 
     public ReferenceFiducialLocatorConfigurationWizard(ReferenceFiducialLocator fiducialLocator) {
         this.fiducialLocator = fiducialLocator;
@@ -55,6 +59,8 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
 
@@ -102,6 +108,15 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
             }
         });
         panel.add(btnResetAllTo, "8, 2");
+
+        JLabel lblRoiSize = new JLabel("ROI Size");
+        lblRoiSize.setToolTipText(
+                "Size of the area around the expected fiducial location that the pipeline processes. 0 processes the whole camera image.");
+        panel.add(lblRoiSize, "2, 4");
+
+        textFieldRoiSize = new JTextField();
+        panel.add(textFieldRoiSize, "4, 4");
+        textFieldRoiSize.setColumns(8);
     }
     
     private void editPipeline() throws Exception {
@@ -138,6 +153,11 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
 
     @Override
     public void createBindings() {
+        LengthConverter lengthConverter = new LengthConverter();
+
+        addWrappedBinding(fiducialLocator, "roiSize", textFieldRoiSize, "text", lengthConverter);
+
+        ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldRoiSize);
     }
     
     @Override
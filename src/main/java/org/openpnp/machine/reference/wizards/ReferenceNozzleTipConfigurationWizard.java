@@ -94,6 +94,7 @@ public class ReferenceNozzleTipConfigurationWizard extends AbstractConfiguration
     private JButton btnReset;
     private JLabel lblEnabled;
     private JCheckBox calibrationEnabledCheckbox;
+    private JTextField calibrationRoiSizeTf;
     private JLabel lblMiddleLocation_1;
     private JTextField textFieldMidX2;
     private JTextField textFieldMidY2;
@@ -330,6 +331,7 @@ public class ReferenceNozzleTipConfigurationWizard extends AbstractConfiguration
                 new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         RowSpec.decode("23px"), FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC, FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC, FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,}));
 
         lblEnabled = new JLabel("Enabled?");
@@ -363,6 +365,15 @@ public class ReferenceNozzleTipConfigurationWizard extends AbstractConfiguration
             }
         });
         panelCalibration.add(btnEditPipeline, "3, 7, left, top");
+
+        JLabel lblRoiSize = new JLabel("ROI Size");
+        lblRoiSize.setToolTipText(
+                "Size of the area in the center of the camera image that the pipeline processes. 0 processes the whole camera image.");
+        panelCalibration.add(lblRoiSize, "2, 9, right, default");
+
+        calibrationRoiSizeTf = new JTextField();
+        panelCalibration.add(calibrationRoiSizeTf, "3, 9, left, default");
+        calibrationRoiSizeTf.setColumns(8);
     }
 
     private void editCalibrationPipeline() throws Exception {
@@ -441,11 +452,14 @@ public class ReferenceNozzleTipConfigurationWizard extends AbstractConfiguration
                 doubleConverter);
         
         addWrappedBinding(nozzleTip.getCalibration(), "enabled", calibrationEnabledCheckbox, "selected");
+        addWrappedBinding(nozzleTip.getCalibration(), "roiSize", calibrationRoiSizeTf, "text",
+                lengthConverter);
         
         addWrappedBinding(nozzleTip, "vacuumLevelPartOn", vacuumLevelPartOn, "text", doubleConverter);
         addWrappedBinding(nozzleTip, "vacuumLevelPartOff", vacuumLevelPartOff, "text", doubleConverter);
 
         ComponentDecorators.decorateWithAutoSelect(nameTf);
+        ComponentDecorators.decorateWithAutoSelectAndLengthConversion(calibrationRoiSizeTf);
         
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldChangerStartX);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldChangerStartY);
@@ -24,8 +24,11 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -64,6 +67,14 @@ public class Board extends AbstractModelObject implements PropertyChangeListener
     private transient File file;
     private transient boolean dirty;
 
+    /**
+     * See beginUpdate(). The lists as they were when the outermost update began.
+     */
+    private transient int updateDepth;
+    private transient ArrayList<Fiducial> fiducialsBeforeUpdate;
+    private transient ArrayList<Placement> placementsBeforeUpdate;
+    private transient ArrayList<BoardPad> solderPastePadsBeforeUpdate;
+
     public Board() {
         this(null);
     }
@@ -101,16 +112,16 @@ public class Board extends AbstractModelObject implements PropertyChangeListener
 
     public void addFiducial(Fiducial fiducial) {
         ArrayList<Fiducial> oldValue = fiducials;
-        fiducials = new ArrayList<>(fiducials);
+        fiducials = copyForUpdate(fiducials, fiducialsBeforeUpdate);
         fiducials.add(fiducial);
-        firePropertyChange("fiducials", oldValue, fiducials);
+        fireListChange("fiducials", oldValue, fiducials);
     }
 
     public void removeFiducial(Fiducial fiducial) {
         ArrayList<Fiducial> oldValue = fiducials;
-        fiducials = new ArrayList<>(fiducials);
+        fiducials = copyForUpdate(fiducials, fiducialsBeforeUpdate);
         fiducials.remove(fiducial);
-        firePropertyChange("fiducials", oldValue, fiducials);
+        fireListChange("fiducials", oldValue, fiducials);
     }
 
     public List<Placement> getPlacements() {
@@ -119,48 +130,192 @@ public class Board extends AbstractModelObject implements PropertyChangeListener
 
     public void addPlacement(Placement placement) {
         Object oldValue = placements;
-        placements = new ArrayList<>(placements);
+        placements = copyForUpdate(placements, placementsBeforeUpdate);
         placements.add(placement);
-        firePropertyChange("placements", oldValue, placements);
+        fireListChange("placements", oldValue, placements);
         if (placement != null) {
             placement.addPropertyChangeListener(this);
         }
     }
 
+    /**
+     * Adds the placements with a single copy of the list and a single "placements" change.
+     */
+    public void addPlacements(Collection<Placement> placements) {
+        Object oldValue = this.placements;
+        this.placements = copyForUpdate(this.placements, placementsBeforeUpdate);
+        this.placements.addAll(placements);
+        fireListChange("placements", oldValue, this.placements);
+        for (Placement placement : placements) {
+            if (placement != null) {
+                placement.addPropertyChangeListener(this);
+            }
+        }
+    }
+
     public void removePlacement(Placement placement) {
         Object oldValue = placements;
-        placements = new ArrayList<>(placements);
+        placements = copyForUpdate(placements, placementsBeforeUpdate);
         placements.remove(placement);
-        firePropertyChange("placements", oldValue, placements);
+        fireListChange("placements", oldValue, placements);
         if (placement != null) {
             placement.removePropertyChangeListener(this);
         }
     }
 
+    /**
+     * Removes the placements with a single copy of the list and a single "placements" change.
+     */
+    public void removePlacements(Collection<Placement> placements) {
+        Set<Placement> removed = identitySet(placements);
+        Object oldValue = this.placements;
+        this.placements = copyForUpdate(this.placements, placementsBeforeUpdate);
+        this.placements.removeIf(removed::contains);
+        fireListChange("placements", oldValue, this.placements);
+        for (Placement placement : removed) {
+            if (placement != null) {
+                placement.removePropertyChangeListener(this);
+            }
+        }
+    }
+
+    /**
+     * Replaces all of the placements with the given ones, with a single "placements" change.
+     */
+    public void replacePlacements(Collection<Placement> placements) {
+        ArrayList<Placement> oldValue = this.placements;
+        this.placements = new ArrayList<>(placements);
+        fireListChange("placements", oldValue, this.placements);
+        for (Placement placement : oldValue) {
+            if (placement != null) {
+                placement.removePropertyChangeListener(this);
+            }
+        }
+        for (Placement placement : placements) {
+            if (placement != null) {
+                placement.addPropertyChangeListener(this);
+            }
+        }
+    }
+
     public List<BoardPad> getSolderPastePads() {
         return Collections.unmodifiableList(solderPastePads);
     }
 
     public void addSolderPastePad(BoardPad pad) {
         Object oldValue = solderPastePads;
-        solderPastePads = new ArrayList<>(solderPastePads);
+        solderPastePads = copyForUpdate(solderPastePads, solderPastePadsBeforeUpdate);
         solderPastePads.add(pad);
-        firePropertyChange("solderPastePads", oldValue, solderPastePads);
+        fireListChange("solderPastePads", oldValue, solderPastePads);
         if (pad != null) {
             pad.addPropertyChangeListener(this);
         }
     }
 
+    /**
+     * Adds the pads with a single copy of the list and a single "solderPastePads" change.
+     */
+    public void addSolderPastePads(Collection<BoardPad> pads) {
+        Object oldValue = solderPastePads;
+        solderPastePads = copyForUpdate(solderPastePads, solderPastePadsBeforeUpdate);
+        solderPastePads.addAll(pads);
+        fireListChange("solderPastePads", oldValue, solderPastePads);
+        for (BoardPad pad : pads) {
+            if (pad != null) {
+                pad.addPropertyChangeListener(this);
+            }
+        }
+    }
+
     public void removeSolderPastePad(BoardPad pad) {
         Object oldValue = solderPastePads;
-        solderPastePads = new ArrayList<>(solderPastePads);
+        solderPastePads = copyForUpdate(solderPastePads, solderPastePadsBeforeUpdate);
         solderPastePads.remove(pad);
-        firePropertyChange("solderPastePads", oldValue, solderPastePads);
+        fireListChange("solderPastePads", oldValue, solderPastePads);
         if (pad != null) {
             pad.removePropertyChangeListener(this);
         }
     }
 
+    /**
+     * Removes the pads with a single copy of the list and a single "solderPastePads" change.
+     */
+    public void removeSolderPastePads(Collection<BoardPad> pads) {
+        Set<BoardPad> removed = identitySet(pads);
+        Object oldValue = solderPastePads;
+        solderPastePads = copyForUpdate(solderPastePads, solderPastePadsBeforeUpdate);
+        solderPastePads.removeIf(removed::contains);
+        fireListChange("solderPastePads", oldValue, solderPastePads);
+        for (BoardPad pad : removed) {
+            if (pad != null) {
+                pad.removePropertyChangeListener(this);
+            }
+        }
+    }
+
+    /**
+     * Starts a bulk update. Until the matching endUpdate(), the add and remove methods change the
+     * lists without firing property changes, and without copying a list again once it has been
+     * copied for the update. endUpdate() then fires one change for each list that changed, from
+     * the list as it was at beginUpdate(). Updates can be nested, in which case only the outermost
+     * endUpdate() fires. Call endUpdate() in a finally block.
+     */
+    public void beginUpdate() {
+        if (updateDepth++ == 0) {
+            fiducialsBeforeUpdate = fiducials;
+            placementsBeforeUpdate = placements;
+            solderPastePadsBeforeUpdate = solderPastePads;
+        }
+    }
+
+    public void endUpdate() {
+        if (updateDepth == 0) {
+            throw new IllegalStateException("endUpdate() without beginUpdate().");
+        }
+        if (--updateDepth > 0) {
+            return;
+        }
+        ArrayList<Fiducial> fiducialsBefore = fiducialsBeforeUpdate;
+        ArrayList<Placement> placementsBefore = placementsBeforeUpdate;
+        ArrayList<BoardPad> solderPastePadsBefore = solderPastePadsBeforeUpdate;
+        fiducialsBeforeUpdate = null;
+        placementsBeforeUpdate = null;
+        solderPastePadsBeforeUpdate = null;
+        if (fiducials != fiducialsBefore) {
+            firePropertyChange("fiducials", fiducialsBefore, fiducials);
+        }
+        if (placements != placementsBefore) {
+            firePropertyChange("placements", placementsBefore, placements);
+        }
+        if (solderPastePads != solderPastePadsBefore) {
+            firePropertyChange("solderPastePads", solderPastePadsBefore, solderPastePads);
+        }
+    }
+
+    /**
+     * Returns the list to change: the list itself if it has already been copied during the
+     * current update, otherwise a copy, so that the list given as the old value of the change is
+     * left as it was.
+     */
+    private <T> ArrayList<T> copyForUpdate(ArrayList<T> list, ArrayList<T> beforeUpdate) {
+        if (updateDepth > 0 && list != beforeUpdate) {
+            return list;
+        }
+        return new ArrayList<>(list);
+    }
+
+    private void fireListChange(String propertyName, Object oldValue, Object newValue) {
+        if (updateDepth == 0) {
+            firePropertyChange(propertyName, oldValue, newValue);
+        }
+    }
+
+    private static <T> Set<T> identitySet(Collection<T> c) {
+        Set<T> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(c);
+        return set;
+    }
+
 
     public Outline getOutline() {
         return outline;
@@ -19,20 +19,41 @@
 
 package org.openpnp.model;
 
+import java.beans.PropertyChangeListener;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.prefs.Preferences;
 
+import javax.swing.SwingUtilities;
+
 import org.apache.commons.io.FileUtils;
 import org.openpnp.ConfigurationListener;
 import org.openpnp.Scripting;
+import org.openpnp.spi.Feeder;
 import org.openpnp.spi.Machine;
 import org.openpnp.util.ResourceUtils;
 import org.pmw.tinylog.Logger;
@@ -51,6 +72,12 @@ import com.google.common.eventbus.EventBus;
 public class Configuration extends AbstractModelObject {
     private static Configuration instance;
 
+    /**
+     * Shared by everything the configuration reads and writes, and by the threads load() reads
+     * with, so that classes are only scanned once. Simple XML's Persister is thread safe.
+     */
+    private static final Serializer serializer = createSerializer();
+
     private static final String PREF_UNITS = "Configuration.units";
     private static final String PREF_UNITS_DEF = "Millimeters";
 
@@ -76,6 +103,48 @@ public class Configuration extends AbstractModelObject {
     private Preferences prefs;
     private Scripting scripting;
     private EventBus bus = new EventBus();
+    private StateJournal stateJournal;
+
+    /**
+     * How long requestSave() waits for further requests before saving.
+     */
+    public static final long SAVE_DELAY_MS = 2000;
+
+    /**
+     * Set when a part is added, removed or changed, so that save() can skip parts.xml otherwise.
+     */
+    private volatile boolean partsDirty = true;
+    private final PropertyChangeListener partsListener = e -> partsDirty = true;
+
+    /**
+     * Set when the machine or one of its feeders fires a property change, so that a requested
+     * save can skip machine.xml otherwise. Not every machine setting fires one, so save() always
+     * serializes the machine.
+     */
+    private volatile boolean machineDirty = true;
+    private final PropertyChangeListener machineListener = e -> {
+        if ("feeders".equals(e.getPropertyName())) {
+            if (e.getOldValue() instanceof AbstractModelObject) {
+                ((AbstractModelObject) e.getOldValue()).removePropertyChangeListener(
+                        this.machineListener);
+            }
+            if (e.getNewValue() instanceof AbstractModelObject) {
+                ((AbstractModelObject) e.getNewValue()).addPropertyChangeListener(
+                        this.machineListener);
+            }
+        }
+        machineDirty = true;
+        requestSave();
+    };
+
+    /**
+     * The SHA-256 of what was last written to each configuration file.
+     */
+    private final Map<File, byte[]> savedDigests = new HashMap<>();
+
+    private final Object saveLock = new Object();
+    private ScheduledExecutorService saveExecutor;
+    private ScheduledFuture<?> pendingSave;
 
     public static Configuration get() {
         if (instance == null) {
@@ -85,6 +154,11 @@ public class Configuration extends AbstractModelObject {
     }
 
     public static synchronized void initialize(File configurationDirectory) {
+        if (instance != null) {
+            // So that a save the old configuration requested does not write over the new one's
+            // files while it loads.
+            instance.cancelRequestedSave();
+        }
         instance = new Configuration(configurationDirectory);
         instance.setLengthDisplayFormatWithUnits(PREF_LENGTH_DISPLAY_FORMAT_WITH_UNITS_DEF);
     }
@@ -210,103 +284,315 @@ public class Configuration extends AbstractModelObject {
     }
 
     public synchronized void load() throws Exception {
-        boolean forceSave = false;
         boolean overrideUserConfig = Boolean.getBoolean("overrideUserConfig");
+        AtomicBoolean defaultsLoaded = new AtomicBoolean();
 
+        // The files do not refer to each other until configurationLoaded, so they can be read at
+        // the same time.
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        LibrarySnapshot snapshot = null;
         try {
-            File file = new File(configurationDirectory, "packages.xml");
-            if (overrideUserConfig || !file.exists()) {
-                Logger.info("No packages.xml found in configuration directory, loading defaults.");
-                file = File.createTempFile("packages", "xml");
-                FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/packages.xml"), file);
-                forceSave = true;
+            Future<MachineConfigurationHolder> machine =
+                    executor.submit(() -> readConfigurationFile(MachineConfigurationHolder.class,
+                            "machine", overrideUserConfig, defaultsLoaded));
+
+            if (!overrideUserConfig) {
+                long t = System.currentTimeMillis();
+                snapshot = LibrarySnapshot.read(getLibrarySnapshotFile(),
+                        new File(configurationDirectory, "packages.xml"),
+                        new File(configurationDirectory, "parts.xml"));
+                if (snapshot != null) {
+                    Logger.info("Read {} packages and {} parts from {} in {} ms.",
+                            snapshot.getPackages().size(), snapshot.getParts().size(),
+                            getLibrarySnapshotFile().getName(), System.currentTimeMillis() - t);
+                }
             }
-            loadPackages(file);
-        }
-        catch (Exception e) {
-            String message = e.getMessage();
-            if (e.getCause() != null && e.getCause().getMessage() != null) {
-                message = e.getCause().getMessage();
+            if (snapshot != null) {
+                for (Package pkg : snapshot.getPackages()) {
+                    addPackage(pkg);
+                }
+                for (Part part : snapshot.getParts()) {
+                    addPart(part);
+                }
             }
-            throw new Exception("Error while reading packages.xml (" + message + ")", e);
-        }
-
-
-        try {
-            File file = new File(configurationDirectory, "parts.xml");
-            if (overrideUserConfig || !file.exists()) {
-                Logger.info("No parts.xml found in configuration directory, loading defaults.");
-                file = File.createTempFile("parts", "xml");
-                FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/parts.xml"), file);
-                forceSave = true;
+            else {
+                Future<PackagesConfigurationHolder> packages = executor
+                        .submit(() -> readConfigurationFile(PackagesConfigurationHolder.class,
+                                "packages", overrideUserConfig, defaultsLoaded));
+                Future<PartsConfigurationHolder> parts =
+                        executor.submit(() -> readConfigurationFile(PartsConfigurationHolder.class,
+                                "parts", overrideUserConfig, defaultsLoaded));
+
+                for (Package pkg : getConfigurationFile(packages).packages) {
+                    addPackage(pkg);
+                }
+                for (Part part : getConfigurationFile(parts).parts) {
+                    addPart(part);
+                }
             }
-            loadParts(file);
+            this.machine = getConfigurationFile(machine).machine;
         }
-        catch (Exception e) {
-            String message = e.getMessage();
-            if (e.getCause() != null && e.getCause().getMessage() != null) {
-                message = e.getCause().getMessage();
-            }
-            throw new Exception("Error while reading parts.xml (" + message + ")", e);
+        finally {
+            executor.shutdown();
         }
 
+        loaded = true;
 
-        try {
-            File file = new File(configurationDirectory, "machine.xml");
-            if (overrideUserConfig || !file.exists()) {
-                Logger.info("No machine.xml found in configuration directory, loading defaults.");
-                file = File.createTempFile("machine", "xml");
-                FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/machine.xml"), file);
-                forceSave = true;
+        // Opened before the listeners run so that what it recorded since the last save can be
+        // replayed as the configuration is resolved.
+        if (stateJournal == null) {
+            try {
+                configurationDirectory.mkdirs();
+                stateJournal = new StateJournal(new File(configurationDirectory, "state.journal"));
             }
-            loadMachine(file);
-        }
-        catch (Exception e) {
-            String message = e.getMessage();
-            if (e.getCause() != null && e.getCause().getMessage() != null) {
-                message = e.getCause().getMessage();
+            catch (Exception e) {
+                Logger.warn(e, "Unable to open the state journal, feed counts and placements "
+                        + "will only be kept when the configuration is saved.");
             }
-            throw new Exception("Error while reading machine.xml (" + message + ")", e);
         }
 
-        loaded = true;
-
         for (ConfigurationListener listener : listeners) {
             listener.configurationLoaded(this);
         }
+        // Resolving the parts' packages changes them, but not what would be saved.
+        partsDirty = defaultsLoaded.get();
 
-        if (forceSave) {
+        if (defaultsLoaded.get()) {
             Logger.info("Defaults were loaded. Saving to configuration directory.");
             configurationDirectory.mkdirs();
             save();
         }
+        else if (snapshot == null) {
+            writeLibrarySnapshot();
+        }
 
         for (ConfigurationListener listener : listeners) {
             listener.configurationComplete(this);
         }
+
+        // Listened to only now, as the listeners above set up the machine without changing what
+        // would be saved.
+        machineDirty = false;
+        if (machine instanceof AbstractModelObject) {
+            ((AbstractModelObject) machine).addPropertyChangeListener(machineListener);
+        }
+        for (Feeder feeder : machine.getFeeders()) {
+            if (feeder instanceof AbstractModelObject) {
+                ((AbstractModelObject) feeder).addPropertyChangeListener(machineListener);
+            }
+        }
         
         scripting = new Scripting();
     }
 
-    public synchronized void save() throws Exception {
+    /**
+     * Reads name.xml from the configuration directory, or the default if there isn't one or
+     * overrideUserConfig is set, in which case defaultsLoaded is set.
+     */
+    private <T> T readConfigurationFile(Class<T> holderClass, String name,
+            boolean overrideUserConfig, AtomicBoolean defaultsLoaded) throws Exception {
+        long t = System.currentTimeMillis();
         try {
-            saveMachine(new File(configurationDirectory, "machine.xml"));
+            File file = new File(configurationDirectory, name + ".xml");
+            if (overrideUserConfig || !file.exists()) {
+                Logger.info("No " + name + ".xml found in configuration directory, loading defaults.");
+                file = File.createTempFile(name, "xml");
+                FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/" + name + ".xml"),
+                        file);
+                defaultsLoaded.set(true);
+            }
+            T holder = serializer.read(holderClass, file);
+            Logger.info("Read {}.xml in {} ms.", name, System.currentTimeMillis() - t);
+            return holder;
         }
         catch (Exception e) {
-            throw new Exception("Error while saving machine.xml (" + e.getMessage() + ")", e);
+            String message = e.getMessage();
+            if (e.getCause() != null && e.getCause().getMessage() != null) {
+                message = e.getCause().getMessage();
+            }
+            throw new Exception("Error while reading " + name + ".xml (" + message + ")", e);
+        }
+    }
+
+    private static <T> T getConfigurationFile(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Writes the machine, packages and parts to the configuration directory. Each file is only
+     * written if its contents have changed since it was last saved, and parts.xml is only
+     * serialized at all if a part has been added, removed or changed, which is tracked through
+     * the parts' property change events. Packages do not fire change events for their footprints
+     * so packages.xml is serialized every time. See writeConfigurationFile() for how files are
+     * written. Once machine.xml is saved the feed counts recorded in the state journal before it
+     * was serialized are removed from it, and if packages.xml or parts.xml was written the library
+     * snapshot is written again.
+     */
+    public synchronized void save() throws Exception {
+        save(true);
+    }
+
+    /**
+     * As save(), but unless wholeMachine is set machine.xml is only serialized if the machine or
+     * one of its feeders has fired a property change since it was last saved.
+     */
+    private synchronized void save(boolean wholeMachine) throws Exception {
+        File machineFile = new File(configurationDirectory, "machine.xml");
+        if (wholeMachine || machineDirty || !machineFile.exists()) {
+            try {
+                // Cleared first so that a change made while saving is saved next time.
+                machineDirty = false;
+                long sequence = stateJournal == null ? 0 : stateJournal.getSequence();
+                MachineConfigurationHolder holder = new MachineConfigurationHolder();
+                holder.machine = machine;
+                writeConfigurationFile(holder, machineFile);
+                if (stateJournal != null) {
+                    stateJournal.removeFeedCounts(sequence);
+                }
+            }
+            catch (Exception e) {
+                machineDirty = true;
+                throw new Exception("Error while saving machine.xml (" + e.getMessage() + ")", e);
+            }
         }
+        boolean libraryWritten;
         try {
-            savePackages(new File(configurationDirectory, "packages.xml"));
+            PackagesConfigurationHolder holder = new PackagesConfigurationHolder();
+            holder.packages = new ArrayList<>(packages.values());
+            libraryWritten =
+                    writeConfigurationFile(holder, new File(configurationDirectory, "packages.xml"));
         }
         catch (Exception e) {
             throw new Exception("Error while saving packages.xml (" + e.getMessage() + ")", e);
         }
         try {
-            saveParts(new File(configurationDirectory, "parts.xml"));
+            File file = new File(configurationDirectory, "parts.xml");
+            if (partsDirty || !file.exists()) {
+                // Cleared first so that a change made while saving is saved next time.
+                partsDirty = false;
+                PartsConfigurationHolder holder = new PartsConfigurationHolder();
+                holder.parts = new ArrayList<>(parts.values());
+                libraryWritten |= writeConfigurationFile(holder, file);
+            }
         }
         catch (Exception e) {
+            partsDirty = true;
             throw new Exception("Error while saving parts.xml (" + e.getMessage() + ")", e);
         }
+        if (libraryWritten) {
+            writeLibrarySnapshot();
+        }
+    }
+
+    private File getLibrarySnapshotFile() {
+        return new File(configurationDirectory, "library.snapshot");
+    }
+
+    /**
+     * Writes the packages and parts to the library snapshot so that the next load can read them
+     * from it. Errors are only logged, as the snapshot is just a cache of the XML.
+     */
+    private void writeLibrarySnapshot() {
+        try {
+            writeAtomically(getLibrarySnapshotFile(),
+                    LibrarySnapshot.write(new File(configurationDirectory, "packages.xml"),
+                            new File(configurationDirectory, "parts.xml"), packages.values(),
+                            parts.values()));
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Unable to write {}.", getLibrarySnapshotFile());
+        }
+    }
+
+    /**
+     * Saves the configuration once SAVE_DELAY_MS has passed without another request, so that a
+     * burst of changes is written once. Errors are logged. The machine and its feeders request a
+     * save whenever they fire a property change. The save itself runs on the event dispatch
+     * thread, where the configuration is edited, loaded and saved on quit, so that it does not
+     * serialize objects while the GUI is changing them.
+     */
+    public void requestSave() {
+        synchronized (saveLock) {
+            if (saveExecutor == null) {
+                saveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "Configuration Save");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            if (pendingSave != null) {
+                pendingSave.cancel(false);
+            }
+            pendingSave = saveExecutor.schedule(() -> SwingUtilities.invokeLater(() -> {
+                try {
+                    save(false);
+                }
+                catch (Exception e) {
+                    Logger.warn(e, "Requested configuration save failed.");
+                }
+            }), SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelRequestedSave() {
+        synchronized (saveLock) {
+            if (saveExecutor != null) {
+                saveExecutor.shutdownNow();
+                saveExecutor = null;
+                pendingSave = null;
+            }
+        }
+    }
+
+    /**
+     * Serializes the object and writes it to the file with writeAtomically(), unless the file
+     * already holds exactly what was last written to it.
+     * 
+     * @return true if the file was written.
+     */
+    private boolean writeConfigurationFile(Object holder, File file) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.write(holder, out);
+        byte[] bytes = out.toByteArray();
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        if (file.exists() && Arrays.equals(digest, savedDigests.get(file))) {
+            return false;
+        }
+        writeAtomically(file, bytes);
+        savedDigests.put(file, digest);
+        return true;
+    }
+
+    /**
+     * Writes the bytes to a temporary file next to the file, syncs it to disk and then renames it
+     * over the file, so that a crash or power loss leaves either the old file or the new one and
+     * never a partly written one.
+     */
+    private static void writeAtomically(File file, byte[] bytes) throws IOException {
+        file = file.getAbsoluteFile();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeAtomically(Object object, File file) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.write(object, out);
+        writeAtomically(file, out.toByteArray());
     }
 
     public Package getPackage(String id) {
@@ -328,6 +614,21 @@ public class Configuration extends AbstractModelObject {
         firePropertyChange("packages", null, packages);
     }
 
+    /**
+     * Adds all of the packages, firing a single change for them rather than one each.
+     */
+    public void addPackages(Collection<Package> pkgs) {
+        for (Package pkg : pkgs) {
+            if (null == pkg.getId()) {
+                throw new Error("Package with null Id cannot be added to Configuration.");
+            }
+        }
+        for (Package pkg : pkgs) {
+            packages.put(pkg.getId().toUpperCase(), pkg);
+        }
+        firePropertyChange("packages", null, packages);
+    }
+
     public void removePackage(Package pkg) {
         packages.remove(pkg.getId().toUpperCase());
         firePropertyChange("packages", null, packages);
@@ -348,12 +649,39 @@ public class Configuration extends AbstractModelObject {
         if (null == part.getId()) {
             throw new Error("Part with null Id cannot be added to Configuration.");
         }
-        parts.put(part.getId().toUpperCase(), part);
+        Part previous = parts.put(part.getId().toUpperCase(), part);
+        if (previous != null) {
+            previous.removePropertyChangeListener(partsListener);
+        }
+        part.addPropertyChangeListener(partsListener);
+        partsDirty = true;
         firePropertyChange("parts", null, parts);
     }
 
+    /**
+     * Adds all of the parts, firing a single change for them rather than one each.
+     */
+    public void addParts(Collection<Part> parts) {
+        for (Part part : parts) {
+            if (null == part.getId()) {
+                throw new Error("Part with null Id cannot be added to Configuration.");
+            }
+        }
+        for (Part part : parts) {
+            Part previous = this.parts.put(part.getId().toUpperCase(), part);
+            if (previous != null) {
+                previous.removePropertyChangeListener(partsListener);
+            }
+            part.addPropertyChangeListener(partsListener);
+        }
+        partsDirty = true;
+        firePropertyChange("parts", null, this.parts);
+    }
+
     public void removePart(Part part) {
         parts.remove(part.getId().toUpperCase());
+        part.removePropertyChangeListener(partsListener);
+        partsDirty = true;
         firePropertyChange("parts", null, parts);
     }
 
@@ -365,11 +693,18 @@ public class Configuration extends AbstractModelObject {
         return machine;
     }
 
+    /**
+     * The journal of feed counts and completed placements, or null if the configuration has not
+     * been loaded or the journal could not be opened.
+     */
+    public StateJournal getStateJournal() {
+        return stateJournal;
+    }
+
     public Board getBoard(File file) throws Exception {
         if (!file.exists()) {
             Board board = new Board(file);
             board.setName(file.getName());
-            Serializer serializer = createSerializer();
             serializer.write(board, file);
         }
         file = file.getCanonicalFile();
@@ -382,55 +717,7 @@ public class Configuration extends AbstractModelObject {
         return board;
     }
 
-    private void loadMachine(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        MachineConfigurationHolder holder = serializer.read(MachineConfigurationHolder.class, file);
-        machine = holder.machine;
-    }
-
-    private void saveMachine(File file) throws Exception {
-        MachineConfigurationHolder holder = new MachineConfigurationHolder();
-        holder.machine = machine;
-        Serializer serializer = createSerializer();
-        serializer.write(holder, new ByteArrayOutputStream());
-        serializer.write(holder, file);
-    }
-
-    private void loadPackages(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        PackagesConfigurationHolder holder =
-                serializer.read(PackagesConfigurationHolder.class, file);
-        for (Package pkg : holder.packages) {
-            addPackage(pkg);
-        }
-    }
-
-    private void savePackages(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        PackagesConfigurationHolder holder = new PackagesConfigurationHolder();
-        holder.packages = new ArrayList<>(packages.values());
-        serializer.write(holder, new ByteArrayOutputStream());
-        serializer.write(holder, file);
-    }
-
-    private void loadParts(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        PartsConfigurationHolder holder = serializer.read(PartsConfigurationHolder.class, file);
-        for (Part part : holder.parts) {
-            addPart(part);
-        }
-    }
-
-    private void saveParts(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        PartsConfigurationHolder holder = new PartsConfigurationHolder();
-        holder.parts = new ArrayList<>(parts.values());
-        serializer.write(holder, new ByteArrayOutputStream());
-        serializer.write(holder, file);
-    }
-
     public Job loadJob(File file) throws Exception {
-        Serializer serializer = createSerializer();
         Job job = serializer.read(Job.class, file);
         job.setFile(file);
 
@@ -460,7 +747,6 @@ public class Configuration extends AbstractModelObject {
     }
 
     public void saveJob(Job job, File file) throws Exception {
-        Serializer serializer = createSerializer();
         Set<Board> boards = new HashSet<>();
         // Fix the paths to any boards in the Job
         for (BoardLocation boardLocation : job.getBoardLocations()) {
@@ -480,8 +766,7 @@ public class Configuration extends AbstractModelObject {
             saveBoard(board);
         }
         // Save the job
-        serializer.write(job, new ByteArrayOutputStream());
-        serializer.write(job, file);
+        writeAtomically(job, file);
         job.setFile(file);
         job.setDirty(false);
     }
@@ -491,20 +776,22 @@ public class Configuration extends AbstractModelObject {
     }
 
     public void saveBoard(Board board) throws Exception {
-        Serializer serializer = createSerializer();
-        serializer.write(board, new ByteArrayOutputStream());
-        serializer.write(board, board.getFile());
+        writeAtomically(board, board.getFile());
         board.setDirty(false);
     }
 
     private Board loadBoard(File file) throws Exception {
-        Serializer serializer = createSerializer();
         Board board = serializer.read(Board.class, file);
         board.setFile(file);
         board.setDirty(false);
         return board;
     }
 
+    /**
+     * Returns a new Serializer set up for reading and writing the configuration. Simple XML caches
+     * what it learns about each class by reflection in the Serializer, so where possible use the
+     * shared one the configuration files are read and written with instead of creating a new one.
+     */
     public static Serializer createSerializer() {
         Style style = new HyphenStyle();
         Format format = new Format(style);
@@ -0,0 +1,257 @@
+package org.openpnp.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.openpnp.model.Footprint.Pad;
+import org.pmw.tinylog.Logger;
+
+/**
+ * A binary copy of packages.xml and parts.xml that Configuration.load() reads instead of the XML
+ * when it is up to date, since decoding it is many times faster than Simple XML parsing the same
+ * library. The XML files are still what is saved and edited, the snapshot is only a cache and is
+ * written again whenever the configuration is loaded from or saved to the XML.
+ *
+ * The snapshot records the size, modification time and SHA-256 of each XML file it was made from,
+ * and is only used if both files still have the same size and either the same modification time
+ * or the same SHA-256, so a file that was touched but not changed does not make it stale. Anything
+ * unexpected while reading it, including a different FORMAT_VERSION, means it is not used.
+ */
+public class LibrarySnapshot {
+    private static final int MAGIC = 0x4F50534E;
+
+    /**
+     * Changed whenever the format changes, or anything is added to Part, Package or the classes
+     * they hold that is saved in the XML. LibrarySnapshotTest checks the bytes written for a fixed
+     * library, so that a change to the format without a new version fails it.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    private final List<Package> packages;
+    private final List<Part> parts;
+
+    private LibrarySnapshot(List<Package> packages, List<Part> parts) {
+        this.packages = packages;
+        this.parts = parts;
+    }
+
+    public List<Package> getPackages() {
+        return packages;
+    }
+
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    /**
+     * Reads the snapshot if it exists and is up to date with the XML files, otherwise returns
+     * null. Must be called while loading the Configuration, as Parts resolve their Packages when
+     * it has loaded.
+     */
+    public static LibrarySnapshot read(File file, File packagesFile, File partsFile) {
+        if (!file.exists() || !packagesFile.exists() || !partsFile.exists()) {
+            return null;
+        }
+        try {
+            // Read in one go rather than mapped, as on Windows a mapped file can't be replaced
+            // until the mapping is garbage collected, and the snapshot is replaced on save.
+            ByteBuffer in;
+            try (FileInputStream stream = new FileInputStream(file)) {
+                FileChannel channel = stream.getChannel();
+                in = ByteBuffer.allocate((int) channel.size());
+                while (in.hasRemaining() && channel.read(in) >= 0) {
+                }
+                in.flip();
+            }
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                Logger.info("{} is from a different version, ignoring it.", file);
+                return null;
+            }
+            if (!isCurrent(in, packagesFile) || !isCurrent(in, partsFile)) {
+                Logger.info("{} is out of date, ignoring it.", file);
+                return null;
+            }
+            List<Package> packages = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                packages.add(readPackage(in));
+            }
+            List<Part> parts = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                parts.add(readPart(in));
+            }
+            if (in.hasRemaining()) {
+                throw new IOException("Unexpected data at the end of the file.");
+            }
+            return new LibrarySnapshot(packages, parts);
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Logger.warn(e, "Unable to read {}, ignoring it.", file);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the packages and parts, which must be what the XML files hold.
+     */
+    public static byte[] write(File packagesFile, File partsFile, Collection<Package> packages,
+            Collection<Part> parts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeStamp(out, packagesFile);
+        writeStamp(out, partsFile);
+        out.writeInt(packages.size());
+        for (Package pkg : packages) {
+            writePackage(out, pkg);
+        }
+        out.writeInt(parts.size());
+        for (Part part : parts) {
+            writePart(out, part);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeStamp(DataOutputStream out, File file) throws IOException {
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified());
+        out.write(digest(file));
+    }
+
+    private static boolean isCurrent(ByteBuffer in, File file) throws IOException {
+        long length = in.getLong();
+        long lastModified = in.getLong();
+        byte[] digest = new byte[32];
+        in.get(digest);
+        if (length != file.length()) {
+            return false;
+        }
+        return lastModified == file.lastModified() || Arrays.equals(digest, digest(file));
+    }
+
+    private static byte[] digest(File file) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writePackage(DataOutputStream out, Package pkg) throws IOException {
+        writeString(out, pkg.getId());
+        writeString(out, pkg.getDescription());
+        Outline outline = pkg.getOutline();
+        out.writeBoolean(outline != null);
+        if (outline != null) {
+            outline.write(out);
+        }
+        Footprint footprint = pkg.getFootprint();
+        out.writeBoolean(footprint != null);
+        if (footprint != null) {
+            writeString(out, footprint.getUnits().name());
+            out.writeDouble(footprint.getBodyWidth());
+            out.writeDouble(footprint.getBodyHeight());
+            out.writeInt(footprint.getPads().size());
+            for (Pad pad : footprint.getPads()) {
+                writeString(out, pad.getName());
+                out.writeDouble(pad.getX());
+                out.writeDouble(pad.getY());
+                out.writeDouble(pad.getWidth());
+                out.writeDouble(pad.getHeight());
+                out.writeDouble(pad.getRotation());
+                out.writeDouble(pad.getRoundness());
+            }
+        }
+    }
+
+    private static Package readPackage(ByteBuffer in) {
+        Package pkg = new Package(readString(in));
+        pkg.setDescription(readString(in));
+        pkg.setOutline(in.get() != 0 ? Outline.read(in) : null);
+        Footprint footprint = null;
+        if (in.get() != 0) {
+            footprint = new Footprint();
+            footprint.setUnits(LengthUnit.valueOf(readString(in)));
+            footprint.setBodyWidth(in.getDouble());
+            footprint.setBodyHeight(in.getDouble());
+            for (int i = in.getInt(); i > 0; i--) {
+                Pad pad = new Pad();
+                pad.setName(readString(in));
+                pad.setX(in.getDouble());
+                pad.setY(in.getDouble());
+                pad.setWidth(in.getDouble());
+                pad.setHeight(in.getDouble());
+                pad.setRotation(in.getDouble());
+                pad.setRoundness(in.getDouble());
+                footprint.addPad(pad);
+            }
+        }
+        pkg.setFootprint(footprint);
+        return pkg;
+    }
+
+    private static void writePart(DataOutputStream out, Part part) throws IOException {
+        writeString(out, part.getId());
+        writeString(out, part.getName());
+        Length height = part.getHeight();
+        writeString(out, height.getUnits() == null ? null : height.getUnits().name());
+        out.writeDouble(height.getValue());
+        writeString(out, part.getPackageId());
+        out.writeDouble(part.getSpeed());
+    }
+
+    private static Part readPart(ByteBuffer in) {
+        Part part = new Part(readString(in));
+        part.setName(readString(in));
+        String units = readString(in);
+        double height = in.getDouble();
+        part.setHeight(units == null ? null : new Length(height, LengthUnit.valueOf(units)));
+        part.setPackageId(readString(in));
+        part.setSpeed(in.getDouble());
+        return part;
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes, or -1 for null. Used for every string in the
+     * snapshot, including those Outline writes.
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+}
@@ -4,6 +4,9 @@ import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import org.simpleframework.xml.Attribute;
@@ -43,6 +46,79 @@ public class Outline {
         this.units = units;
     }
 
+    /**
+     * Writes the outline for LibrarySnapshot. Any change to what is written here, or to the fields
+     * saved in the XML, must come with a new LibrarySnapshot.FORMAT_VERSION, which
+     * LibrarySnapshotTest checks.
+     */
+    void write(DataOutputStream out) throws IOException {
+        LibrarySnapshot.writeString(out, units.name());
+        out.writeInt(elements.size());
+        for (OutlineElement element : elements) {
+            if (element instanceof Line) {
+                Line line = (Line) element;
+                out.writeByte(0);
+                out.writeDouble(line.x1);
+                out.writeDouble(line.y1);
+                out.writeDouble(line.x2);
+                out.writeDouble(line.y2);
+            }
+            else if (element instanceof Ellipse) {
+                Ellipse ellipse = (Ellipse) element;
+                out.writeByte(1);
+                out.writeDouble(ellipse.x);
+                out.writeDouble(ellipse.y);
+                out.writeDouble(ellipse.width);
+                out.writeDouble(ellipse.height);
+            }
+            else {
+                Circle circle = (Circle) element;
+                out.writeByte(2);
+                out.writeDouble(circle.x);
+                out.writeDouble(circle.y);
+                out.writeDouble(circle.radius);
+            }
+        }
+    }
+
+    /**
+     * Reads an outline written by write().
+     */
+    static Outline read(ByteBuffer in) {
+        Outline outline = new Outline();
+        outline.units = LengthUnit.valueOf(LibrarySnapshot.readString(in));
+        for (int i = in.getInt(); i > 0; i--) {
+            byte type = in.get();
+            if (type == 0) {
+                Line line = new Line();
+                line.x1 = in.getDouble();
+                line.y1 = in.getDouble();
+                line.x2 = in.getDouble();
+                line.y2 = in.getDouble();
+                outline.elements.add(line);
+            }
+            else if (type == 1) {
+                Ellipse ellipse = new Ellipse();
+                ellipse.x = in.getDouble();
+                ellipse.y = in.getDouble();
+                ellipse.width = in.getDouble();
+                ellipse.height = in.getDouble();
+                outline.elements.add(ellipse);
+            }
+            else if (type == 2) {
+                Circle circle = new Circle();
+                circle.x = in.getDouble();
+                circle.y = in.getDouble();
+                circle.radius = in.getDouble();
+                outline.elements.add(circle);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown outline element " + type);
+            }
+        }
+        return outline;
+    }
+
     public static interface OutlineElement {
         Shape getShape();
     }
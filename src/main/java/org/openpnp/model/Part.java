@@ -112,6 +112,17 @@ public class Part extends AbstractModelObject implements Identifiable {
         firePropertyChange("height", oldValue, getHeight());
     }
 
+    /**
+     * The id of the package, or as read if it has not been resolved yet.
+     */
+    String getPackageId() {
+        return packag == null ? packageId : packag.getId();
+    }
+
+    void setPackageId(String packageId) {
+        this.packageId = packageId;
+    }
+
     public Package getPackage() {
         return packag;
     }
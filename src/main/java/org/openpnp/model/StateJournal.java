@@ -0,0 +1,314 @@
+package org.openpnp.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.pmw.tinylog.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * A small memory mapped journal of the machine state that changes with every pick, such as
+ * feeder feed counts and which placements of a job have been placed. Recording a change costs a
+ * few writes to memory, so it can be done on every pick, where saving the configuration would take
+ * hundreds of milliseconds. The operating system writes the changes to disk in the background, so
+ * they survive OpenPnP crashing or being killed, and on load they are replayed on top of the saved
+ * configuration.
+ *
+ * The file is a 32 byte header followed by two regions of fixed size 32 byte records, only one of
+ * which is in use. A record holds its type, a 64 bit hash of its key, an int value, a sequence
+ * number and a CRC, and records are appended to the region in use until a record of type zero.
+ * Replay stops at the first record whose CRC does not match, which is how a record that was only
+ * partly written is left out. When the region in use is full, or records are removed, the records
+ * still in effect are written to the other region, which is then switched to by rewriting the
+ * header. A crash at any point leaves one region or the other intact, and as the file is never
+ * renamed or truncated this also works while it is mapped on Windows.
+ */
+public class StateJournal {
+    private static final int MAGIC = 0x4F504A31;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private static final byte TYPE_FEED_COUNT = 1;
+    private static final byte TYPE_PLACEMENT_COMPLETE = 2;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Number of records each region can hold.
+     */
+    private int capacity;
+    private int region;
+    private int count;
+    private long sequence;
+
+    private final Map<Long, Entry> feedCounts = new LinkedHashMap<>();
+    private final Map<Long, Entry> placements = new LinkedHashMap<>();
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens the journal in the file, creating it if it does not exist, and reads the records in
+     * it.
+     */
+    public StateJournal(File file) throws IOException {
+        this.file = file;
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (!read()) {
+                capacity = DEFAULT_CAPACITY;
+                region = 1;
+                map();
+                writeRegion(0, new ArrayList<>());
+            }
+        }
+        catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * The sequence number of the last record written. Records up to a sequence number can be
+     * removed with removeFeedCounts() once the state they record has been saved.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized void putFeedCount(String feederId, int feedCount) {
+        put(TYPE_FEED_COUNT, feedCounts, feederId, feedCount);
+    }
+
+    /**
+     * Returns the last feed count recorded for the feeder, or null if there isn't one.
+     */
+    public synchronized Integer getFeedCount(String feederId) {
+        Entry entry = feedCounts.get(hash(feederId));
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Removes the feed counts recorded up to and including the sequence number, which is done
+     * once the configuration they were recorded against has been saved.
+     */
+    public synchronized void removeFeedCounts(long sequence) {
+        if (feedCounts.values().removeIf(entry -> entry.sequence <= sequence)) {
+            compact();
+        }
+    }
+
+    /**
+     * Records that a placement has been placed. The key identifies the placement within the job,
+     * see ReferencePnpJobProcessor.
+     */
+    public synchronized void putPlacementComplete(String key) {
+        put(TYPE_PLACEMENT_COMPLETE, placements, key, 1);
+    }
+
+    public synchronized boolean isPlacementComplete(String key) {
+        return placements.containsKey(hash(key));
+    }
+
+    public synchronized int getPlacementCompleteCount() {
+        return placements.size();
+    }
+
+    /**
+     * Removes every placement record, which is done when a job finishes.
+     */
+    public synchronized void removePlacements() {
+        if (!placements.isEmpty()) {
+            placements.clear();
+            compact();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        buffer.force();
+        randomAccessFile.close();
+    }
+
+    private void put(byte type, Map<Long, Entry> entries, String key, int value) {
+        long hash = hash(key);
+        Entry entry = entries.get(hash);
+        if (entry != null && entry.value == value) {
+            return;
+        }
+        entry = new Entry(type, hash, value, ++sequence);
+        entries.put(hash, entry);
+        if (count >= capacity - 1) {
+            // Keeps a zeroed record at the end of the region to stop replay.
+            compact();
+        }
+        else {
+            write(getRecordOffset(region, count++), entry);
+        }
+    }
+
+    /**
+     * Writes the entries still in effect to the region not in use and switches to it, doubling
+     * the capacity first if they would fill more than half of it.
+     */
+    private void compact() {
+        List<Entry> entries = new ArrayList<>(feedCounts.values());
+        entries.addAll(placements.values());
+        try {
+            int target = 1 - region;
+            if (entries.size() > capacity / 2) {
+                // The old regions both lie within the first of the new ones, so the second is
+                // written, and nothing in use is overwritten.
+                while (entries.size() > capacity / 2) {
+                    capacity *= 2;
+                }
+                target = 1;
+                map();
+            }
+            writeRegion(target, entries);
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Unable to compact state journal {}.", file);
+        }
+    }
+
+    /**
+     * Writes the entries to the region, followed by zeroes, makes sure they reach the disk and
+     * only then makes it the region in use by rewriting the header.
+     */
+    private void writeRegion(int region, List<Entry> entries) {
+        int offset = getRecordOffset(region, 0);
+        for (int i = 0; i < entries.size(); i++) {
+            write(offset + i * RECORD_SIZE, entries.get(i));
+        }
+        for (int i = entries.size() * RECORD_SIZE; i < capacity * RECORD_SIZE; i += 8) {
+            buffer.putLong(offset + i, 0);
+        }
+        buffer.force();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        buffer.putInt(8, region);
+        buffer.force();
+        this.region = region;
+        count = entries.size();
+    }
+
+    private void write(int offset, Entry entry) {
+        record.clear();
+        record.put(0, entry.type);
+        record.putInt(4, entry.value);
+        record.putLong(8, entry.key);
+        record.putLong(16, entry.sequence);
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_SIZE - 4);
+        record.putInt(RECORD_SIZE - 4, (int) crc.getValue());
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            buffer.putLong(offset + i, record.getLong(i));
+        }
+    }
+
+    /**
+     * Reads the header and the records of the region in use, returning false if the file is
+     * empty or not a journal.
+     */
+    private boolean read() throws IOException {
+        if (randomAccessFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        randomAccessFile.getChannel().read(header, 0);
+        int capacity = header.getInt(4);
+        int region = header.getInt(8);
+        if (header.getInt(0) != MAGIC || capacity <= 0 || capacity > MAX_CAPACITY
+                || (region != 0 && region != 1)) {
+            Logger.warn("{} is not a state journal, starting a new one.", file);
+            return false;
+        }
+        this.capacity = capacity;
+        this.region = region;
+        map();
+        for (count = 0; count < capacity; count++) {
+            int offset = getRecordOffset(region, count);
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                record.putLong(i, buffer.getLong(offset + i));
+            }
+            byte type = record.get(0);
+            if (type == 0) {
+                break;
+            }
+            crc.reset();
+            crc.update(record.array(), 0, RECORD_SIZE - 4);
+            if (record.getInt(RECORD_SIZE - 4) != (int) crc.getValue()) {
+                Logger.warn("Ignoring a partly written record in {}.", file);
+                break;
+            }
+            Entry entry =
+                    new Entry(type, record.getLong(8), record.getInt(4), record.getLong(16));
+            sequence = Math.max(sequence, entry.sequence);
+            if (type == TYPE_FEED_COUNT) {
+                feedCounts.put(entry.key, entry);
+            }
+            else if (type == TYPE_PLACEMENT_COMPLETE) {
+                placements.put(entry.key, entry);
+            }
+        }
+        // Anything after the last good record is overwritten by the next one written.
+        if (count < capacity) {
+            int offset = getRecordOffset(region, count);
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                buffer.putLong(offset + i, 0);
+            }
+        }
+        else {
+            compact();
+        }
+        Logger.info("Read {} feed counts and {} placements from {}.", feedCounts.size(),
+                placements.size(), file);
+        return true;
+    }
+
+    private void map() throws IOException {
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                getRecordOffset(2, 0));
+    }
+
+    private int getRecordOffset(int region, int index) {
+        return HEADER_SIZE + (region * capacity + index) * RECORD_SIZE;
+    }
+
+    private static long hash(String key) {
+        return Hashing.murmur3_128().hashString(key, Charsets.UTF_8).asLong();
+    }
+
+    private static class Entry {
+        final byte type;
+        final long key;
+        final int value;
+        final long sequence;
+
+        Entry(byte type, long key, int value, long sequence) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package org.openpnp.model.eagle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openpnp.model.eagle.xml.Element;
+import org.openpnp.model.eagle.xml.Layer;
+import org.openpnp.model.eagle.xml.Package;
+import org.openpnp.model.eagle.xml.Param;
+import org.openpnp.model.eagle.xml.Polygon;
+import org.openpnp.model.eagle.xml.Smd;
+import org.openpnp.model.eagle.xml.Vertex;
+import org.openpnp.model.eagle.xml.Wire;
+
+/**
+ * Reads an EAGLE board a piece at a time with StAX, rather than unmarshalling the whole file as
+ * EagleLoader does. The constructor reads up to the board's elements, keeping the layers, the
+ * wires in the plain, the design rules and the SMDs and polygons of each library package. The
+ * elements are then read one at a time by nextElement(), and the signals after them, which are
+ * usually most of a board file, are never read.
+ *
+ * What is read is returned as the same org.openpnp.model.eagle.xml classes that EagleLoader
+ * returns, but only with the attributes and children listed above.
+ *
+ * Reading throws CancellationException at the next XML element once the given cancelled
+ * supplier returns true, so that a board with large libraries can be cancelled while the header
+ * is read.
+ */
+public class EagleBoardReader implements Closeable {
+    private final InputStream in;
+    private final XMLStreamReader reader;
+    private final BooleanSupplier cancelled;
+
+    private final List<Layer> layers = new ArrayList<>();
+    private final List<Wire> plainWires = new ArrayList<>();
+    private final List<Param> designRules = new ArrayList<>();
+
+    /**
+     * Packages by upper case library name and then upper case package name.
+     */
+    private final Map<String, Map<String, Package>> libraries = new HashMap<>();
+
+    private boolean inElements;
+
+    public EagleBoardReader(InputStream in) throws XMLStreamException {
+        this(in, () -> false);
+    }
+
+    public EagleBoardReader(InputStream in, BooleanSupplier cancelled) throws XMLStreamException {
+        this.in = in;
+        this.cancelled = cancelled;
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // The DTD is only needed for default attribute values, which the xml classes supply.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        reader = factory.createXMLStreamReader(in);
+        readHeader();
+    }
+
+    public List<Layer> getLayers() {
+        return layers;
+    }
+
+    public List<Wire> getPlainWires() {
+        return plainWires;
+    }
+
+    public List<Param> getDesignRules() {
+        return designRules;
+    }
+
+    /**
+     * Returns the package with the given name from the library with the given name, ignoring
+     * case, or null if there is none.
+     */
+    public Package getPackage(String library, String name) {
+        Map<String, Package> packages = libraries.get(library.toUpperCase());
+        if (packages == null) {
+            return null;
+        }
+        return packages.get(name.toUpperCase());
+    }
+
+    /**
+     * Returns the next element of the board, or null when there are no more.
+     */
+    public Element nextElement() throws XMLStreamException {
+        while (inElements && reader.hasNext()) {
+            int event = next();
+            if (event == XMLStreamConstants.START_ELEMENT
+                    && reader.getLocalName().equals("element")) {
+                Element element = new Element();
+                element.setName(attribute("name"));
+                element.setLibrary(attribute("library"));
+                element.setPackage(attribute("package"));
+                element.setValue(attribute("value"));
+                element.setX(attribute("x"));
+                element.setY(attribute("y"));
+                element.setRot(attribute("rot"));
+                return element;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT
+                    && reader.getLocalName().equals("elements")) {
+                inElements = false;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private void readHeader() throws XMLStreamException {
+        String parent = null;
+        Map<String, Package> packages = null;
+        Package pkg = null;
+        Polygon polygon = null;
+        while (reader.hasNext()) {
+            int event = next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals(parent)) {
+                    parent = null;
+                }
+                else if (name.equals("library")) {
+                    packages = null;
+                }
+                else if (name.equals("package")) {
+                    pkg = null;
+                }
+                else if (name.equals("polygon")) {
+                    polygon = null;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "layers":
+                case "plain":
+                case "libraries":
+                case "designrules":
+                    parent = reader.getLocalName();
+                    break;
+                case "elements":
+                    inElements = true;
+                    return;
+                case "layer":
+                    if ("layers".equals(parent)) {
+                        Layer layer = new Layer();
+                        layer.setNumber(attribute("number"));
+                        layer.setName(attribute("name"));
+                        layers.add(layer);
+                    }
+                    break;
+                case "wire":
+                    if ("plain".equals(parent)) {
+                        Wire wire = new Wire();
+                        wire.setX1(attribute("x1"));
+                        wire.setY1(attribute("y1"));
+                        wire.setX2(attribute("x2"));
+                        wire.setY2(attribute("y2"));
+                        wire.setLayer(attribute("layer"));
+                        plainWires.add(wire);
+                    }
+                    break;
+                case "param":
+                    if ("designrules".equals(parent)) {
+                        Param param = new Param();
+                        param.setName(attribute("name"));
+                        param.setValue(attribute("value"));
+                        designRules.add(param);
+                    }
+                    break;
+                case "library":
+                    if ("libraries".equals(parent)) {
+                        packages = libraries.computeIfAbsent(attribute("name").toUpperCase(),
+                                k -> new HashMap<>());
+                    }
+                    break;
+                case "package":
+                    if (packages != null) {
+                        pkg = new Package();
+                        pkg.setName(attribute("name"));
+                        packages.putIfAbsent(pkg.getName().toUpperCase(), pkg);
+                    }
+                    break;
+                case "smd":
+                    if (pkg != null) {
+                        Smd smd = new Smd();
+                        smd.setName(attribute("name"));
+                        smd.setX(attribute("x"));
+                        smd.setY(attribute("y"));
+                        smd.setDx(attribute("dx"));
+                        smd.setDy(attribute("dy"));
+                        smd.setLayer(attribute("layer"));
+                        smd.setRoundness(attribute("roundness"));
+                        smd.setRot(attribute("rot"));
+                        smd.setStop(attribute("stop"));
+                        smd.setThermals(attribute("thermals"));
+                        smd.setCream(attribute("cream"));
+                        pkg.getPolygonOrWireOrTextOrDimensionOrCircleOrRectangleOrFrameOrHoleOrPadOrSmd()
+                                .add(smd);
+                    }
+                    break;
+                case "polygon":
+                    if (pkg != null) {
+                        polygon = new Polygon();
+                        polygon.setWidth(attribute("width"));
+                        polygon.setLayer(attribute("layer"));
+                        pkg.getPolygonOrWireOrTextOrDimensionOrCircleOrRectangleOrFrameOrHoleOrPadOrSmd()
+                                .add(polygon);
+                    }
+                    break;
+                case "vertex":
+                    if (polygon != null) {
+                        Vertex vertex = new Vertex();
+                        vertex.setX(attribute("x"));
+                        vertex.setY(attribute("y"));
+                        vertex.setCurve(attribute("curve"));
+                        polygon.getVertex().add(vertex);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private int next() throws XMLStreamException {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT && cancelled.getAsBoolean()) {
+            throw new CancellationException("Import cancelled.");
+        }
+        return event;
+    }
+
+    private String attribute(String name) {
+        return reader.getAttributeValue(null, name);
+    }
+}
@@ -0,0 +1,125 @@
+package org.openpnp.util;
+
+import java.io.File;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.io.Files;
+
+import bsh.engine.BshScriptEngine;
+import bsh.engine.BshScriptEngineFactory;
+
+/**
+ * A script file that is read, and compiled if its engine supports it, once and then run as many
+ * times as needed. The file is read again only when its modification time or size changes.
+ *
+ * Each call to eval() gets its own bindings, so variables set by one run are not seen by the
+ * next, as if the script were run by a new engine each time. Engines that do not implement
+ * Compilable, such as BeanShell, still parse the script on every run but skip creating the
+ * engine and reading the file.
+ */
+public class CachedScript {
+    private static ScriptEngineManager defaultManager;
+
+    private final ScriptEngineManager manager;
+    private final File file;
+
+    private ScriptEngine engine;
+    private CompiledScript compiled;
+    private String source;
+    private long lastModified;
+    private long length;
+    private int loads;
+
+    public CachedScript(ScriptEngineManager manager, File file) {
+        this.manager = manager;
+        this.file = file;
+    }
+
+    /**
+     * Uses an engine manager shared by all CachedScripts created this way.
+     */
+    public CachedScript(File file) {
+        this(getDefaultManager(), file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * How many times the file has been read, and compiled if the engine supports it.
+     */
+    public synchronized int getLoadCount() {
+        return loads;
+    }
+
+    /**
+     * Whether the script as last read was compiled, rather than being parsed on every run.
+     */
+    public synchronized boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Runs the script with the given globals and returns the value of the last thing it
+     * evaluated.
+     *
+     * @param globals May be null.
+     * @return
+     * @throws Exception If the file cannot be read, there is no engine for it or the script fails.
+     */
+    public synchronized Object eval(Map<String, Object> globals) throws Exception {
+        refresh();
+        Bindings bindings = engine.createBindings();
+        if (globals != null) {
+            bindings.putAll(globals);
+        }
+        if (compiled != null) {
+            return compiled.eval(bindings);
+        }
+        return engine.eval(source, bindings);
+    }
+
+    private void refresh() throws Exception {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (source != null && lastModified == this.lastModified && length == this.length) {
+            return;
+        }
+        if (engine == null) {
+            engine = manager.getEngineByExtension(Files.getFileExtension(file.getName()));
+            if (engine == null) {
+                throw new Exception("Unable to find scripting engine for " + file);
+            }
+        }
+        source = null;
+        compiled = null;
+        String source = FileUtils.readFileToString(file);
+        // BeanShell claims to be Compilable but its compile() only throws an Error.
+        if (engine instanceof Compilable && !(engine instanceof BshScriptEngine)) {
+            compiled = ((Compilable) engine).compile(source);
+        }
+        loads++;
+        this.source = source;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    private static synchronized ScriptEngineManager getDefaultManager() {
+        if (defaultManager == null) {
+            defaultManager = new ScriptEngineManager();
+            // Hack to fix BSH on Windows. See https://github.com/openpnp/openpnp/issues/462
+            defaultManager.registerEngineExtension("bsh", new BshScriptEngineFactory());
+            defaultManager.registerEngineExtension("java", new BshScriptEngineFactory());
+        }
+        return defaultManager;
+    }
+}
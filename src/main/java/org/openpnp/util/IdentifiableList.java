@@ -1,36 +1,161 @@
 package org.openpnp.util;
 
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 
+import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.Identifiable;
 
 /**
  * A List specifically for storing implementations of Identifiable. This class adds a get(String)
- * method for getting the Identifiable object with the specified id from the list. Currently
- * performs a simple search through the list but is intended to be indexed eventually.
- * 
- * TODO: Perform indexing on insert and remove so that get(String) can perform better. Consider what
- * happens if an id changes out from under us.
- * 
+ * method for getting the Identifiable object with the specified id from the list, and a
+ * createId(String) method for making an id that is not in it yet.
+ *
+ * get(String) looks the id up in a HashMap. Adding to the end of the list adds to the map as
+ * well, while any other change to the list, seen through ArrayList's modCount, drops the map so
+ * that the next lookup builds it again. If there are several elements with the same id the first
+ * is returned, as with a search through the list.
+ *
+ * An element's id can change while it is in the list. Elements that are AbstractModelObjects are
+ * listened to for "id" property changes, which drop the map. For other elements, the old id stops
+ * finding them, but the new id is only found once the map is next rebuilt.
+ *
+ * The map and everything kept with it are guarded by the list's own lock, so that lookups from
+ * several threads, such as the job thread and the event dispatch thread reading the machine's
+ * feeders, don't see a map that another lookup is still building. Changes to the list itself are
+ * not made thread safe by this, the same as for ArrayList.
+ *
  * @param <E>
  */
 public class IdentifiableList<E extends Identifiable> extends ArrayList<E> {
     private static final long serialVersionUID = -2350184908321182804L;
-    
-    public String createId(String prefix) {
-        for (int i = 0; ; i++) {
-            if (get(prefix + i) == null) {
+
+    private transient Map<String, E> index;
+    private transient int indexModCount;
+
+    /**
+     * For each prefix given to createId(), the suffix it last returned. Every suffix below it is
+     * known to be taken, unless the map has been rebuilt since.
+     */
+    private transient Map<String, Integer> nextSuffixes;
+
+    /**
+     * The elements idListener has been added to.
+     */
+    private transient Set<AbstractModelObject> listening;
+    private transient PropertyChangeListener idListener;
+
+    /**
+     * Returns the lowest numbered prefix + n that no element has as its id. Looks up the suffixes
+     * from where the last call with the same prefix left off, so creating and adding ids one after
+     * the other is O(1) per id.
+     */
+    public synchronized String createId(String prefix) {
+        Map<String, E> index = getIndex();
+        Integer start = nextSuffixes.get(prefix);
+        for (int i = (start == null ? 0 : start); ; i++) {
+            if (!index.containsKey(prefix + i)) {
+                nextSuffixes.put(prefix, i);
                 return prefix + i;
             }
         }
     }
 
-    public E get(String id) {
-        for (E e : this) {
-            if (e.getId().equals(id)) {
-                return e;
+    public synchronized E get(String id) {
+        if (id == null) {
+            return null;
+        }
+        E e = getIndex().get(id);
+        if (e != null && !id.equals(e.getId())) {
+            // The id changed without telling us.
+            index = null;
+            e = getIndex().get(id);
+        }
+        return e;
+    }
+
+    @Override
+    public synchronized boolean add(E e) {
+        boolean indexed = isIndexCurrent();
+        super.add(e);
+        if (indexed) {
+            indexElement(e);
+            indexModCount = modCount;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends E> c) {
+        boolean indexed = isIndexCurrent();
+        int size = size();
+        boolean changed = super.addAll(c);
+        if (indexed) {
+            for (int i = size; i < size(); i++) {
+                indexElement(get(i));
+            }
+            indexModCount = modCount;
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized E set(int i, E e) {
+        // ArrayList does not count set() as a modification.
+        index = null;
+        return super.set(i, e);
+    }
+
+    private boolean isIndexCurrent() {
+        return index != null && indexModCount == modCount;
+    }
+
+    private synchronized void dropIndex() {
+        index = null;
+    }
+
+    private Map<String, E> getIndex() {
+        if (!isIndexCurrent()) {
+            Map<String, E> index = new HashMap<>();
+            nextSuffixes = new HashMap<>();
+            if (listening == null) {
+                listening = Collections.newSetFromMap(new IdentityHashMap<>());
+                idListener = event -> dropIndex();
+            }
+            // Stop listening to elements that are no longer in the list.
+            Set<AbstractModelObject> previous = listening;
+            listening = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (E e : this) {
+                index.putIfAbsent(e.getId(), e);
+                if (e instanceof AbstractModelObject) {
+                    AbstractModelObject o = (AbstractModelObject) e;
+                    if (listening.add(o) && !previous.remove(o)) {
+                        o.addPropertyChangeListener("id", idListener);
+                    }
+                }
+            }
+            for (AbstractModelObject removed : previous) {
+                removed.removePropertyChangeListener("id", idListener);
+            }
+            this.index = index;
+            indexModCount = modCount;
+        }
+        return index;
+    }
+
+    private void indexElement(E e) {
+        index.putIfAbsent(e.getId(), e);
+        if (e instanceof AbstractModelObject) {
+            AbstractModelObject o = (AbstractModelObject) e;
+            if (listening.add(o)) {
+                o.addPropertyChangeListener("id", idListener);
             }
         }
-        return null;
     }
 }
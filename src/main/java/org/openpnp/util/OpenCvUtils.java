@@ -256,6 +256,15 @@ public class OpenCvUtils {
      * Ported from the C++ version in FireSight by Karl Lew, which is licensed under the 
      * MIT license.
      * https://github.com/firepick1/FireSight
+     * 
+     * The values of the first channel are copied out of the Mat in one call rather than read a
+     * pixel at a time, as a template match result is usually large and each Mat.get() is a JNI
+     * call. Single channel float Mats, which is what Imgproc.matchTemplate() produces, are read
+     * into a buffer that is kept for the next call on the same thread.
+     * 
+     * Mats narrower than three columns used to fail with a NullPointerException when the last
+     * column was checked, now neighbors outside the Mat are ignored.
+     * 
      * @param mat
      * @param rangeMin
      * @param rangeMax
@@ -263,6 +272,10 @@ public class OpenCvUtils {
      */
     public static List<java.awt.Point> matMaxima(Mat mat, double rangeMin, double rangeMax) {
         List<java.awt.Point> locations = new ArrayList<>();
+        if (mat.rows() == 0 || mat.cols() == 0) {
+            return locations;
+        }
+        MatValues m = MatValues.of(mat);
 
         int rEnd = mat.rows() - 1;
         int cEnd = mat.cols() - 1;
@@ -270,9 +283,9 @@ public class OpenCvUtils {
         // CHECK EACH ROW MAXIMA FOR LOCAL 2D MAXIMA
         for (int r = 0; r <= rEnd; r++) {
             MinMaxState state = MinMaxState.BEFORE_INFLECTION;
-            double curVal = mat.get(r, 0)[0];
+            double curVal = m.get(r, 0);
             for (int c = 1; c <= cEnd; c++) {
-                double val = mat.get(r, c)[0];
+                double val = m.get(r, c);
 
                 if (val == curVal) {
                     continue;
@@ -289,25 +302,25 @@ public class OpenCvUtils {
                     if (state == MinMaxState.BEFORE_INFLECTION) {
                         if (rangeMin <= curVal && curVal <= rangeMax) { // ROW
                                                                         // MAXIMA
-                            if (0 < r && (mat.get(r - 1, c - 1)[0] >= curVal
-                                    || mat.get(r - 1, c)[0] >= curVal)) {
+                            if (0 < r && (m.get(r - 1, c - 1) >= curVal
+                                    || m.get(r - 1, c) >= curVal)) {
                                 // cout << "reject:r-1 " << r << "," << c-1 <<
                                 // endl;
                                 // - x x
                                 // - - -
                                 // - - -
                             }
-                            else if (r < rEnd && (mat.get(r + 1, c - 1)[0] > curVal
-                                    || mat.get(r + 1, c)[0] > curVal)) {
+                            else if (r < rEnd && (m.get(r + 1, c - 1) > curVal
+                                    || m.get(r + 1, c) > curVal)) {
                                 // cout << "reject:r+1 " << r << "," << c-1 <<
                                 // endl;
                                 // - - -
                                 // - - -
                                 // - x x
                             }
-                            else if (1 < c && (0 < r && mat.get(r - 1, c - 2)[0] >= curVal
-                                    || mat.get(r, c - 2)[0] > curVal
-                                    || r < rEnd && mat.get(r + 1, c - 2)[0] > curVal)) {
+                            else if (1 < c && (0 < r && m.get(r - 1, c - 2) >= curVal
+                                    || m.get(r, c - 2) > curVal
+                                    || r < rEnd && m.get(r + 1, c - 2) > curVal)) {
                                 // cout << "reject:c-2 " << r << "," << c-1 <<
                                 // endl;
                                 // x - -
@@ -331,25 +344,25 @@ public class OpenCvUtils {
             // PROCESS END OF ROW
             if (state == MinMaxState.BEFORE_INFLECTION) {
                 if (rangeMin <= curVal && curVal <= rangeMax) { // ROW MAXIMA
-                    if (0 < r && (mat.get(r - 1, cEnd - 1)[0] >= curVal
-                            || mat.get(r - 1, cEnd)[0] >= curVal)) {
+                    if (0 < r && (m.getOrNaN(r - 1, cEnd - 1) >= curVal
+                            || m.get(r - 1, cEnd) >= curVal)) {
                         // cout << "rejectEnd:r-1 " << r << "," << cEnd-1 <<
                         // endl;
                         // - x x
                         // - - -
                         // - - -
                     }
-                    else if (r < rEnd && (mat.get(r + 1, cEnd - 1)[0] > curVal
-                            || mat.get(r + 1, cEnd)[0] > curVal)) {
+                    else if (r < rEnd && (m.getOrNaN(r + 1, cEnd - 1) > curVal
+                            || m.get(r + 1, cEnd) > curVal)) {
                         // cout << "rejectEnd:r+1 " << r << "," << cEnd-1 <<
                         // endl;
                         // - - -
                         // - - -
                         // - x x
                     }
-                    else if (1 < r && mat.get(r - 1, cEnd - 2)[0] >= curVal
-                            || mat.get(r, cEnd - 2)[0] > curVal
-                            || r < rEnd && mat.get(r + 1, cEnd - 2)[0] > curVal) {
+                    else if (1 < r && m.getOrNaN(r - 1, cEnd - 2) >= curVal
+                            || m.getOrNaN(r, cEnd - 2) > curVal
+                            || r < rEnd && m.getOrNaN(r + 1, cEnd - 2) > curVal) {
                         // cout << "rejectEnd:cEnd-2 " << r << "," << cEnd-1 <<
                         // endl;
                         // x - -
@@ -364,5 +377,88 @@ public class OpenCvUtils {
         }
 
         return locations;
-    }    
+    }
+
+    /**
+     * The first channel of a Mat, copied out in bulk for matMaxima().
+     */
+    private static abstract class MatValues {
+        private static final ThreadLocal<float[]> floatBuffer = new ThreadLocal<>();
+
+        protected final int cols;
+
+        MatValues(int cols) {
+            this.cols = cols;
+        }
+
+        abstract double get(int r, int c);
+
+        /**
+         * As get(), but returns NaN, which compares false with everything, for a column left of
+         * the Mat.
+         */
+        double getOrNaN(int r, int c) {
+            return c < 0 ? Double.NaN : get(r, c);
+        }
+
+        static MatValues of(Mat mat) {
+            int total = mat.rows() * mat.cols();
+            if (mat.type() == CvType.CV_32FC1) {
+                float[] values = floatBuffer.get();
+                if (values == null || values.length < total) {
+                    values = new float[total];
+                    floatBuffer.set(values);
+                }
+                mat.get(0, 0, values);
+                return new FloatValues(values, mat.cols());
+            }
+            // Anything else is converted to double, which holds every OpenCV depth exactly.
+            Mat channel = mat;
+            if (mat.channels() > 1) {
+                List<Mat> channels = new ArrayList<>();
+                Core.split(mat, channels);
+                channel = channels.get(0);
+                for (int i = 1; i < channels.size(); i++) {
+                    channels.get(i).release();
+                }
+            }
+            Mat converted = new Mat();
+            channel.convertTo(converted, CvType.CV_64F);
+            if (channel != mat) {
+                channel.release();
+            }
+            double[] values = new double[total];
+            converted.get(0, 0, values);
+            converted.release();
+            return new DoubleValues(values, mat.cols());
+        }
+    }
+
+    private static class FloatValues extends MatValues {
+        private final float[] values;
+
+        FloatValues(float[] values, int cols) {
+            super(cols);
+            this.values = values;
+        }
+
+        @Override
+        double get(int r, int c) {
+            return values[r * cols + c];
+        }
+    }
+
+    private static class DoubleValues extends MatValues {
+        private final double[] values;
+
+        DoubleValues(double[] values, int cols) {
+            super(cols);
+            this.values = values;
+        }
+
+        @Override
+        double get(int r, int c) {
+            return values[r * cols + c];
+        }
+    }
 }
@@ -7,9 +7,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.opencv.core.Rect;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Part;
 import org.openpnp.spi.Camera;
@@ -74,6 +76,90 @@ public class VisionUtils {
         return camera.getLocation().add(getPixelCenterOffsets(camera, x, y));
     }
 
+    /**
+     * Same as {@link VisionUtils#getPixelCenterOffsets(Camera, double, double)} but for pixel
+     * coordinates within the given region of interest of the Camera's image. If roi is null the
+     * coordinates are taken to be in the full image.
+     * 
+     * @param camera
+     * @param roi
+     * @param x
+     * @param y
+     * @return
+     */
+    public static Location getPixelCenterOffsets(Camera camera, Rect roi, double x, double y) {
+        if (roi != null) {
+            x += roi.x;
+            y += roi.y;
+        }
+        return getPixelCenterOffsets(camera, x, y);
+    }
+
+    /**
+     * Same as {@link VisionUtils#getPixelLocation(Camera, double, double)} but for pixel
+     * coordinates within the given region of interest of the Camera's image. If roi is null the
+     * coordinates are taken to be in the full image.
+     * 
+     * @param camera
+     * @param roi
+     * @param x
+     * @param y
+     * @return
+     */
+    public static Location getPixelLocation(Camera camera, Rect roi, double x, double y) {
+        return camera.getLocation().add(getPixelCenterOffsets(camera, roi, x, y));
+    }
+
+    /**
+     * Get a square region of interest of the given physical size centered in the Camera's image
+     * and clamped to the image bounds. Vision operations that only care about the area around
+     * where the Camera is pointed can pass this to CvPipeline as the "roi" property, or to
+     * FluentCv#setRoi, to avoid processing the rest of the frame. Returns null, meaning the full
+     * image, if size is null or zero.
+     * 
+     * @param camera
+     * @param size
+     * @return
+     */
+    public static Rect getCenteredRoi(Camera camera, Length size) {
+        if (size == null || size.getValue() <= 0) {
+            return null;
+        }
+        Location unitsPerPixel = camera.getUnitsPerPixel();
+        LengthUnit units = unitsPerPixel.getUnits();
+        int imageWidth = camera.getWidth();
+        int imageHeight = camera.getHeight();
+        int width = (int) Math.min(imageWidth,
+                Math.ceil(size.convertToUnits(units).getValue() / Math.abs(unitsPerPixel.getX())));
+        int height = (int) Math.min(imageHeight,
+                Math.ceil(size.convertToUnits(units).getValue() / Math.abs(unitsPerPixel.getY())));
+        return new Rect((imageWidth - width) / 2, (imageHeight - height) / 2, width, height);
+    }
+
+    /**
+     * Clamp a region of interest to an image of the given size. Returns null, meaning the full
+     * image, if roi is null, covers the whole image or does not overlap it at all. Callers that crop
+     * to a region must map results back with the clamped region rather than the one asked for.
+     * 
+     * @param roi
+     * @param width
+     * @param height
+     * @return
+     */
+    public static Rect clampRoi(Rect roi, int width, int height) {
+        if (roi == null) {
+            return null;
+        }
+        int x1 = Math.max(roi.x, 0);
+        int y1 = Math.max(roi.y, 0);
+        int x2 = Math.min(roi.x + roi.width, width);
+        int y2 = Math.min(roi.y + roi.height, height);
+        if (x2 <= x1 || y2 <= y1 || (x1 == 0 && y1 == 0 && x2 == width && y2 == height)) {
+            return null;
+        }
+        return new Rect(x1, y1, x2 - x1, y2 - y1);
+    }
+
     public static List<Location> sortLocationsByDistance(final Location origin,
             List<Location> locations) {
         // sort the results by distance from center ascending
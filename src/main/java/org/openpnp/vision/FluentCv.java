@@ -65,6 +65,7 @@ import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
@@ -136,6 +137,8 @@ public class FluentCv {
     private LinkedHashMap<String, Mat> stored = new LinkedHashMap<>();
     private Mat mat = new Mat();
     private Camera camera;
+    private Rect roi;
+    private Rect capturedRoi;
 
     public FluentCv toMat(BufferedImage img, String... tag) {
         Integer type = null;
@@ -251,7 +254,7 @@ public class FluentCv {
             double x = circle[0];
             double y = circle[1];
             double radius = circle[2];
-            Location location = VisionUtils.getPixelLocation(camera, x, y);
+            Location location = VisionUtils.getPixelLocation(camera, capturedRoi, x, y);
             location = location.derive(null, null, null, radius * 2 * avgUnitsPerPixel);
             locations.add(location);
         }
@@ -357,7 +360,16 @@ public class FluentCv {
 
     public FluentCv settleAndCapture(String... tag) {
         checkCamera();
-        return toMat(camera.settleAndCapture(), tag);
+        toMat(camera.settleAndCapture());
+        capturedRoi = VisionUtils.clampRoi(roi, mat.cols(), mat.rows());
+        if (capturedRoi != null) {
+            Mat submat = mat.submat(capturedRoi);
+            Mat cropped = submat.clone();
+            submat.release();
+            mat.release();
+            mat = cropped;
+        }
+        return store(mat, tag);
     }
 
     /**
@@ -372,12 +384,31 @@ public class FluentCv {
         return this;
     }
 
+    /**
+     * Set a region of interest, within the image of the Camera set with setCamera(Camera), that
+     * settleAndCapture() crops to, after clamping it to the captured image. Operations that
+     * convert pixels to Camera relative Locations take the clamped region into account. Pass null
+     * to process the full image.
+     * 
+     * @param roi
+     * @return
+     */
+    public FluentCv setRoi(Rect roi) {
+        this.roi = roi;
+        return this;
+    }
+
     public FluentCv filterCirclesByDistance(Length minDistance, Length maxDistance, String... tag) {
 
         double minDistancePx = VisionUtils.toPixels(minDistance, camera);
         double maxDistancePx = VisionUtils.toPixels(maxDistance, camera);
-        return filterCirclesByDistance(camera.getWidth() / 2, camera.getHeight() / 2, minDistancePx,
-                maxDistancePx, tag);
+        double originX = camera.getWidth() / 2;
+        double originY = camera.getHeight() / 2;
+        if (capturedRoi != null) {
+            originX -= capturedRoi.x;
+            originY -= capturedRoi.y;
+        }
+        return filterCirclesByDistance(originX, originY, minDistancePx, maxDistancePx, tag);
     }
 
     public FluentCv filterCirclesByDistance(double originX, double originY, double minDistance,
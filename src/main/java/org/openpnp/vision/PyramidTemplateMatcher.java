@@ -0,0 +1,271 @@
+package org.openpnp.vision;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Core.MinMaxLocResult;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.OpenCvUtils;
+
+/**
+ * Coarse to fine template matching. The image and template are reduced with Imgproc.pyrDown()
+ * by a factor of two per level and matched at the smallest size, which is cheaper than a full
+ * resolution match by roughly the square of the reduction for both the image and the template.
+ * The best candidate peaks from that match are then refined by matching the full resolution
+ * template against only the small area of the full resolution image around each of them.
+ *
+ * A refined score is exactly the score the full resolution match would give at that point. What
+ * is given up is that a true peak whose coarse score is well below the best coarse peak is not
+ * refined at all, so templates with fine detail that does not survive the reduction should use
+ * fewer levels. The number of levels is reduced automatically if the template would otherwise
+ * become smaller than MIN_TEMPLATE_SIZE pixels.
+ *
+ * Only methods for which a higher score is better are supported: TM_CCOEFF, TM_CCOEFF_NORMED,
+ * TM_CCORR and TM_CCORR_NORMED.
+ */
+public class PyramidTemplateMatcher {
+    /**
+     * The smallest width or height, in pixels, the template is reduced to.
+     */
+    public static final int MIN_TEMPLATE_SIZE = 8;
+
+    /**
+     * corr is multiplied by this when picking coarse peaks to refine, since reducing the image
+     * lowers the scores of true matches unevenly.
+     */
+    private static final double CANDIDATE_SLACK = 0.8;
+
+    private static final int MAX_CANDIDATES = 16;
+
+    public static class Match {
+        public final double x;
+        public final double y;
+        public final double score;
+
+        public Match(double x, double y, double score) {
+            this.x = x;
+            this.y = y;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%f, %f %f", x, y, score);
+        }
+    }
+
+    private int levels = 2;
+    private int method = Imgproc.TM_CCOEFF_NORMED;
+    private boolean subPixel;
+
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Sets the number of times the image is halved before the coarse match. 0 matches at full
+     * resolution only.
+     */
+    public PyramidTemplateMatcher setLevels(int levels) {
+        this.levels = levels;
+        return this;
+    }
+
+    public int getMethod() {
+        return method;
+    }
+
+    public PyramidTemplateMatcher setMethod(int method) {
+        this.method = method;
+        return this;
+    }
+
+    public boolean isSubPixel() {
+        return subPixel;
+    }
+
+    /**
+     * Sets whether match locations are refined beyond whole pixels by fitting a parabola through
+     * the scores either side of the peak in each direction.
+     */
+    public PyramidTemplateMatcher setSubPixel(boolean subPixel) {
+        this.subPixel = subPixel;
+        return this;
+    }
+
+    /**
+     * Returns the number of levels that will actually be used for the given template.
+     */
+    public int getEffectiveLevels(Mat template) {
+        int levels = Math.max(0, this.levels);
+        while (levels > 0 && (template.cols() >> levels < MIN_TEMPLATE_SIZE
+                || template.rows() >> levels < MIN_TEMPLATE_SIZE)) {
+            levels--;
+        }
+        return levels;
+    }
+
+    /**
+     * Finds the matches of template in image, using the same rules as MatchTemplate: matches
+     * scoring below threshold or below corr times the best score are dropped. Locations are the
+     * top left corner of the match, as with Imgproc.matchTemplate(). The matches are sorted best
+     * first. Neither Mat is modified.
+     */
+    public List<Match> match(Mat image, Mat template, double threshold, double corr) {
+        List<Match> matches = new ArrayList<>();
+        if (image.cols() < template.cols() || image.rows() < template.rows()) {
+            return matches;
+        }
+        int levels = getEffectiveLevels(template);
+        if (levels == 0) {
+            Mat result = new Mat();
+            Imgproc.matchTemplate(image, template, result, method);
+            for (Point point : candidates(result, corr, Integer.MAX_VALUE)) {
+                matches.add(peak(result, point.x, point.y, 0, 0));
+            }
+            result.release();
+        }
+        else {
+            Mat smallImage = reduce(image, levels);
+            Mat smallTemplate = reduce(template, levels);
+            Mat coarse = new Mat();
+            Imgproc.matchTemplate(smallImage, smallTemplate, coarse, method);
+            List<Point> candidates = candidates(coarse, corr * CANDIDATE_SLACK, MAX_CANDIDATES);
+            coarse.release();
+            smallImage.release();
+            smallTemplate.release();
+
+            int scale = 1 << levels;
+            int maxX = image.cols() - template.cols();
+            int maxY = image.rows() - template.rows();
+            for (Point candidate : candidates) {
+                Match match = refine(image, template, candidate.x * scale, candidate.y * scale,
+                        scale, maxX, maxY);
+                if (!contains(matches, match)) {
+                    matches.add(match);
+                }
+            }
+        }
+
+        double best = -Double.MAX_VALUE;
+        for (Match match : matches) {
+            best = Math.max(best, match.score);
+        }
+        double rangeMin = Math.max(threshold, corr * best);
+        List<Match> kept = new ArrayList<>();
+        for (Match match : matches) {
+            if (match.score >= rangeMin) {
+                kept.add(match);
+            }
+        }
+        Collections.sort(kept, new Comparator<Match>() {
+            @Override
+            public int compare(Match o1, Match o2) {
+                return Double.compare(o2.score, o1.score);
+            }
+        });
+        return kept;
+    }
+
+    private static Mat reduce(Mat mat, int levels) {
+        Mat reduced = mat;
+        for (int i = 0; i < levels; i++) {
+            Mat next = new Mat();
+            Imgproc.pyrDown(reduced, next);
+            if (reduced != mat) {
+                reduced.release();
+            }
+            reduced = next;
+        }
+        return reduced;
+    }
+
+    /**
+     * Returns up to max of the best local maxima of the result scoring at least corr times its
+     * maximum, or corr of the way from its minimum to its maximum if the maximum is negative. The
+     * global maximum is always included, even if matMaxima() does not see it as a local maximum,
+     * such as at the edge of a plateau.
+     */
+    private static List<Point> candidates(Mat result, double corr, int max) {
+        MinMaxLocResult mmr = Core.minMaxLoc(result);
+        double rangeMin = mmr.maxVal >= 0 ? corr * mmr.maxVal
+                : mmr.minVal + corr * (mmr.maxVal - mmr.minVal);
+        List<Point> points = OpenCvUtils.matMaxima(result, rangeMin, mmr.maxVal);
+        Point best = new Point((int) mmr.maxLoc.x, (int) mmr.maxLoc.y);
+        if (!points.contains(best)) {
+            points.add(best);
+        }
+        if (points.size() > max) {
+            Collections.sort(points, new Comparator<Point>() {
+                @Override
+                public int compare(Point o1, Point o2) {
+                    return Double.compare(result.get(o2.y, o2.x)[0], result.get(o1.y, o1.x)[0]);
+                }
+            });
+            points = points.subList(0, max);
+        }
+        return points;
+    }
+
+    /**
+     * Matches the template against the area of the image within radius pixels of x, y and returns
+     * the best match found there.
+     */
+    private Match refine(Mat image, Mat template, int x, int y, int radius, int maxX, int maxY) {
+        int x0 = Math.max(0, Math.min(maxX, x - radius));
+        int y0 = Math.max(0, Math.min(maxY, y - radius));
+        int x1 = Math.max(0, Math.min(maxX, x + radius));
+        int y1 = Math.max(0, Math.min(maxY, y + radius));
+        Mat roi = image.submat(new Rect(x0, y0, x1 - x0 + template.cols(),
+                y1 - y0 + template.rows()));
+        Mat result = new Mat();
+        Imgproc.matchTemplate(roi, template, result, method);
+        MinMaxLocResult mmr = Core.minMaxLoc(result);
+        Match match = peak(result, (int) mmr.maxLoc.x, (int) mmr.maxLoc.y, x0, y0);
+        result.release();
+        roi.release();
+        return match;
+    }
+
+    private Match peak(Mat result, int x, int y, int offsetX, int offsetY) {
+        double score = result.get(y, x)[0];
+        double dx = 0;
+        double dy = 0;
+        if (subPixel) {
+            if (x > 0 && x < result.cols() - 1) {
+                dx = parabolaPeak(result.get(y, x - 1)[0], score, result.get(y, x + 1)[0]);
+            }
+            if (y > 0 && y < result.rows() - 1) {
+                dy = parabolaPeak(result.get(y - 1, x)[0], score, result.get(y + 1, x)[0]);
+            }
+        }
+        return new Match(offsetX + x + dx, offsetY + y + dy, score);
+    }
+
+    /**
+     * Returns the offset, in the range -0.5 to 0.5, of the peak of the parabola through three
+     * equally spaced values, the middle one of which is the largest.
+     */
+    static double parabolaPeak(double left, double center, double right) {
+        double denominator = left - 2 * center + right;
+        if (denominator >= 0) {
+            return 0;
+        }
+        return Math.max(-0.5, Math.min(0.5, 0.5 * (left - right) / denominator));
+    }
+
+    private static boolean contains(List<Match> matches, Match match) {
+        for (Match m : matches) {
+            if (Math.abs(m.x - match.x) < 0.5 && Math.abs(m.y - match.y) < 0.5) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,169 @@
+package org.openpnp.vision;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.opencv.core.Mat;
+import org.openpnp.model.Footprint;
+import org.openpnp.model.Footprint.Pad;
+import org.openpnp.model.Location;
+
+/**
+ * A least recently used cache of template images shared by every pipeline, so that templates
+ * rendered from footprints or read from disk are only made once rather than on every fiducial
+ * check and part alignment.
+ *
+ * The cache is bounded by the native memory the images use, which is counted from each Mat's
+ * size and element size. Images past the limit are released as they are evicted.
+ *
+ * Keys are built from everything the image is made from, such as the footprint's pads and the
+ * camera's units per pixel, or a file's path, size and modification time. A change to any of
+ * them produces a new key, so stale images are never returned and age out of the cache on their
+ * own. See footprintKey() and fileKey().
+ *
+ * Callers get their own copy of the image, which they own and may change or release.
+ */
+public class TemplateImageCache {
+    public static final long DEFAULT_MAXIMUM_BYTES = 64 * 1024 * 1024;
+
+    private static final TemplateImageCache instance = new TemplateImageCache(DEFAULT_MAXIMUM_BYTES);
+
+    private final LinkedHashMap<String, Mat> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maximumBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TemplateImageCache(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * The cache shared by all pipelines.
+     */
+    public static TemplateImageCache get() {
+        return instance;
+    }
+
+    /**
+     * Returns a copy of the image cached for the key, calling factory to make the image if it is
+     * not cached. The cache takes ownership of the Mat factory returns. If factory returns null
+     * nothing is cached and null is returned.
+     */
+    public Mat get(String key, Callable<Mat> factory) throws Exception {
+        synchronized (this) {
+            Mat image = images.get(key);
+            if (image != null) {
+                hits++;
+                return image.clone();
+            }
+            misses++;
+        }
+        // Made outside the lock since it may read from disk, at the risk of two threads making
+        // the same image at once.
+        Mat image = factory.call();
+        if (image == null) {
+            return null;
+        }
+        Mat copy = image.clone();
+        synchronized (this) {
+            Mat previous = images.put(key, image);
+            if (previous != null) {
+                bytes -= sizeOf(previous);
+                previous.release();
+            }
+            bytes += sizeOf(image);
+            evict();
+        }
+        return copy;
+    }
+
+    private void evict() {
+        for (Iterator<Map.Entry<String, Mat>> i = images.entrySet().iterator(); i.hasNext()
+                && bytes > maximumBytes;) {
+            Mat image = i.next().getValue();
+            bytes -= sizeOf(image);
+            image.release();
+            i.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        for (Mat image : images.values()) {
+            image.release();
+        }
+        images.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    public synchronized void setMaximumBytes(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        evict();
+    }
+
+    /**
+     * The native memory used by the cached images.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static long sizeOf(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+
+    /**
+     * Returns a key part describing everything about the footprint that affects how it is drawn.
+     */
+    public static String footprintKey(Footprint footprint) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(footprint.getUnits()).append(':');
+        sb.append(footprint.getBodyWidth()).append(',').append(footprint.getBodyHeight());
+        for (Pad pad : footprint.getPads()) {
+            sb.append(';').append(pad.getX()).append(',').append(pad.getY()).append(',')
+                    .append(pad.getWidth()).append(',').append(pad.getHeight()).append(',')
+                    .append(pad.getRotation()).append(',').append(pad.getRoundness());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a key part for a camera's units per pixel.
+     */
+    public static String unitsPerPixelKey(Location unitsPerPixel) {
+        return unitsPerPixel.getUnits() + ":" + unitsPerPixel.getX() + "," + unitsPerPixel.getY();
+    }
+
+    /**
+     * Returns a key part for a file that changes when the file does.
+     */
+    public static String fileKey(File file) {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+}
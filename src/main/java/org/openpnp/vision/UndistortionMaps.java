@@ -0,0 +1,264 @@
+package org.openpnp.vision;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Lens undistortion maps for use with Imgproc.remap().
+ *
+ * The maps are built in OpenCV's 16 bit fixed point format (a CV_16SC2 map of integer
+ * coordinates and a CV_16UC1 map of interpolation table indexes) which remaps considerably faster
+ * than floating point maps. Building the maps is slow for large frames, so they are saved to a
+ * cache directory in a file named for the camera, a hash of the calibration and the frame size,
+ * and later loads of the same calibration read them back through a memory mapping instead of
+ * rebuilding them. A change to the calibration or the frame size produces a different name, so
+ * stale files are never used, and they are deleted when the camera's new maps are saved.
+ */
+public class UndistortionMaps {
+    private static final int MAGIC = 0x4F50554D; // "OPUM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final Mat map1;
+    private final Mat map2;
+    private final Size size;
+
+    private UndistortionMaps(Mat map1, Mat map2, Size size) {
+        this.map1 = map1;
+        this.map2 = map2;
+        this.size = size;
+    }
+
+    /**
+     * Returns the undistortion maps for the given calibration and frame size, loading them from
+     * cacheDirectory if they have been built before and building and saving them there if not.
+     * name identifies the camera, and saving its maps deletes the ones saved for it before.
+     * cacheDirectory may be null, in which case the maps are always built and not saved.
+     */
+    public static UndistortionMaps get(Mat cameraMatrix, Mat distortionCoefficients, Size size,
+            File cacheDirectory, String name) {
+        File file = null;
+        if (cacheDirectory != null) {
+            file = new File(cacheDirectory, prefix(cameraMatrix, distortionCoefficients, name)
+                    + (int) size.width + "x" + (int) size.height + ".map");
+            if (file.exists()) {
+                try {
+                    return load(file, size);
+                }
+                catch (Exception e) {
+                    Logger.warn(e, "Unable to load undistortion maps from {}, rebuilding.", file);
+                }
+            }
+        }
+
+        long t = System.currentTimeMillis();
+        Mat map1 = new Mat();
+        Mat map2 = new Mat();
+        Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
+        Imgproc.initUndistortRectifyMap(cameraMatrix, distortionCoefficients, rectification,
+                cameraMatrix, size, CvType.CV_16SC2, map1, map2);
+        rectification.release();
+        UndistortionMaps maps = new UndistortionMaps(map1, map2, size);
+        Logger.debug("Built {}x{} undistortion maps in {}ms", (int) size.width, (int) size.height,
+                System.currentTimeMillis() - t);
+
+        if (file != null) {
+            try {
+                maps.save(file);
+                deleteStale(cacheDirectory, name, file);
+            }
+            catch (Exception e) {
+                Logger.warn(e, "Unable to save undistortion maps to {}.", file);
+            }
+        }
+        return maps;
+    }
+
+    /**
+     * Returns the maps saved in cacheDirectory for the named camera and the given calibration,
+     * whatever frame size they were built for, or null if there are none. This lets a camera load
+     * its maps when it is opened, before it knows its frame size.
+     */
+    public static UndistortionMaps preload(Mat cameraMatrix, Mat distortionCoefficients,
+            File cacheDirectory, String name) {
+        String prefix = prefix(cameraMatrix, distortionCoefficients, name);
+        File[] files = cacheDirectory.listFiles(
+                (directory, fileName) -> fileName.startsWith(prefix) && fileName.endsWith(".map"));
+        if (files == null || files.length == 0) {
+            return null;
+        }
+        try {
+            return load(files[0], null);
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Unable to load undistortion maps from {}.", files[0]);
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the maps saved for the named camera other than the given file. Each is the size of
+     * three 16 bit frames, so they are not left to pile up as the calibration changes.
+     */
+    private static void deleteStale(File cacheDirectory, String name, File file) {
+        String prefix = fileName(name) + "-";
+        File[] files = cacheDirectory.listFiles((directory, fileName) -> fileName.startsWith(prefix)
+                && fileName.endsWith(".map") && !fileName.equals(file.getName()));
+        if (files == null) {
+            return;
+        }
+        for (File stale : files) {
+            if (!stale.delete()) {
+                Logger.debug("Unable to delete stale undistortion maps {}.", stale);
+            }
+        }
+    }
+
+    public Mat getMap1() {
+        return map1;
+    }
+
+    public Mat getMap2() {
+        return map2;
+    }
+
+    public Size getSize() {
+        return size;
+    }
+
+    /**
+     * Undistorts src into a new Mat. src is not modified.
+     */
+    public Mat remap(Mat src) {
+        Mat dst = new Mat();
+        Imgproc.remap(src, dst, map1, map2, Imgproc.INTER_LINEAR);
+        return dst;
+    }
+
+    public void release() {
+        map1.release();
+        map2.release();
+    }
+
+    /**
+     * The start of the names of the files saved for the named camera and the given calibration,
+     * which is followed by the frame size.
+     */
+    private static String prefix(Mat cameraMatrix, Mat distortionCoefficients, String name) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = ByteBuffer.allocate(8 * (int) (cameraMatrix.total()
+                    + distortionCoefficients.total()));
+            for (Mat mat : new Mat[] {cameraMatrix, distortionCoefficients}) {
+                double[] values = new double[(int) mat.total()];
+                mat.get(0, 0, values);
+                for (double value : values) {
+                    buffer.putDouble(value);
+                }
+            }
+            digest.update(buffer.array());
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return fileName(name) + "-" + sb + "-";
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Names can be camera ids, which are not guaranteed to be safe in a file name. Dashes are
+     * replaced too, since they separate the name from the rest.
+     */
+    private static String fileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    /**
+     * Loads the maps from the file, checking that they were built for the given frame size or,
+     * if size is null, taking the frame size from the file.
+     */
+    private static UndistortionMaps load(File file, Size size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Unexpected file size " + channel.size() + ".");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Invalid undistortion map header.");
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (size == null) {
+                size = new Size(width, height);
+            }
+            else if (width != (int) size.width || height != (int) size.height) {
+                throw new IOException("Invalid undistortion map header.");
+            }
+            long expectedSize = HEADER_SIZE + (long) width * height * 2 * 3;
+            if (channel.size() != expectedSize) {
+                throw new IOException("Unexpected file size " + channel.size() + ".");
+            }
+            short[] data = new short[width * height * 2];
+            buffer.asShortBuffer().get(data);
+            Mat map1 = new Mat(height, width, CvType.CV_16SC2);
+            map1.put(0, 0, data);
+
+            buffer.position(HEADER_SIZE + width * height * 2 * 2);
+            data = new short[width * height];
+            buffer.asShortBuffer().get(data);
+            Mat map2 = new Mat(height, width, CvType.CV_16UC1);
+            map2.put(0, 0, data);
+            return new UndistortionMaps(map1, map2, size);
+        }
+    }
+
+    /**
+     * Writes the maps to a temporary file which is then moved into place, so that a crash part
+     * way through never leaves a truncated map behind. This is a plain write rather than a
+     * mapping because some platforms refuse to move a file that is still mapped.
+     */
+    private void save(File file) throws IOException {
+        int width = (int) size.width;
+        int height = (int) size.height;
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + width * height * 2 * 3);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            short[] data = new short[width * height * 2];
+            map1.get(0, 0, data);
+            buffer.asShortBuffer().put(data);
+            buffer.position(HEADER_SIZE + data.length * 2);
+            data = new short[width * height];
+            map2.get(0, 0, data);
+            buffer.asShortBuffer().put(data);
+            buffer.rewind();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
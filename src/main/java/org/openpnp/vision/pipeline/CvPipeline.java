@@ -5,8 +5,15 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.opencv.core.Core;
@@ -14,6 +21,7 @@ import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
+import org.opencv.core.Size;
 import org.openpnp.vision.pipeline.CvStage.Result;
 import org.openpnp.vision.pipeline.stages.BlurGaussian;
 import org.simpleframework.xml.ElementList;
@@ -51,6 +59,30 @@ public class CvPipeline {
         System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
     }
 
+    /**
+     * Controls which stage images process() keeps in the stage Results. Keeping an image costs a
+     * full copy of the working image, so callers that only read models should not keep them all.
+     */
+    public enum ResultRetention {
+        /**
+         * Keep a copy of every stage's image. This is what the pipeline editor needs to show each
+         * stage and is the default.
+         */
+        Debug,
+        /**
+         * Keep the models and the final working image. Stage images are only kept when another
+         * stage reads them, such as ImageRecall or a template stage, since the pipeline cannot
+         * run correctly without them. Stages that the execution plan finds cannot affect the
+         * result or the final working image are not run at all. See CvPipelinePlan.
+         */
+        Production,
+        /**
+         * As Production, and also keep the images of the stages named with
+         * setRetainedImageStageNames(), for callers that want to show or save particular stages.
+         */
+        OnDemand
+    }
+
     @ElementList
     private ArrayList<CvStage> stages = new ArrayList<>();
 
@@ -62,6 +94,46 @@ public class CvPipeline {
     private Object workingModel;
     
     private long totalProcessingTimeNs;
+
+    private ResultRetention resultRetention = ResultRetention.Debug;
+
+    private Set<String> retainedImageStageNames = Collections.emptySet();
+
+    private CvPipelinePlan plan;
+
+    /**
+     * Held for the whole of a run so that the editor's background runs and callers on other
+     * threads do not process the pipeline at the same time. Reading and changing the results and
+     * the stage list is guarded by the pipeline itself, so that the editor can show results while
+     * a run is in progress.
+     */
+    private final Object processLock = new Object();
+
+    /**
+     * The stages whose results processIncremental() may reuse, in order, and their serialized
+     * properties at the time they were processed.
+     */
+    private List<CvStage> cachedStages = new ArrayList<>();
+    private List<String> cachedFingerprints = new ArrayList<>();
+
+    private Set<CvStage> cachedResultStages = Collections.emptySet();
+
+    private boolean parallel;
+
+    /**
+     * The stage being processed by the current thread during a parallel run.
+     */
+    private final ThreadLocal<StageTask> currentTask = new ThreadLocal<>();
+
+    private static ForkJoinPool pool;
+
+    /**
+     * Shared so that the stage classes are only scanned once, rather than for every pipeline read
+     * from the configuration.
+     */
+    private static final Serializer serializer = createSerializer();
+
+    private final MatPool matPool = new MatPool();
     
     public CvPipeline() {
         
@@ -83,12 +155,13 @@ public class CvPipeline {
      * @param name
      * @param stage
      */
-    public void add(String name, CvStage stage) {
+    public synchronized void add(String name, CvStage stage) {
         if (name == null) {
             name = generateUniqueName();
         }
         stage.setName(name);
         stages.add(stage);
+        invalidatePlan();
     }
 
     /**
@@ -101,12 +174,13 @@ public class CvPipeline {
         add(stage.getName(), stage);
     }
 
-    public void insert(String name, CvStage stage, int index) {
+    public synchronized void insert(String name, CvStage stage, int index) {
         if (name == null) {
             name = generateUniqueName();
         }
         stage.setName(name);
         stages.add(index, stage);
+        invalidatePlan();
     }
 
     public void insert(CvStage stage, int index) {
@@ -117,15 +191,20 @@ public class CvPipeline {
         remove(getStage(name));
     }
 
-    public void remove(CvStage stage) {
+    public synchronized void remove(CvStage stage) {
         stages.remove(stage);
+        invalidatePlan();
     }
 
-    public List<CvStage> getStages() {
-        return Collections.unmodifiableList(stages);
+    /**
+     * Returns a copy of the list of stages, so that it can be read while the pipeline editor
+     * changes the stages on another thread.
+     */
+    public synchronized List<CvStage> getStages() {
+        return Collections.unmodifiableList(new ArrayList<>(stages));
     }
 
-    public CvStage getStage(String name) {
+    public synchronized CvStage getStage(String name) {
         if (name == null) {
             return null;
         }
@@ -148,7 +227,7 @@ public class CvPipeline {
         if (name == null) {
             return null;
         }
-        return getResult(getStage(name));
+        return getResult(getPlan().getStage(name));
     }
 
     /**
@@ -158,7 +237,7 @@ public class CvPipeline {
      * @param stage
      * @return
      */
-    public Result getResult(CvStage stage) {
+    public synchronized Result getResult(CvStage stage) {
         if (stage == null) {
             return null;
         }
@@ -171,15 +250,32 @@ public class CvPipeline {
      * @return
      */
     public Mat getWorkingImage() {
-        if (workingImage == null || (workingImage.cols() == 0 && workingImage.rows() == 0)) {
-            workingImage = new Mat(480, 640, CvType.CV_8UC3, new Scalar(0, 0, 0));
-            Core.line(workingImage, new Point(0, 0), new Point(640, 480), new Scalar(0, 0, 255));
-            Core.line(workingImage, new Point(640, 0), new Point(0, 480), new Scalar(0, 0, 255));
+        StageTask task = currentTask.get();
+        if (task != null) {
+            return task.getWorkingImage();
+        }
+        if (isEmpty(workingImage)) {
+            workingImage = createPlaceholderImage();
         }
         return workingImage;
     }
 
+    private static boolean isEmpty(Mat mat) {
+        return mat == null || (mat.cols() == 0 && mat.rows() == 0);
+    }
+
+    private static Mat createPlaceholderImage() {
+        Mat mat = new Mat(480, 640, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        Core.line(mat, new Point(0, 0), new Point(640, 480), new Scalar(0, 0, 255));
+        Core.line(mat, new Point(640, 0), new Point(0, 480), new Scalar(0, 0, 255));
+        return mat;
+    }
+
     public Object getWorkingModel() {
+      StageTask task = currentTask.get();
+      if (task != null) {
+          return task.run.getModelBefore(task);
+      }
       return workingModel;
     }
 
@@ -191,11 +287,225 @@ public class CvPipeline {
       this.totalProcessingTimeNs = totalProcessingTimeNs;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Sets whether stages on independent branches of the pipeline are processed at the same time.
+     * This only takes effect when the execution plan knows every stage's dependencies and has no
+     * unresolved references, otherwise the pipeline is processed in order as usual. See
+     * ParallelRun.
+     * 
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns a scratch Mat for the stage to use while it is processed, such as a mask or an
+     * intermediate result. The Mat is only valid until the end of the run and must not be
+     * returned as the stage's result image. See MatPool.
+     * 
+     * @param stage
+     * @param name Distinguishes the scratch Mats of a stage that needs more than one.
+     * @return
+     */
+    public Mat getScratchMat(CvStage stage, String name) {
+        return matPool.get(stage, name);
+    }
+
+    /**
+     * As getScratchMat(CvStage, String), and makes sure the Mat has the given size and type. Its
+     * contents are undefined.
+     */
+    public Mat getScratchMat(CvStage stage, String name, Size size, int type) {
+        return matPool.get(stage, name, size, type);
+    }
+
+    public boolean isMatPoolEnabled() {
+        return matPool.isEnabled();
+    }
+
+    /**
+     * Sets whether the scratch Mats given to stages are kept from one run to the next rather than
+     * released at the end of each run. Worth turning on for pipelines that are processed over and
+     * over, such as a camera's fiducial or bottom vision pipeline.
+     * 
+     * @param matPoolEnabled
+     */
+    public void setMatPoolEnabled(boolean matPoolEnabled) {
+        matPool.setEnabled(matPoolEnabled);
+    }
+
+    /**
+     * The pool of scratch Mats, for its memory and allocation figures.
+     * 
+     * @return
+     */
+    public MatPool getMatPool() {
+        return matPool;
+    }
+
+    public ResultRetention getResultRetention() {
+        return resultRetention;
+    }
+
+    public void setResultRetention(ResultRetention resultRetention) {
+        this.resultRetention = resultRetention;
+    }
+
+    public Set<String> getRetainedImageStageNames() {
+        return retainedImageStageNames;
+    }
+
+    /**
+     * Sets the names of stages whose images are kept when the retention is OnDemand.
+     * 
+     * @param retainedImageStageNames
+     */
+    public void setRetainedImageStageNames(Set<String> retainedImageStageNames) {
+        this.retainedImageStageNames = retainedImageStageNames;
+    }
+
+    /**
+     * Returns the execution plan for the pipeline, compiling it if the pipeline has changed since
+     * it was last compiled.
+     * 
+     * @return
+     */
+    public synchronized CvPipelinePlan getPlan() {
+        if (plan == null) {
+            plan = new CvPipelinePlan(stages);
+        }
+        return plan;
+    }
+
+    /**
+     * Discards the compiled execution plan so that it is compiled again on next use. Adding,
+     * inserting and removing stages does this automatically. Code that changes the name, enabled
+     * state or stage references of a stage that is already in the pipeline must call it.
+     */
+    public synchronized void invalidatePlan() {
+        plan = null;
+    }
+
+    /**
+     * Runs the change while holding the lock that processing holds, so that it waits for a run in
+     * progress on another thread to finish rather than changing stages while they are processed.
+     * The plan is then compiled again on next use, as the change may have renamed stages or
+     * changed their references. The pipeline editor makes its changes to stages this way.
+     */
+    public void edit(Runnable change) {
+        synchronized (processLock) {
+            change.run();
+            invalidatePlan();
+        }
+    }
+
     public void process() {
+        process(resultRetention);
+    }
+
+    /**
+     * As process(), but with the given retention for this run only, so that a caller such as the
+     * pipeline editor can process the pipeline without changing the retention another caller
+     * set.
+     */
+    public void process(ResultRetention retention) {
+        synchronized (processLock) {
+            try {
+                run(retention, false, null);
+            }
+            finally {
+                matPool.recycle();
+            }
+        }
+    }
+
+    /**
+     * As process(), but when the retention is ResultRetention.Debug the results of the leading
+     * stages that are unchanged since the last run are kept and processing resumes from the first
+     * stage that changed. This is what the pipeline editor uses so that changing a property near
+     * the end of a long pipeline does not capture and process everything before it again.
+     * 
+     * A stage's result is reused when the stage and every stage before it are the same instances,
+     * in the same order and with the same serialized properties as when the result was made.
+     * Pipeline properties set with setProperty() are not part of this, so callers that change them
+     * should call process() instead.
+     * 
+     * cancelled is checked before each stage is run, and if it returns true processing stops,
+     * leaving the results of the stages that did run to be reused by the next call.
+     * 
+     * @param cancelled May be null.
+     */
+    public void processIncremental(BooleanSupplier cancelled) {
+        processIncremental(resultRetention, cancelled);
+    }
+
+    /**
+     * As processIncremental(BooleanSupplier), but with the given retention for this run only.
+     * See process(ResultRetention).
+     */
+    public void processIncremental(ResultRetention retention, BooleanSupplier cancelled) {
+        synchronized (processLock) {
+            try {
+                run(retention, retention == ResultRetention.Debug, cancelled);
+            }
+            finally {
+                matPool.recycle();
+            }
+        }
+    }
+
+    private void run(ResultRetention retention, boolean incremental, BooleanSupplier cancelled) {
+        List<CvStage> stages;
+        synchronized (this) {
+            stages = new ArrayList<>(this.stages);
+        }
+        boolean debug = retention == ResultRetention.Debug;
+        // Only incremental runs compare fingerprints, and serializing every stage is too slow
+        // to do on every run.
+        List<String> fingerprints = incremental ? fingerprint(stages) : null;
+        int first = 0;
+        if (incremental) {
+            while (first < stages.size() && first < cachedStages.size()
+                    && stages.get(first) == cachedStages.get(first)
+                    && fingerprints.get(first) != null
+                    && fingerprints.get(first).equals(cachedFingerprints.get(first))
+                    && results.containsKey(stages.get(first))) {
+                first++;
+            }
+        }
+        restore(stages, first);
+        cachedStages = new ArrayList<>(stages.subList(0, first));
+        cachedFingerprints = incremental ? new ArrayList<>(fingerprints.subList(0, first))
+                : new ArrayList<>();
 
         totalProcessingTimeNs = 0;
-        release();
-        for (CvStage stage : stages) {
+        CvPipelinePlan plan = getPlan();
+        Set<String> extraRoots = retention == ResultRetention.OnDemand
+                ? retainedImageStageNames : Collections.emptySet();
+        Set<CvStage> executedStages = plan.getExecutedStages(extraRoots);
+        Set<String> retainedImageStages = debug ? null
+                : plan.getRetainedImageStageNames(extraRoots);
+        if (parallel && plan.isDependenciesKnown() && !plan.hasProblems()) {
+            new ParallelRun(stages, first, debug, plan, executedStages, retainedImageStages,
+                    cancelled).run(fingerprints);
+            return;
+        }
+        for (int i = first; i < stages.size(); i++) {
+            CvStage stage = stages.get(i);
+            if (cancelled != null && cancelled.getAsBoolean()) {
+                return;
+            }
+            if (!debug && !executedStages.contains(stage)) {
+                // Dead stage, nothing that is kept depends on it.
+                continue;
+            }
+            boolean retainImage =
+                    retainedImageStages == null || retainedImageStages.contains(stage.getName());
             // Process and time the stage and get the result.
             long processingTimeNs = System.nanoTime();
             Result result = null;
@@ -223,42 +533,338 @@ public class CvPipeline {
             // If the result image is null and there is a working image,
             // replace the result image with a clone of the working image.
             if (image == null) {
-                if (workingImage != null) {
+                if (workingImage != null && retainImage) {
                     image = workingImage.clone();
                 }
             }
             // If the result image is not null:
             // Release the working image if the result image is different.
             // Replace the working image with the result image.
-            // Clone the result image for storage.
+            // Clone the result image for storage, if it is being retained.
             else {
                 if (workingImage != null && workingImage != image) {
                     workingImage.release();
                 }
                 workingImage = image;
-                image = image.clone();
+                image = retainImage ? image.clone() : null;
             }
 
-            results.put(stage, new Result(image, model, processingTimeNs));
+            synchronized (this) {
+                results.put(stage, new Result(image, model, processingTimeNs));
+            }
+            if (fingerprints != null) {
+                cachedStages.add(stage);
+                cachedFingerprints.add(fingerprints.get(i));
+            }
         }
     }
 
     /**
-     * Release any temporary resources associated with the processing of the pipeline. Should be
-     * called when the pipeline is no longer needed. This is primarily to release retained native
-     * resources from OpenCV.
+     * Processes the stages from first on as ForkJoinTasks, one per stage. A task first waits for
+     * the stages the execution plan says it depends on, so stages on branches that do not depend
+     * on each other, such as two chains of stages that each start with an ImageRecall of the same
+     * capture, run at the same time.
+     * 
+     * Each stage sees the working image it would have seen when processed in order: the image
+     * returned by the closest earlier stage that returned one, after any changes made to it in
+     * place by the stages in between. The results, their processing times and the final working
+     * image and model are the same as an in order run. Working images that a later stage replaces
+     * are released at the end of the run rather than as soon as they are replaced.
      */
-    public void release() {
+    private class ParallelRun {
+        private final List<StageTask> tasks = new ArrayList<>();
+        private final Mat initialImage;
+        private final Object initialModel;
+        private final BooleanSupplier cancelled;
+        private volatile boolean aborted;
+
+        ParallelRun(List<CvStage> stages, int first, boolean debug, CvPipelinePlan plan,
+                Set<CvStage> executedStages, Set<String> retainedImageStages,
+                BooleanSupplier cancelled) {
+            this.initialImage = workingImage;
+            this.initialModel = workingModel;
+            this.cancelled = cancelled;
+            Map<CvStage, StageTask> tasksByStage = new HashMap<>();
+            StageTask previous = null;
+            for (int i = first; i < stages.size(); i++) {
+                CvStage stage = stages.get(i);
+                boolean execute = debug || executedStages.contains(stage);
+                boolean retainImage = retainedImageStages == null
+                        || retainedImageStages.contains(stage.getName());
+                StageTask task = new StageTask(this, i, stage, execute, retainImage, previous);
+                for (CvStage dependency : plan.getDependencies(stage)) {
+                    StageTask dependencyTask = tasksByStage.get(dependency);
+                    if (dependencyTask != null) {
+                        task.dependencies.add(dependencyTask);
+                    }
+                }
+                tasksByStage.put(stage, task);
+                tasks.add(task);
+                previous = task;
+            }
+        }
+
+        void run(List<String> fingerprints) {
+            getPool().invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+
+            long totalProcessingTimeNs = 0;
+            Object model = initialModel;
+            for (StageTask task : tasks) {
+                totalProcessingTimeNs += task.processingTimeNs;
+                if (task.model != null) {
+                    model = task.model;
+                }
+            }
+            CvPipeline.this.totalProcessingTimeNs = totalProcessingTimeNs;
+            workingModel = model;
+
+            Mat output = null;
+            if (!aborted) {
+                output = tasks.isEmpty() ? initialImage : tasks.get(tasks.size() - 1).getOutput();
+            }
+            Set<Mat> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+            replaced.add(initialImage);
+            for (StageTask task : tasks) {
+                replaced.add(task.input);
+                replaced.add(task.image);
+            }
+            for (Mat mat : replaced) {
+                if (mat != null && mat != output) {
+                    mat.release();
+                }
+            }
+            workingImage = output;
+
+            if (fingerprints != null) {
+                for (StageTask task : tasks) {
+                    if (!task.stored) {
+                        break;
+                    }
+                    cachedStages.add(task.stage);
+                    cachedFingerprints.add(fingerprints.get(task.index));
+                }
+            }
+        }
+
+        boolean isAborted() {
+            if (!aborted && cancelled != null && cancelled.getAsBoolean()) {
+                aborted = true;
+            }
+            return aborted;
+        }
+
+        Object getModelBefore(StageTask task) {
+            for (int i = tasks.indexOf(task) - 1; i >= 0; i--) {
+                StageTask previous = tasks.get(i);
+                previous.join();
+                if (previous.model != null) {
+                    return previous.model;
+                }
+            }
+            return initialModel;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class StageTask extends RecursiveAction {
+        private final ParallelRun run;
+        private final int index;
+        private final CvStage stage;
+        private final boolean execute;
+        private final boolean retainImage;
+        private final StageTask previous;
+        private final List<StageTask> dependencies = new ArrayList<>();
+
+        private Mat input;
+        private boolean inputResolved;
+        private Mat image;
+        private Object model;
+        private long processingTimeNs;
+        private boolean stored;
+
+        StageTask(ParallelRun run, int index, CvStage stage, boolean execute, boolean retainImage,
+                StageTask previous) {
+            this.run = run;
+            this.index = index;
+            this.stage = stage;
+            this.execute = execute;
+            this.retainImage = retainImage;
+            this.previous = previous;
+        }
+
+        @Override
+        protected void compute() {
+            for (StageTask dependency : dependencies) {
+                dependency.join();
+            }
+            if (!execute || run.isAborted()) {
+                // Dead stage, nothing that is kept depends on it.
+                return;
+            }
+            if (stage.isEnabled() && stage.readsWorkingImage()) {
+                resolveInput();
+            }
+            // Joining another task may run it on this thread, so put back whatever was current.
+            StageTask outer = currentTask.get();
+            currentTask.set(this);
+            long processingTimeNs = System.nanoTime();
+            Result result = null;
+            try {
+                if (!stage.isEnabled()) {
+                    throw new Exception("Stage not enabled.");
+                }
+                result = stage.process(CvPipeline.this);
+            }
+            catch (Exception e) {
+                result = new Result(null, e);
+            }
+            finally {
+                currentTask.set(outer);
+            }
+            processingTimeNs = System.nanoTime() - processingTimeNs;
+
+            Object model = null;
+            if (result != null) {
+                image = result.image;
+                model = result.model;
+            }
+            Mat storedImage = null;
+            if (retainImage) {
+                Mat output = getOutput();
+                if (output != null) {
+                    storedImage = output.clone();
+                }
+            }
+            if (run.isAborted()) {
+                if (storedImage != null) {
+                    storedImage.release();
+                }
+                return;
+            }
+            synchronized (CvPipeline.this) {
+                results.put(stage, new Result(storedImage, model, processingTimeNs));
+            }
+            if (stage.isEnabled()) {
+                this.model = model;
+            }
+            this.processingTimeNs = processingTimeNs;
+            stored = true;
+        }
+
+        private void resolveInput() {
+            if (!inputResolved) {
+                input = previous == null ? run.initialImage : previous.joinOutput();
+                inputResolved = true;
+            }
+        }
+
+        Mat getWorkingImage() {
+            resolveInput();
+            if (isEmpty(input)) {
+                input = createPlaceholderImage();
+            }
+            return input;
+        }
+
+        /**
+         * The working image after this stage. Only valid once the task is done, or from the task
+         * itself.
+         */
+        Mat getOutput() {
+            if (image != null) {
+                return image;
+            }
+            if (inputResolved) {
+                return input;
+            }
+            return previous == null ? run.initialImage : previous.joinOutput();
+        }
+
+        Mat joinOutput() {
+            join();
+            return getOutput();
+        }
+    }
+
+    /**
+     * Releases the results of every stage from first on and sets the working image and model back
+     * to what they were after stage first - 1 ran.
+     */
+    private synchronized void restore(List<CvStage> stages, int first) {
+        Set<CvStage> kept = new HashSet<>(stages.subList(0, first));
         if (workingImage != null) {
             workingImage.release();
+            workingImage = null;
         }
-        for (Result result : results.values()) {
-            if (result.image != null) {
-                result.image.release();
+        workingModel = null;
+        for (Iterator<Map.Entry<CvStage, Result>> i = results.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<CvStage, Result> entry = i.next();
+            if (!kept.contains(entry.getKey())) {
+                if (entry.getValue().image != null) {
+                    entry.getValue().image.release();
+                }
+                i.remove();
             }
         }
-        workingModel=null;
-        results.clear();
+        for (int i = 0; i < first; i++) {
+            CvStage stage = stages.get(i);
+            Result result = results.get(stage);
+            if (stage.isEnabled() && result.model != null) {
+                workingModel = result.model;
+            }
+            if (i == first - 1 && result.image != null) {
+                workingImage = result.image.clone();
+            }
+        }
+        cachedResultStages = kept;
+    }
+
+    /**
+     * Returns true if the stage's result was reused from an earlier run by the last call to
+     * processIncremental() rather than being processed again.
+     * 
+     * @param stage
+     * @return
+     */
+    public synchronized boolean isResultCached(CvStage stage) {
+        return cachedResultStages.contains(stage);
+    }
+
+    private static List<String> fingerprint(List<CvStage> stages) {
+        List<String> fingerprints = new ArrayList<>();
+        for (CvStage stage : stages) {
+            try {
+                StringWriter sw = new StringWriter();
+                serializer.write(stage, sw);
+                fingerprints.add(sw.toString());
+            }
+            catch (Exception e) {
+                // Never matches, so the stage is always processed.
+                fingerprints.add(null);
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Release any temporary resources associated with the processing of the pipeline. Should be
+     * called when the pipeline is no longer needed. This is primarily to release retained native
+     * resources from OpenCV.
+     */
+    public void release() {
+        synchronized (processLock) {
+            restore(Collections.emptyList(), 0);
+            cachedStages = new ArrayList<>();
+            cachedFingerprints = new ArrayList<>();
+            matPool.clear();
+        }
     }
 
     /**
@@ -268,9 +874,8 @@ public class CvPipeline {
      * @throws Exception
      */
     public String toXmlString() throws Exception {
-        Serializer ser = createSerializer();
         StringWriter sw = new StringWriter();
-        ser.write(this, sw);
+        serializer.write(this, sw);
         return sw.toString();
     }
 
@@ -282,12 +887,14 @@ public class CvPipeline {
      */
     public void fromXmlString(String s) throws Exception {
         release();
-        Serializer ser = createSerializer();
         StringReader sr = new StringReader(s);
-        CvPipeline pipeline = ser.read(CvPipeline.class, sr);
-        stages.clear();
-        for (CvStage stage : pipeline.getStages()) {
-            add(stage);
+        CvPipeline pipeline = serializer.read(CvPipeline.class, sr);
+        synchronized (this) {
+            stages.clear();
+            for (CvStage stage : pipeline.getStages()) {
+                add(stage);
+            }
+            invalidatePlan();
         }
     }
 
@@ -318,6 +925,13 @@ public class CvPipeline {
         properties.put(name, value);
     }
     
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
     private static Serializer createSerializer() {
         Style style = new HyphenStyle();
         Format format = new Format(style);
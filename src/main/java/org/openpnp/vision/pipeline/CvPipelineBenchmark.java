@@ -0,0 +1,468 @@
+package org.openpnp.vision.pipeline;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.features2d.KeyPoint;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
+import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.CvStage.Result.Circle;
+import org.openpnp.vision.pipeline.CvStage.Result.TemplateMatch;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
+import org.openpnp.vision.pipeline.stages.ImageRead;
+
+/**
+ * Runs a pipeline over a set of recorded images without a machine or a GUI and reports how long
+ * each stage takes and how stable its results are, so that changes to the pipeline code or to a
+ * pipeline can be compared before and after.
+ *
+ * Every ImageCapture stage in the pipeline is replaced with an ImageRead of the same name, which
+ * reads the current image. Each image is then processed warmupIterations times without
+ * measuring, and iterations times measuring:
+ *
+ * - The processing time of each stage, reported as the 50th, 95th and 99th percentile over every
+ * measured run of every image.
+ * - The Java heap allocated by the run, where the JVM can measure it. Only the thread calling
+ * run() is counted, so with parallel set the stages processed by other threads are left out.
+ * - The scratch Mats allocated by the pipeline's MatPool, which with matPoolEnabled set should
+ * be zero once warmed up.
+ * - For stages whose model is a RotatedRect, Circle, TemplateMatch, KeyPoint or Point, or a list
+ * that starts with one, the jitter: the most the first result's x, y and, for RotatedRects,
+ * angle vary between runs of the same image. Since the images do not change this should be zero
+ * for all but stages that depend on timing or randomness.
+ *
+ * Runs from the command line with:
+ *
+ * CvPipelineBenchmark pipeline.xml imageDirectory [iterations] [--parallel] [--pool]
+ */
+public class CvPipelineBenchmark {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private final String pipelineXml;
+    private List<File> images = new ArrayList<>();
+    private int warmupIterations = 3;
+    private int iterations = 20;
+    private boolean parallel;
+    private boolean matPoolEnabled;
+    private ResultRetention resultRetention = ResultRetention.Production;
+
+    public CvPipelineBenchmark(String pipelineXml) {
+        this.pipelineXml = pipelineXml;
+    }
+
+    public CvPipelineBenchmark(File pipelineFile) throws Exception {
+        this(new String(Files.readAllBytes(pipelineFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    public List<File> getImages() {
+        return images;
+    }
+
+    public void setImages(List<File> images) {
+        this.images = images;
+    }
+
+    /**
+     * Sets the images to the image files in the directory, in name order.
+     *
+     * @param directory
+     */
+    public void setImageDirectory(File directory) {
+        File[] files = directory.listFiles((dir, name) -> {
+            name = name.toLowerCase(Locale.ROOT);
+            return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
+                    || name.endsWith(".bmp") || name.endsWith(".tif") || name.endsWith(".tiff");
+        });
+        List<File> images = new ArrayList<>();
+        if (files != null) {
+            images.addAll(Arrays.asList(files));
+        }
+        Collections.sort(images);
+        this.images = images;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public void setWarmupIterations(int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isMatPoolEnabled() {
+        return matPoolEnabled;
+    }
+
+    public void setMatPoolEnabled(boolean matPoolEnabled) {
+        this.matPoolEnabled = matPoolEnabled;
+    }
+
+    public ResultRetention getResultRetention() {
+        return resultRetention;
+    }
+
+    /**
+     * Sets the retention the pipeline is run with. The default is Production, as used by the
+     * machine's vision, so that dead stages are skipped as they would be in use.
+     *
+     * @param resultRetention
+     */
+    public void setResultRetention(ResultRetention resultRetention) {
+        this.resultRetention = resultRetention;
+    }
+
+    public Report run() throws Exception {
+        if (images.isEmpty()) {
+            throw new Exception("No images to process.");
+        }
+        CvPipeline pipeline = new CvPipeline(pipelineXml);
+        List<ImageRead> reads = substituteImageCapture(pipeline);
+        if (reads.isEmpty()) {
+            throw new Exception("The pipeline has no ImageCapture stage to read the images into.");
+        }
+        pipeline.setParallel(parallel);
+        pipeline.setMatPoolEnabled(matPoolEnabled);
+        pipeline.setResultRetention(resultRetention);
+
+        Map<CvStage, StageStatistics> stages = new LinkedHashMap<>();
+        for (CvStage stage : pipeline.getStages()) {
+            stages.put(stage, new StageStatistics(stage));
+        }
+        StageStatistics total = new StageStatistics("Total", "");
+        long heapBytes = 0;
+        long matPoolAllocations = 0;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean heapMeasured = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported();
+        long threadId = Thread.currentThread().getId();
+
+        try {
+            for (File image : images) {
+                for (ImageRead read : reads) {
+                    read.setFile(image);
+                }
+                for (StageStatistics statistics : stages.values()) {
+                    statistics.startImage();
+                }
+                for (int i = 0; i < warmupIterations + iterations; i++) {
+                    long allocated = heapMeasured ? ((com.sun.management.ThreadMXBean) threads)
+                            .getThreadAllocatedBytes(threadId) : 0;
+                    long matAllocations = pipeline.getMatPool().getAllocations();
+                    long t = System.nanoTime();
+                    pipeline.process();
+                    t = System.nanoTime() - t;
+                    if (i < warmupIterations) {
+                        continue;
+                    }
+                    if (heapMeasured) {
+                        heapBytes += ((com.sun.management.ThreadMXBean) threads)
+                                .getThreadAllocatedBytes(threadId) - allocated;
+                    }
+                    matPoolAllocations += pipeline.getMatPool().getAllocations() - matAllocations;
+                    total.addTime(t);
+                    for (Map.Entry<CvStage, StageStatistics> entry : stages.entrySet()) {
+                        Result result = pipeline.getResult(entry.getKey());
+                        if (result != null) {
+                            entry.getValue().addTime(result.processingTimeNs);
+                            entry.getValue().addLocation(location(result.model));
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            pipeline.release();
+        }
+        int runs = images.size() * iterations;
+        return new Report(new ArrayList<>(stages.values()), total, runs,
+                heapMeasured ? heapBytes / runs : -1, matPoolAllocations,
+                pipeline.getMatPool().getHighWaterBytes());
+    }
+
+    private static List<ImageRead> substituteImageCapture(CvPipeline pipeline) {
+        List<ImageRead> reads = new ArrayList<>();
+        List<CvStage> stages = new ArrayList<>(pipeline.getStages());
+        for (int i = 0; i < stages.size(); i++) {
+            CvStage stage = stages.get(i);
+            if (stage instanceof ImageCapture) {
+                ImageRead read = new ImageRead();
+                read.setEnabled(stage.isEnabled());
+                pipeline.remove(stage);
+                pipeline.insert(stage.getName(), read, i);
+                reads.add(read);
+            }
+        }
+        return reads;
+    }
+
+    /**
+     * Returns the x, y and angle of the model, or of the first item if it is a list, or null if it
+     * does not have a location. The angle is NaN for everything but RotatedRects.
+     */
+    static double[] location(Object model) {
+        if (model instanceof List<?>) {
+            List<?> list = (List<?>) model;
+            if (list.isEmpty()) {
+                return null;
+            }
+            model = list.get(0);
+        }
+        if (model instanceof RotatedRect) {
+            RotatedRect rect = (RotatedRect) model;
+            return new double[] {rect.center.x, rect.center.y, rect.angle};
+        }
+        if (model instanceof Circle) {
+            Circle circle = (Circle) model;
+            return new double[] {circle.x, circle.y, Double.NaN};
+        }
+        if (model instanceof TemplateMatch) {
+            TemplateMatch match = (TemplateMatch) model;
+            return new double[] {match.x, match.y, Double.NaN};
+        }
+        if (model instanceof KeyPoint) {
+            KeyPoint keyPoint = (KeyPoint) model;
+            return new double[] {keyPoint.pt.x, keyPoint.pt.y, Double.NaN};
+        }
+        if (model instanceof Point) {
+            Point point = (Point) model;
+            return new double[] {point.x, point.y, Double.NaN};
+        }
+        return null;
+    }
+
+    public static class StageStatistics {
+        private final String name;
+        private final String type;
+        private long[] times = new long[64];
+        private int count;
+
+        private double[] imageMin;
+        private double[] imageMax;
+        private double[] jitter;
+
+        StageStatistics(CvStage stage) {
+            this(stage.getName(), stage.getClass().getSimpleName());
+        }
+
+        StageStatistics(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        void startImage() {
+            imageMin = null;
+            imageMax = null;
+        }
+
+        void addTime(long ns) {
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+            }
+            times[count++] = ns;
+        }
+
+        void addLocation(double[] location) {
+            if (location == null) {
+                return;
+            }
+            if (imageMin == null) {
+                imageMin = location.clone();
+                imageMax = location.clone();
+                if (jitter == null) {
+                    jitter = new double[location.length];
+                }
+            }
+            for (int i = 0; i < location.length; i++) {
+                imageMin[i] = Math.min(imageMin[i], location[i]);
+                imageMax[i] = Math.max(imageMax[i], location[i]);
+                // NaN stays NaN, which is what we want for components that do not apply.
+                jitter[i] = Math.max(jitter[i], imageMax[i] - imageMin[i]);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The simple class name of the stage.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * The number of times the stage was processed while measuring. Stages that were skipped
+         * as dead or that are not enabled are not counted.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the processing time below which the given percent of runs fall, or 0 if the
+         * stage was never processed.
+         *
+         * @param percentile From 0 to 100.
+         * @return
+         */
+        public long getPercentileNs(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(times, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * count);
+            return sorted[Math.max(0, Math.min(count, rank) - 1)];
+        }
+
+        /**
+         * Returns the most the x, y and angle of the stage's result varied between runs of the
+         * same image, or null if the stage's model has no location. The angle is NaN for results
+         * that have no angle.
+         */
+        public double[] getJitter() {
+            return jitter;
+        }
+    }
+
+    public static class Report {
+        private final List<StageStatistics> stages;
+        private final StageStatistics total;
+        private final int runs;
+        private final long heapBytesPerRun;
+        private final long matPoolAllocations;
+        private final long matPoolHighWaterBytes;
+
+        Report(List<StageStatistics> stages, StageStatistics total, int runs,
+                long heapBytesPerRun, long matPoolAllocations, long matPoolHighWaterBytes) {
+            this.stages = stages;
+            this.total = total;
+            this.runs = runs;
+            this.heapBytesPerRun = heapBytesPerRun;
+            this.matPoolAllocations = matPoolAllocations;
+            this.matPoolHighWaterBytes = matPoolHighWaterBytes;
+        }
+
+        public List<StageStatistics> getStages() {
+            return stages;
+        }
+
+        public StageStatistics getStage(String name) {
+            for (StageStatistics stage : stages) {
+                if (stage.getName().equals(name)) {
+                    return stage;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Statistics for the whole of each run, as seen by the caller.
+         */
+        public StageStatistics getTotal() {
+            return total;
+        }
+
+        /**
+         * The number of measured runs, which is the number of images times the iterations.
+         */
+        public int getRuns() {
+            return runs;
+        }
+
+        /**
+         * The average Java heap allocated by a run, or -1 if the JVM cannot measure it.
+         */
+        public long getHeapBytesPerRun() {
+            return heapBytesPerRun;
+        }
+
+        /**
+         * The number of scratch Mats allocated during the measured runs.
+         */
+        public long getMatPoolAllocations() {
+            return matPoolAllocations;
+        }
+
+        public long getMatPoolHighWaterBytes() {
+            return matPoolHighWaterBytes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "%-12s %-24s %6s %10s %10s %10s %24s%n",
+                    "Stage", "Type", "Count", "p50 ms", "p95 ms", "p99 ms", "Jitter x/y/angle"));
+            for (StageStatistics stage : stages) {
+                append(sb, stage);
+            }
+            append(sb, total);
+            sb.append(String.format(Locale.ROOT, "%d runs, %s heap bytes per run, "
+                    + "%d scratch Mat allocations, %d scratch Mat bytes high water%n", runs,
+                    heapBytesPerRun < 0 ? "unknown" : Long.toString(heapBytesPerRun),
+                    matPoolAllocations, matPoolHighWaterBytes));
+            return sb.toString();
+        }
+
+        private static void append(StringBuilder sb, StageStatistics stage) {
+            double[] jitter = stage.getJitter();
+            String jitterText = jitter == null ? "" : String.format(Locale.ROOT,
+                    "%.3f/%.3f/%.3f", jitter[0], jitter[1], jitter[2]);
+            sb.append(String.format(Locale.ROOT, "%-12s %-24s %6d %10.3f %10.3f %10.3f %24s%n",
+                    stage.getName(), stage.getType(), stage.getCount(),
+                    stage.getPercentileNs(50) / 1e6, stage.getPercentileNs(95) / 1e6,
+                    stage.getPercentileNs(99) / 1e6, jitterText));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean parallel = arguments.remove("--parallel");
+        boolean pool = arguments.remove("--pool");
+        if (arguments.size() < 2 || arguments.size() > 3) {
+            System.err.println("Usage: CvPipelineBenchmark pipeline.xml imageDirectory "
+                    + "[iterations] [--parallel] [--pool]");
+            System.exit(1);
+        }
+        CvPipelineBenchmark benchmark = new CvPipelineBenchmark(new File(arguments.get(0)));
+        benchmark.setImageDirectory(new File(arguments.get(1)));
+        if (arguments.size() > 2) {
+            benchmark.setIterations(Integer.parseInt(arguments.get(2)));
+        }
+        benchmark.setParallel(parallel);
+        benchmark.setMatPoolEnabled(pool);
+        System.out.print(benchmark.run());
+    }
+}
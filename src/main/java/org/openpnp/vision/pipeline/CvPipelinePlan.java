@@ -0,0 +1,278 @@
+package org.openpnp.vision.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The execution plan for a CvPipeline, compiled from its stages by CvPipeline#getPlan().
+ *
+ * Compiling resolves every stage name a stage refers to into a direct reference and builds the
+ * graph of which stages each stage depends on. A stage depends on the stages whose models or
+ * images it reads by name and, unless it replaces the working image without looking at it, on the
+ * previous enabled stage for the working image.
+ *
+ * When the pipeline has a stage named "result" or "results" the plan also works out which stages
+ * can affect it. Those stages, the last enabled stage, stages with side effects and everything
+ * they depend on are executed, the rest are dead and are skipped when the pipeline is not run in
+ * ResultRetention.Debug. The last stage is kept so that the final working image is the same as
+ * in a full run, since callers show it to the user, usually with the results drawn on it by the
+ * stages after the result. The images that must be retained are those read by name by an executed
+ * stage.
+ *
+ * If any enabled stage cannot say what it depends on, such as ScriptRun, nothing is pruned and
+ * every image is retained.
+ */
+public class CvPipelinePlan {
+    private static final String[] RESULT_STAGE_NAMES = new String[] {"result", "results"};
+
+    private final List<CvStage> stages;
+    private final Map<String, CvStage> stagesByName = new HashMap<>();
+    private final Map<CvStage, List<CvStage>> dependencies = new HashMap<>();
+    private final Map<CvStage, List<CvStage>> imageDependencies = new HashMap<>();
+    private final Map<CvStage, List<String>> problems = new HashMap<>();
+    private final Set<CvStage> roots = new LinkedHashSet<>();
+    private final boolean dependenciesKnown;
+
+    private final Set<CvStage> executed;
+    private final Set<String> retainedImageStageNames;
+
+    private Set<String> lastExtraRoots;
+    private Set<CvStage> lastExecuted;
+    private Set<String> lastRetainedImageStageNames;
+
+    CvPipelinePlan(List<CvStage> stages) {
+        this.stages = new ArrayList<>(stages);
+        for (CvStage stage : stages) {
+            // The first stage with a given name wins, the same as CvPipeline.getStage().
+            stagesByName.putIfAbsent(stage.getName(), stage);
+        }
+
+        boolean known = true;
+        Map<CvStage, Integer> indexes = new HashMap<>();
+        CvStage previous = null;
+        for (CvStage stage : stages) {
+            indexes.put(stage, indexes.size());
+            if (!stage.isEnabled()) {
+                continue;
+            }
+            List<CvStage> deps = new ArrayList<>();
+            List<CvStage> imageDeps = new ArrayList<>();
+            List<String> stageProblems = new ArrayList<>();
+            Collection<String> imageNames = stage.getImageDependencies();
+            Collection<String> modelNames = stage.getModelDependencies();
+            if (imageNames == null || modelNames == null) {
+                known = false;
+            }
+            resolve(stage, imageNames, indexes, deps, imageDeps, stageProblems);
+            resolve(stage, modelNames, indexes, deps, null, stageProblems);
+            // A stage with an unresolved reference usually falls back to passing the working image
+            // through, so it depends on the stage before it.
+            if (previous != null && (stage.readsWorkingImage() || !stageProblems.isEmpty())) {
+                deps.add(previous);
+            }
+            dependencies.put(stage, deps);
+            imageDependencies.put(stage, imageDeps);
+            if (!stageProblems.isEmpty()) {
+                problems.put(stage, stageProblems);
+            }
+            if (stage.hasSideEffects()) {
+                roots.add(stage);
+            }
+            previous = stage;
+        }
+        dependenciesKnown = known;
+
+        boolean hasResult = false;
+        for (String name : RESULT_STAGE_NAMES) {
+            CvStage stage = stagesByName.get(name);
+            if (stage != null && stage.isEnabled()) {
+                roots.add(stage);
+                hasResult = true;
+            }
+        }
+        if (!hasResult) {
+            roots.clear();
+        }
+        else if (previous != null) {
+            roots.add(previous);
+        }
+
+        executed = computeExecuted(Collections.emptySet());
+        retainedImageStageNames = computeRetainedImageStageNames(executed);
+    }
+
+    private void resolve(CvStage stage, Collection<String> names, Map<CvStage, Integer> indexes,
+            List<CvStage> deps, List<CvStage> imageDeps, List<String> stageProblems) {
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            CvStage dependency = stagesByName.get(name);
+            if (dependency == null) {
+                stageProblems.add("No stage named \"" + name + "\".");
+            }
+            else if (!indexes.containsKey(dependency) || dependency == stage) {
+                stageProblems.add("Stage \"" + name + "\" runs after this one.");
+            }
+            else if (!dependency.isEnabled()) {
+                stageProblems.add("Stage \"" + name + "\" is disabled.");
+            }
+            else {
+                deps.add(dependency);
+                if (imageDeps != null) {
+                    imageDeps.add(dependency);
+                }
+            }
+        }
+    }
+
+    private Set<CvStage> computeExecuted(Set<String> extraRoots) {
+        Set<CvStage> executed = new HashSet<>();
+        if (!isPruning()) {
+            for (CvStage stage : stages) {
+                if (stage.isEnabled()) {
+                    executed.add(stage);
+                }
+            }
+            return executed;
+        }
+        Deque<CvStage> queue = new ArrayDeque<>(roots);
+        for (String name : extraRoots) {
+            CvStage stage = stagesByName.get(name);
+            if (stage != null && stage.isEnabled()) {
+                queue.add(stage);
+            }
+        }
+        while (!queue.isEmpty()) {
+            CvStage stage = queue.poll();
+            if (executed.add(stage)) {
+                queue.addAll(dependencies.get(stage));
+            }
+        }
+        return executed;
+    }
+
+    private Set<String> computeRetainedImageStageNames(Set<CvStage> executed) {
+        if (!dependenciesKnown) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        for (CvStage stage : executed) {
+            for (CvStage dependency : imageDependencies.get(stage)) {
+                names.add(dependency.getName());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Returns true if the plan skips dead stages, which is when the pipeline has an enabled
+     * "result" or "results" stage and every stage's dependencies are known.
+     */
+    public boolean isPruning() {
+        return dependenciesKnown && !roots.isEmpty();
+    }
+
+    public boolean isDependenciesKnown() {
+        return dependenciesKnown;
+    }
+
+    public CvStage getStage(String name) {
+        if (name == null) {
+            return null;
+        }
+        return stagesByName.get(name);
+    }
+
+    /**
+     * Returns true if the stage runs outside of ResultRetention.Debug.
+     */
+    public boolean isExecuted(CvStage stage) {
+        return executed.contains(stage);
+    }
+
+    /**
+     * Returns the stages that run outside of ResultRetention.Debug when the images of the named
+     * stages are also wanted.
+     */
+    synchronized Set<CvStage> getExecutedStages(Set<String> extraRoots) {
+        if (extraRoots.isEmpty()) {
+            return executed;
+        }
+        update(extraRoots);
+        return lastExecuted;
+    }
+
+    /**
+     * As getRetainedImageStageNames(), when the images of the named stages are also wanted. The
+     * named stages are included in the result.
+     */
+    synchronized Set<String> getRetainedImageStageNames(Set<String> extraRoots) {
+        if (extraRoots.isEmpty()) {
+            return retainedImageStageNames;
+        }
+        update(extraRoots);
+        return lastRetainedImageStageNames;
+    }
+
+    private void update(Set<String> extraRoots) {
+        if (extraRoots.equals(lastExtraRoots)) {
+            return;
+        }
+        lastExtraRoots = new HashSet<>(extraRoots);
+        lastExecuted = computeExecuted(extraRoots);
+        Set<String> names = computeRetainedImageStageNames(lastExecuted);
+        if (names != null) {
+            names = new HashSet<>(names);
+            names.addAll(extraRoots);
+            names = Collections.unmodifiableSet(names);
+        }
+        lastRetainedImageStageNames = names;
+    }
+
+    /**
+     * Returns the names of the stages whose images are read by executed stages, or null if that
+     * is not known and every image must be retained.
+     */
+    public Set<String> getRetainedImageStageNames() {
+        return retainedImageStageNames;
+    }
+
+    public boolean isImageRetained(CvStage stage) {
+        return retainedImageStageNames == null
+                || retainedImageStageNames.contains(stage.getName());
+    }
+
+    /**
+     * Returns the stages the given stage depends on, in no particular order.
+     */
+    public List<CvStage> getDependencies(CvStage stage) {
+        List<CvStage> deps = dependencies.get(stage);
+        return deps == null ? Collections.emptyList() : Collections.unmodifiableList(deps);
+    }
+
+    /**
+     * Returns true if any enabled stage makes a reference that could not be resolved.
+     */
+    public boolean hasProblems() {
+        return !problems.isEmpty();
+    }
+
+    /**
+     * Returns descriptions of the references the stage makes that could not be resolved.
+     */
+    public List<String> getProblems(CvStage stage) {
+        List<String> stageProblems = problems.get(stage);
+        return stageProblems == null ? Collections.emptyList()
+                : Collections.unmodifiableList(stageProblems);
+    }
+}
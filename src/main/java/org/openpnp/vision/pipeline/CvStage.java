@@ -7,6 +7,10 @@ import java.beans.EventSetDescriptor;
 import java.beans.Introspector;
 import java.beans.MethodDescriptor;
 import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.opencv.core.Mat;
 import org.simpleframework.xml.Attribute;
@@ -40,6 +44,64 @@ public abstract class CvStage {
      */
     public abstract Result process(CvPipeline pipeline) throws Exception;
 
+    /**
+     * Returns the names of the stages whose result images this stage reads from
+     * CvPipeline#getResult(String). When the pipeline is not retaining every stage's image it uses
+     * this to decide which images it must keep. Stages that cannot know what they read, such as
+     * ones that run user scripts, return null which makes the pipeline keep every image.
+     * 
+     * @return
+     */
+    public Collection<String> getImageDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the names of the stages whose result models this stage reads. As with
+     * getImageDependencies(), null means the stage cannot know.
+     * 
+     * @return
+     */
+    public Collection<String> getModelDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns true if the result of this stage depends on the working image it is given. Stages
+     * that always replace the working image with one they get from somewhere else, such as a
+     * camera, return false. This lets the pipeline skip stages whose output is overwritten before
+     * anything uses it.
+     * 
+     * @return
+     */
+    public boolean readsWorkingImage() {
+        return true;
+    }
+
+    /**
+     * Returns true if running this stage does something outside the pipeline, such as writing a
+     * file, so that it must run even when nothing in the pipeline uses its result.
+     * 
+     * @return
+     */
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    /**
+     * Convenience for implementing getImageDependencies() and getModelDependencies(). Returns the
+     * given names, leaving out any that are null or blank.
+     */
+    protected static Collection<String> stageNames(String... names) {
+        List<String> list = new ArrayList<>();
+        for (String name : names) {
+            if (name != null && !name.trim().isEmpty()) {
+                list.add(name);
+            }
+        }
+        return list;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,127 @@
+package org.openpnp.vision.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+/**
+ * Scratch Mats for the stages of a CvPipeline, see CvPipeline.getScratchMat().
+ *
+ * Each stage gets its own Mat for each name it asks for. The Mats belong to the pool, not the
+ * stage, and are only valid until the end of the run, so a stage must never return one as its
+ * result image. When the pool is enabled they are then kept for the next run, where the same
+ * stage asking for the same name gets the same Mat back. As a stage's scratch Mats are usually the
+ * same size from one run to the next, OpenCV reuses their memory rather than allocating it again.
+ * When the pool is disabled they are released at the end of the run instead.
+ *
+ * The pool counts a Mat as allocated whenever its data has moved since the last run, so once a
+ * pipeline is warmed up with images of a consistent size the allocation count stops going up.
+ */
+public class MatPool {
+    private final Map<CvStage, Map<String, Mat>> mats = new IdentityHashMap<>();
+    private final Map<Mat, Long> dataAddresses = new IdentityHashMap<>();
+
+    private boolean enabled;
+    private long bytes;
+    private long highWaterBytes;
+    private long allocations;
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the named scratch Mat for the stage, creating it if needed.
+     */
+    public synchronized Mat get(CvStage stage, String name) {
+        Map<String, Mat> stageMats = mats.get(stage);
+        if (stageMats == null) {
+            stageMats = new HashMap<>();
+            mats.put(stage, stageMats);
+        }
+        Mat mat = stageMats.get(name);
+        if (mat == null) {
+            mat = new Mat();
+            stageMats.put(name, mat);
+        }
+        return mat;
+    }
+
+    /**
+     * As get(), and makes sure the Mat has the given size and type.
+     */
+    public Mat get(CvStage stage, String name, Size size, int type) {
+        Mat mat = get(stage, name);
+        mat.create(size, type);
+        return mat;
+    }
+
+    /**
+     * Called at the end of a run. Updates the memory figures and then keeps the Mats for the next
+     * run if the pool is enabled, or releases them if not.
+     */
+    synchronized void recycle() {
+        long bytes = 0;
+        List<Mat> all = new ArrayList<>();
+        for (Map<String, Mat> stageMats : mats.values()) {
+            all.addAll(stageMats.values());
+        }
+        for (Mat mat : all) {
+            bytes += mat.total() * mat.elemSize();
+            long address = mat.dataAddr();
+            Long previous = dataAddresses.put(mat, address);
+            if (address != 0 && (previous == null || previous != address)) {
+                allocations++;
+            }
+        }
+        this.bytes = bytes;
+        highWaterBytes = Math.max(highWaterBytes, bytes);
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Releases every Mat in the pool.
+     */
+    public synchronized void clear() {
+        for (Map<String, Mat> stageMats : mats.values()) {
+            for (Mat mat : stageMats.values()) {
+                mat.release();
+            }
+        }
+        mats.clear();
+        dataAddresses.clear();
+        bytes = 0;
+    }
+
+    /**
+     * The native memory held by the pool's Mats as of the end of the last run.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * The most native memory the pool's Mats have held at the end of a run.
+     */
+    public synchronized long getHighWaterBytes() {
+        return highWaterBytes;
+    }
+
+    /**
+     * The number of times a scratch Mat's memory has been allocated.
+     */
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+}
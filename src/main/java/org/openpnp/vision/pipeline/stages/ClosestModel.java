@@ -20,6 +20,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Mat;
@@ -98,6 +99,11 @@ public class ClosestModel extends CvStage {
         this.scale = scale;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName, filterStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
@@ -19,6 +19,8 @@
 
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Collection;
+
 import org.opencv.core.Mat;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
@@ -57,6 +59,16 @@ public class ComposeResult extends CvStage {
         this.modelStageName = modelStageName;
     }
 
+    @Override
+    public Collection<String> getImageDependencies() {
+        return stageNames(imageStageName);
+    }
+
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
@@ -77,7 +89,12 @@ public class ComposeResult extends CvStage {
             image = pipeline.getWorkingImage();
         }
         else {
+            // Clone, as ImageRecall does, so that later stages working on the image do not change
+            // or release the other stage's stored result.
             image = pipeline.getResult(imageStageName).image;
+            if (image != null) {
+                image = image.clone();
+            }
         }
         if (model == null) {
             return new Result(image);
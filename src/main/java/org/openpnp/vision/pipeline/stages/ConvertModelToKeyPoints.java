@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Point;
@@ -25,6 +26,11 @@ public class ConvertModelToKeyPoints extends CvStage {
         this.modelStageName = modelStageName;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (modelStageName == null) {
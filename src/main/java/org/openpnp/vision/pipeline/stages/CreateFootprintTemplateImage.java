@@ -9,17 +9,29 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
+import org.opencv.core.Mat;
 import org.openpnp.model.Footprint;
 import org.openpnp.model.Length;
 import org.openpnp.model.Location;
 import org.openpnp.spi.Camera;
 import org.openpnp.util.OpenCvUtils;
+import org.openpnp.vision.TemplateImageCache;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Stage;
 
+/**
+ * Renders the footprint as a template image. The rendered images are kept in the shared
+ * TemplateImageCache, so a footprint is only rendered again when it or the camera's units per
+ * pixel change.
+ */
 @Stage(description="Creates a template from the specified footprint and camera properties. The template is scaled to the camera's units.")
 public class CreateFootprintTemplateImage extends CvStage {
+    @Override
+    public boolean readsWorkingImage() {
+        return false;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Camera camera = (Camera) pipeline.getProperty("camera");
@@ -33,7 +45,14 @@ public class CreateFootprintTemplateImage extends CvStage {
         }
         
         Location unitsPerPixel = camera.getUnitsPerPixel();
-        
+        String key = "footprint:" + TemplateImageCache.footprintKey(footprint) + ":"
+                + TemplateImageCache.unitsPerPixelKey(unitsPerPixel);
+        return new Result(TemplateImageCache.get().get(key,
+                () -> createTemplateImage(footprint, unitsPerPixel)));
+    }
+
+    private static Mat createTemplateImage(Footprint footprint, Location unitsPerPixel)
+            throws Exception {
         Shape shape = footprint.getShape();
 
         if (shape == null) {
@@ -82,6 +101,6 @@ public class CreateFootprintTemplateImage extends CvStage {
 
         g2d.dispose();
 
-        return new Result(OpenCvUtils.toMat(template));
+        return OpenCvUtils.toMat(template);
     }
 }
@@ -19,6 +19,7 @@
 
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Mat;
@@ -60,6 +61,11 @@ public class CreateModelTemplateImage extends CvStage {
         this.degrees = degrees;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
@@ -97,7 +97,7 @@ public class DetectCirclesHough extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Mat output = new Mat();
+        Mat output = pipeline.getScratchMat(this, "circles");
         Imgproc.HoughCircles(mat, output, Imgproc.CV_HOUGH_GRADIENT, dp, minDistance, param1,
                 param2, minDiameter / 2, maxDiameter / 2);
         List<Result.Circle> circles = new ArrayList<>();
@@ -108,7 +108,6 @@ public class DetectCirclesHough extends CvStage {
             double radius = circle[2];
             circles.add(new Result.Circle(x, y, radius * 2.0));
         }
-        output.release();
 
         return new Result(null, circles);
     }
@@ -13,23 +13,19 @@ public class DetectEdgesRobertsCross extends CvStage {
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
 
-        Mat kernel = Mat.eye(new Size(2, 2), CvType.CV_32FC1);
+        Mat kernel = pipeline.getScratchMat(this, "kernel", new Size(2, 2), CvType.CV_32FC1);
         kernel.put(0, 0, 0, 1, -1, 0);
-        Mat roberts1 = new Mat();
+        Mat roberts1 = pipeline.getScratchMat(this, "roberts1");
         Imgproc.filter2D(mat, roberts1, CvType.CV_32FC1, kernel);
         Core.convertScaleAbs(roberts1, roberts1);
 
         kernel.put(0, 0, 1, 0, 0, -1);
-        Mat roberts2 = new Mat();
+        Mat roberts2 = pipeline.getScratchMat(this, "roberts2");
         Imgproc.filter2D(mat, roberts2, CvType.CV_32FC1, kernel);
         Core.convertScaleAbs(roberts2, roberts2);
 
         Mat roberts = new Mat();
         Core.add(roberts1, roberts2, roberts);
-        
-        kernel.release();
-        roberts1.release();
-        roberts2.release();
 
         return new Result(roberts);
     }
@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.RotatedRect;
@@ -48,6 +49,11 @@ public class DilateModel extends CvStage {
         return rect;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (modelStageName == null) {
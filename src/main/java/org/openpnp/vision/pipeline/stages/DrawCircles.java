@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Color;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Core;
@@ -65,6 +66,11 @@ public class DrawCircles extends CvStage {
         this.circlesStageName = modelStageName;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(circlesStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (circlesStageName == null) {
@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Color;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Mat;
@@ -62,6 +63,11 @@ public class DrawContours extends CvStage {
         this.index = index;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(contoursStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (contoursStageName == null) {
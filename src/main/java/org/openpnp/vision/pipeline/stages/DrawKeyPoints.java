@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Color;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Mat;
@@ -41,6 +42,11 @@ public class DrawKeyPoints extends CvStage {
         this.keyPointsStageName = keyPointsStageName;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(keyPointsStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (keyPointsStageName == null) {
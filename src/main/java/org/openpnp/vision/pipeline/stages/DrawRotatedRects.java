@@ -2,6 +2,7 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Core;
@@ -103,6 +104,11 @@ public class DrawRotatedRects extends CvStage {
                 color, Math.abs(thickness));
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(rotatedRectsStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (rotatedRectsStageName == null) {
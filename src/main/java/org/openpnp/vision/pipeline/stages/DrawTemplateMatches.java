@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Color;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.Core;
@@ -42,6 +43,11 @@ public class DrawTemplateMatches extends CvStage {
         this.templateMatchesStageName = templateMatchesStageName;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(templateMatchesStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (templateMatchesStageName == null) {
@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.MatOfPoint;
@@ -46,6 +47,11 @@ public class FilterContours extends CvStage {
         this.maxArea = maxArea;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(contoursStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (contoursStageName == null) {
@@ -20,6 +20,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -133,6 +134,11 @@ public class FilterRects extends CvStage {
 
     private static String[] verdict = {" ", "+"};
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(rotatedRectsStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (rotatedRectsStageName == null) {
@@ -72,9 +72,8 @@ public class FindContours extends CvStage {
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
         List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierarchy = new Mat();
+        Mat hierarchy = pipeline.getScratchMat(this, "hierarchy");
         Imgproc.findContours(mat, contours, hierarchy, retrievalMode.getCode(), approximationMethod.getCode());
-        hierarchy.release();
         return new Result(null, contours);
     }
 }
@@ -2,8 +2,11 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.awt.image.BufferedImage;
 
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.openpnp.spi.Camera;
 import org.openpnp.util.OpenCvUtils;
+import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -12,12 +15,17 @@ import org.openpnp.vision.pipeline.Property;
 
 @Stage(
   category   ="Image Processing", 
-  description="Capture an image from the pipeline camera.")
+  description="Capture an image from the pipeline camera. If the pipeline has an \"roi\" property only that region of the image is kept.")
 
 public class ImageCapture extends CvStage {
     @Attribute
     @Property(description="Wait for the camera to settle before capturing an image.")
     private boolean settleFirst;
+
+    /**
+     * The region of the camera image kept by the last process(), or null for the full image.
+     */
+    private Rect capturedRoi;
     
     public boolean isSettleFirst() {
         return settleFirst;
@@ -27,6 +35,11 @@ public class ImageCapture extends CvStage {
         this.settleFirst = settleFirst;
     }
 
+    @Override
+    public boolean readsWorkingImage() {
+        return false;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Camera camera = (Camera) pipeline.getProperty("camera");
@@ -40,6 +53,44 @@ public class ImageCapture extends CvStage {
         else {
             image = camera.capture();
         }
-        return new Result(OpenCvUtils.toMat(image));
+        Mat mat = OpenCvUtils.toMat(image);
+        Rect roi = VisionUtils.clampRoi((Rect) pipeline.getProperty("roi"), mat.cols(),
+                mat.rows());
+        if (roi != null) {
+            mat = crop(mat, roi);
+        }
+        capturedRoi = roi;
+        return new Result(mat);
+    }
+
+    /**
+     * Get the region of the camera image that the pipeline's ImageCapture stage kept in its last
+     * run, which is the "roi" property clamped to the image. Results from the pipeline are in the
+     * coordinates of this region, so callers map them back to the full image with it, for instance
+     * with VisionUtils.getPixelLocation(Camera, Rect, double, double). Returns null if the full
+     * image was kept or the pipeline has no ImageCapture stage.
+     * 
+     * @param pipeline
+     * @return
+     */
+    public static Rect getCapturedRoi(CvPipeline pipeline) {
+        for (CvStage stage : pipeline.getStages()) {
+            if (stage instanceof ImageCapture && stage.isEnabled()) {
+                return ((ImageCapture) stage).capturedRoi;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Crop the image to the region of interest so that the following stages only process that
+     * region.
+     */
+    private static Mat crop(Mat mat, Rect roi) {
+        Mat submat = mat.submat(roi);
+        Mat cropped = submat.clone();
+        submat.release();
+        mat.release();
+        return cropped;
     }
 }
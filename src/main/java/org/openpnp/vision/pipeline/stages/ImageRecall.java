@@ -1,5 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Collection;
+
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -16,6 +18,16 @@ public class ImageRecall extends CvStage {
         this.imageStageName = imageStageName;
     }
 
+    @Override
+    public Collection<String> getImageDependencies() {
+        return stageNames(imageStageName);
+    }
+
+    @Override
+    public boolean readsWorkingImage() {
+        return stageNames(imageStageName).isEmpty();
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (imageStageName == null) {
@@ -23,6 +23,11 @@ public class ImageWrite extends CvStage {
         this.file = file;
     }
 
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Highgui.imwrite(file.getAbsolutePath(), pipeline.getWorkingImage());
@@ -36,6 +36,11 @@ public class ImageWriteDebug extends CvStage {
         this.suffix = suffix;
     }
 
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (!LogUtils.isDebugEnabled()) {
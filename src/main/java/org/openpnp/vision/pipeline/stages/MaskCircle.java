@@ -30,7 +30,7 @@ public class MaskCircle extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
+        Mat mask = pipeline.getScratchMat(this, "mask", mat.size(), mat.type());
         Mat masked = mat.clone();
         Scalar color = FluentCv.colorToScalar(Color.black);
         mask.setTo(color);
@@ -40,7 +40,6 @@ public class MaskCircle extends CvStage {
             Core.bitwise_not(mask,mask);
         }
         mat.copyTo(masked, mask);
-        mask.release();
         return new Result(masked);
     }
 }
@@ -82,10 +82,10 @@ public class MaskHsv extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
+        // inRange() overwrites the whole mask.
+        Mat mask = pipeline.getScratchMat(this, "mask");
         Mat masked = mat.clone();
         Scalar color = FluentCv.colorToScalar(Color.black);
-        mask.setTo(color);
         masked.setTo(color);
         // FCA Change to have the possibility to work inside the interval or outside (when min>max)
         Scalar min;
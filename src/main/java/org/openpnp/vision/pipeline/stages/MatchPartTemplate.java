@@ -21,6 +21,7 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -109,6 +110,16 @@ public class MatchPartTemplate extends CvStage {
         this.threshold = threshold;
     }
 
+    @Override
+    public Collection<String> getImageDependencies() {
+        return stageNames(templateStageName);
+    }
+
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
@@ -122,7 +133,11 @@ public class MatchPartTemplate extends CvStage {
         }
         else {
 
-            model = (List<?>) pipeline.getResult(modelStageName.toString()).model;
+            Result modelResult = pipeline.getResult(modelStageName.toString());
+            if (modelResult == null) {
+                throw new Exception("No results found for model stage " + modelStageName + ".");
+            }
+            model = (List<?>) modelResult.model;
         }
         Mat originalImage = pipeline.getWorkingImage()
                                     .clone();
@@ -186,7 +201,7 @@ public class MatchPartTemplate extends CvStage {
         // cropped image will be square
         Size sz = new Size(msz, msz);
         // create the new image matrix
-        Mat image = new Mat(sz, originalImage.type());
+        Mat image = pipeline.getScratchMat(this, "crop", sz, originalImage.type());
         // crop the image
         Imgproc.getRectSubPix(originalImage, sz, rrect.center, image);
         // adjust rrect to the new center
@@ -231,7 +246,8 @@ public class MatchPartTemplate extends CvStage {
                  * new Scalar(255,255,255));
                  */
             }
-            Result mresult = matchTemplate(image, timage);
+            Result mresult =
+                    matchTemplate(image, timage, pipeline.getScratchMat(this, "match"));
             List<TemplateMatch> matches = (List<TemplateMatch>) mresult.model;
             double rotScore = 0;
             // get the best of local matches
@@ -280,10 +296,7 @@ public class MatchPartTemplate extends CvStage {
         return result;
     }
 
-    Result matchTemplate(Mat mat, Mat template) {
-
-        Mat result = new Mat();
-
+    Result matchTemplate(Mat mat, Mat template, Mat result) {
         // TODO: externalize type
         Imgproc.matchTemplate(mat, template, result, Imgproc.TM_CCOEFF_NORMED);
 
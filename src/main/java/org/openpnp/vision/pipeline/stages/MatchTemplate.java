@@ -2,6 +2,7 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -87,6 +88,11 @@ public class MatchTemplate extends CvStage {
         this.normalize = normalize;
     }
 
+    @Override
+    public Collection<String> getImageDependencies() {
+        return stageNames(templateStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (templateStageName == null) {
@@ -0,0 +1,134 @@
+package org.openpnp.vision.pipeline.stages;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.openpnp.vision.PyramidTemplateMatcher;
+import org.openpnp.vision.PyramidTemplateMatcher.Match;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.CvStage.Result.TemplateMatch;
+import org.openpnp.vision.pipeline.Property;
+import org.openpnp.vision.pipeline.Stage;
+import org.simpleframework.xml.Attribute;
+
+/**
+ * Coarse to fine version of MatchTemplate. The working image and template are matched at a
+ * reduced size and the best candidates are then refined at full resolution, see
+ * PyramidTemplateMatcher. The model is the same list of matches MatchTemplate returns, with
+ * fractional locations when subPixel is set.
+ *
+ * Unlike MatchTemplate the working image is passed through rather than replaced with the match
+ * result, since there is no full resolution result to show.
+ */
+@Stage(category = "Image Processing",
+        description = "Coarse to fine template matching on an image pyramid. Faster than MatchTemplate on large images.")
+
+public class MatchTemplatePyramid extends CvStage {
+    @Attribute
+    @Property(description = "Name of a prior stage to load the template image from.")
+    private String templateStageName;
+
+    @Attribute
+    @Property(description = "If maximum value is below this value, then no matches will be reported. Default is 0.7.")
+    private double threshold = 0.7f;
+
+    @Attribute
+    @Property(description = "Normalized minimum recognition threshold for the CCOEFF_NORMED method, in the interval [0,1]. Default is 0.85.")
+    private double corr = 0.85f;
+
+    @Attribute(required = false)
+    @Property(description = "Normalize results to maximum value.")
+    private boolean normalize = true;
+
+    @Attribute(required = false)
+    @Property(description = "Number of times the image is halved before the coarse match. 2 matches at 1/4 scale, 3 at 1/8. Reduced automatically for small templates.")
+    private int levels = 2;
+
+    @Attribute(required = false)
+    @Property(description = "Refine match locations to a fraction of a pixel.")
+    private boolean subPixel = false;
+
+    public String getTemplateStageName() {
+        return templateStageName;
+    }
+
+    public void setTemplateStageName(String templateStageName) {
+        this.templateStageName = templateStageName;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public double getCorr() {
+        return corr;
+    }
+
+    public void setCorr(double corr) {
+        this.corr = corr;
+    }
+
+    public boolean isNormalize() {
+        return normalize;
+    }
+
+    public void setNormalize(boolean normalize) {
+        this.normalize = normalize;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public void setLevels(int levels) {
+        this.levels = levels;
+    }
+
+    public boolean isSubPixel() {
+        return subPixel;
+    }
+
+    public void setSubPixel(boolean subPixel) {
+        this.subPixel = subPixel;
+    }
+
+    @Override
+    public Collection<String> getImageDependencies() {
+        return stageNames(templateStageName);
+    }
+
+    @Override
+    public Result process(CvPipeline pipeline) throws Exception {
+        if (templateStageName == null) {
+            return null;
+        }
+
+        Mat mat = pipeline.getWorkingImage();
+        Result templateResult = pipeline.getResult(templateStageName);
+        if (templateResult == null || templateResult.image == null) {
+            throw new Exception("No template image found in results of stage " + templateStageName
+                    + ".");
+        }
+        Mat template = templateResult.image;
+
+        List<Match> found = new PyramidTemplateMatcher()
+                .setLevels(levels)
+                .setSubPixel(subPixel)
+                .match(mat, template, threshold, corr);
+
+        double maxVal = found.isEmpty() ? 1.0 : found.get(0).score;
+        List<TemplateMatch> matches = new ArrayList<>();
+        for (Match match : found) {
+            matches.add(new TemplateMatch(match.x, match.y, template.cols(), template.rows(),
+                    match.score / (normalize ? maxVal : 1.0)));
+        }
+        return new Result(null, matches);
+    }
+}
@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.opencv.core.MatOfPoint;
@@ -23,6 +24,11 @@ public class MinAreaRectContours extends CvStage {
         this.contoursStageName = contoursStageName;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(contoursStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (contoursStageName == null) {
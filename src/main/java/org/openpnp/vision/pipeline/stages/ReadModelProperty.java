@@ -1,6 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
 
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
@@ -35,6 +36,11 @@ public class ReadModelProperty extends CvStage {
         this.propertyName = propertyName;
     }
 
+    @Override
+    public Collection<String> getModelDependencies() {
+        return stageNames(modelStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (modelStageName == null) {
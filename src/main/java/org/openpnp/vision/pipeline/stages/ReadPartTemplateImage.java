@@ -31,6 +31,7 @@ import org.opencv.highgui.Highgui;
 import org.openpnp.model.Configuration;
 import org.openpnp.spi.Camera;
 import org.openpnp.spi.Feeder;
+import org.openpnp.vision.TemplateImageCache;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Property;
@@ -207,14 +208,28 @@ public class ReadPartTemplateImage extends CvStage {
                 }
             }
         }
-        // Read template image from disk
-        Mat templateImage = Highgui.imread(file.getAbsolutePath());
+        // Read template image from disk, or the cache if it has not changed since it was last read.
+        File imageFile = file;
+        Mat templateImage = TemplateImageCache.get().get("file:" + TemplateImageCache.fileKey(file),
+                () -> {
+                    // imread() gives an empty Mat rather than null when it can't read the file,
+                    // which must not be cached in place of the image.
+                    Mat mat = Highgui.imread(imageFile.getAbsolutePath());
+                    if (mat.empty()) {
+                        mat.release();
+                        return null;
+                    }
+                    return mat;
+                });
+        if (templateImage == null) {
+            if (log) {
+                Logger.info("Unable to read template image " + file + ".");
+            }
+            return null;
+        }
 
         width = templateImage.size().width;
         height = templateImage.size().height;
-        if (width == 0.0 && height == 0.0) {
-            return null;
-        }
         return new Result(templateImage, new RotatedRect(new Point(width / 2, height / 2),
                 new Size(width, height), (double) 0));
     }
@@ -1,20 +1,16 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.io.File;
-import java.io.FileReader;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.openpnp.util.CachedScript;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Stage;
 import org.simpleframework.xml.Attribute;
 
-import com.google.common.io.Files;
-
-import bsh.engine.BshScriptEngineFactory;
-
 @Stage(description="Run an arbitrary script file using the built in scripting engine. pipeline and stage are exposed as globals for use by the script. To return a pipeline result you can't use a return statement, but instead just let the object be the last thing the script evaluates.")
 public class ScriptRun extends CvStage {
     @Attribute
@@ -31,6 +27,12 @@ public class ScriptRun extends CvStage {
     @Attribute
     private String args = new String("");
 
+    /**
+     * The script as last read from file, so that it is only read and compiled again when the file
+     * changes.
+     */
+    private CachedScript script;
+
     public String getArgs() {
         return args;
     }
@@ -39,32 +41,44 @@ public class ScriptRun extends CvStage {
         this.args = args;
     }
 
+    /**
+     * A script may read the result of any stage, so the pipeline must keep all of them.
+     */
+    @Override
+    public Collection<String> getImageDependencies() {
+        return null;
+    }
+
+    @Override
+    public Collection<String> getModelDependencies() {
+        return null;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (!file.exists()) {
             return null;
         }
 
-        ScriptEngineManager manager = new ScriptEngineManager();
-        // Hack to fix BSH on Windows. See https://github.com/openpnp/openpnp/issues/462
-        manager.registerEngineExtension("bsh", new BshScriptEngineFactory());
-        manager.registerEngineExtension("java", new BshScriptEngineFactory());
-        ScriptEngine engine = manager.getEngineByExtension(Files.getFileExtension(file.getName()));
-        
-        if (engine == null) {
-            throw new Exception("Unable to find scriping engine for " + file);
+        CachedScript script = this.script;
+        if (script == null || !script.getFile().equals(file)) {
+            script = new CachedScript(file);
+            this.script = script;
         }
 
-        engine.put("pipeline", pipeline);
-        engine.put("stage", this);
-        engine.put("args",args);
-
-        try (FileReader reader = new FileReader(file)) {
-            Object result = engine.eval(reader);
-            if (result instanceof Result) {
-                return (Result) result;
-            }
-            return null;
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("pipeline", pipeline);
+        globals.put("stage", this);
+        globals.put("args", args);
+        Object result = script.eval(globals);
+        if (result instanceof Result) {
+            return (Result) result;
         }
+        return null;
     }
 }
@@ -73,6 +73,11 @@ public class WritePartTemplateImage extends CvStage {
         this.asPackage = asPackage;
     }
 
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         /**
@@ -6,11 +6,16 @@ import java.awt.event.HierarchyListener;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
+import javax.swing.SwingUtilities;
 
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.stages.BlurGaussian;
 import org.openpnp.vision.pipeline.stages.BlurMedian;
@@ -49,6 +54,7 @@ import org.openpnp.vision.pipeline.stages.MaskPolygon;
 import org.openpnp.vision.pipeline.stages.MaskRectangle;
 import org.openpnp.vision.pipeline.stages.MatchPartTemplate;
 import org.openpnp.vision.pipeline.stages.MatchTemplate;
+import org.openpnp.vision.pipeline.stages.MatchTemplatePyramid;
 import org.openpnp.vision.pipeline.stages.MinAreaRect;
 import org.openpnp.vision.pipeline.stages.MinAreaRectContours;
 import org.openpnp.vision.pipeline.stages.Normalize;
@@ -61,6 +67,7 @@ import org.openpnp.vision.pipeline.stages.SimpleBlobDetector;
 import org.openpnp.vision.pipeline.stages.Threshold;
 import org.openpnp.vision.pipeline.stages.ThresholdAdaptive;
 import org.openpnp.vision.pipeline.stages.WritePartTemplateImage;
+import org.pmw.tinylog.Logger;
 
 /**
  * A JPanel based component for editing a CvPipeline. Allows the user to add and remove stages,
@@ -113,6 +120,7 @@ public class CvPipelineEditor extends JPanel {
         registerStageClass(MaskPolygon.class);
         registerStageClass(MaskRectangle.class);
         registerStageClass(MatchTemplate.class);
+        registerStageClass(MatchTemplatePyramid.class);
         registerStageClass(MatchPartTemplate.class);
         registerStageClass(MinAreaRect.class);
         registerStageClass(MinAreaRectContours.class);
@@ -134,6 +142,19 @@ public class CvPipelineEditor extends JPanel {
     private PipelinePanel pipelinePanel;
     private ResultsPanel resultsPanel;
 
+    /**
+     * Changes and processes the pipelines of all editors, in the order the changes are made.
+     * Editors are thrown away with the wizards that hold them without being told, so they share
+     * one thread rather than each leaving one behind.
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "CvPipelineEditor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AtomicBoolean currentRun;
+
     public CvPipelineEditor(CvPipeline pipeline) {
         this.pipeline = pipeline;
 
@@ -162,9 +183,90 @@ public class CvPipelineEditor extends JPanel {
         return pipeline;
     }
 
+    /**
+     * Processes the pipeline again after an edit on a background thread, reusing the results of
+     * the stages before the first one that changed. See CvPipeline.processIncremental(). A run that
+     * is still in progress when this is called is cancelled at the next stage boundary, since its
+     * results are already out of date.
+     */
     public void process() {
-        getPipeline().process();
-        resultsPanel.refresh();
+        process(true);
+    }
+
+    /**
+     * As process(), but processes every stage, so that images are captured again.
+     */
+    public void processAll() {
+        process(false);
+    }
+
+    /**
+     * Makes a change to the pipeline or its stages, such as setting a stage property, and then
+     * processes the pipeline again. See edit(Runnable, Runnable).
+     */
+    public void edit(Runnable change) {
+        edit(change, null);
+    }
+
+    /**
+     * Makes a change to the pipeline or its stages and then processes the pipeline again. The
+     * change is made on the editor's thread through CvPipeline.edit(), after a run of this editor
+     * in progress is cancelled, so that stages are not changed while they are processed. If a
+     * machine operation is processing the same pipeline the change waits for it on that thread
+     * rather than on the event dispatch thread.
+     * 
+     * @param done If not null, run on the event dispatch thread once the change is made.
+     */
+    public void edit(Runnable change, Runnable done) {
+        cancel();
+        executor.submit(() -> {
+            try {
+                pipeline.edit(change);
+            }
+            catch (Exception e) {
+                Logger.warn(e);
+            }
+            if (done != null) {
+                SwingUtilities.invokeLater(done);
+            }
+        });
+        process();
+    }
+
+    private synchronized void cancel() {
+        if (currentRun != null) {
+            currentRun.set(true);
+        }
+    }
+
+    private synchronized void process(boolean incremental) {
+        cancel();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        currentRun = cancelled;
+        executor.submit(() -> {
+            if (cancelled.get()) {
+                return;
+            }
+            // The editor shows every stage's image, so it processes with Debug retention, but only
+            // for its own runs, as a machine operation may be using the same pipeline.
+            try {
+                if (incremental) {
+                    pipeline.processIncremental(ResultRetention.Debug, cancelled::get);
+                }
+                else {
+                    pipeline.process(ResultRetention.Debug);
+                }
+            }
+            catch (Exception e) {
+                Logger.warn(e);
+            }
+            if (!cancelled.get()) {
+                SwingUtilities.invokeLater(() -> {
+                    pipelinePanel.refreshPlan();
+                    resultsPanel.refresh();
+                });
+            }
+        });
     }
 
     public void stageSelected(CvStage stage) {
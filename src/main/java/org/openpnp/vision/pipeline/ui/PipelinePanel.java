@@ -38,7 +38,10 @@ import org.openpnp.gui.components.ClassSelectionDialog;
 import org.openpnp.gui.support.Helpers;
 import org.openpnp.gui.support.Icons;
 import org.openpnp.gui.support.MessageBoxes;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipelinePlan;
 import org.openpnp.vision.pipeline.CvStage;
+import org.pmw.tinylog.Logger;
 
 import com.l2fprod.common.propertysheet.Property;
 import com.l2fprod.common.propertysheet.PropertySheetPanel;
@@ -91,7 +94,7 @@ public class PipelinePanel extends JPanel {
         JSplitPane splitPaneStages = new JSplitPane();
         splitPaneStages.setOrientation(JSplitPane.VERTICAL_SPLIT);
 
-        stagesTable = new JTable(stagesTableModel = new StagesTableModel(editor.getPipeline()));
+        stagesTable = new JTable(stagesTableModel = new StagesTableModel(editor));
         stagesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         stagesTable.setDragEnabled(true);
         stagesTable.setDropMode(DropMode.INSERT_ROWS);
@@ -165,8 +168,13 @@ public class PipelinePanel extends JPanel {
 
                         refreshDescription();
                         
-                        propertySheetPanel.writeToObject(getSelectedStage());
-                        editor.process();
+                        CvStage stage = getSelectedStage();
+                        Property[] properties = propertySheetPanel.getProperties();
+                        editor.edit(() -> {
+                            for (Property property : properties) {
+                                property.writeToObject(stage);
+                            }
+                        });
                     }
                 }
             }
@@ -189,6 +197,51 @@ public class PipelinePanel extends JPanel {
         }
     }
     
+    /**
+     * Updates the Production column and the selected stage's description after the execution
+     * plan has been recompiled.
+     */
+    public void refreshPlan() {
+        stagesTable.repaint();
+        refreshDescription();
+    }
+
+    /**
+     * Describes the selected stage's place in the execution plan: the stages it depends on,
+     * whether it runs outside of the editor and any references that could not be resolved.
+     */
+    private String getPlanDescription(CvStage stage) {
+        if (!stage.isEnabled()) {
+            return "";
+        }
+        CvPipelinePlan plan = editor.getPipeline().getPlan();
+        StringBuilder sb = new StringBuilder();
+        sb.append("<hr/><p><b>Execution Plan</b><br/>");
+        if (!plan.isPruning()) {
+            sb.append(plan.isDependenciesKnown()
+                    ? "Every stage runs because there is no result or results stage.<br/>"
+                    : "Every stage runs because a stage's inputs are unknown.<br/>");
+        }
+        else if (plan.isExecuted(stage)) {
+            sb.append("Runs.<br/>");
+        }
+        else {
+            sb.append("Skipped outside of the editor, nothing kept depends on it.<br/>");
+        }
+        List<String> names = new ArrayList<>();
+        for (CvStage dependency : plan.getDependencies(stage)) {
+            names.add(dependency.getName());
+        }
+        if (!names.isEmpty()) {
+            sb.append("Depends on: " + String.join(", ", names) + "<br/>");
+        }
+        for (String problem : plan.getProblems(stage)) {
+            sb.append("<font color=\"red\">" + problem + "</font><br/>");
+        }
+        sb.append("</p>");
+        return sb.toString();
+    }
+
     private void refreshDescription() {
         CvStage stage = getSelectedStage();
         if (stage == null) {
@@ -196,7 +249,9 @@ public class PipelinePanel extends JPanel {
         }
         else {
             try {
-                descriptionTa.setText(stage.getDescription());
+                String description = stage.getDescription();
+                descriptionTa.setText((description == null ? "" : description)
+                        + getPlanDescription(stage));
                 descriptionTa.setCaretPosition(0);
             }
             catch (Exception ex) {
@@ -243,10 +298,10 @@ public class PipelinePanel extends JPanel {
             }
             try {
                 CvStage stage = stageClass.newInstance();
-                editor.getPipeline().add(stage);
-                stagesTableModel.refresh();
-                Helpers.selectLastTableRow(stagesTable);
-                editor.process();
+                editor.edit(() -> editor.getPipeline().add(stage), () -> {
+                    stagesTableModel.refresh();
+                    Helpers.selectLastTableRow(stagesTable);
+                });
             }
             catch (Exception e) {
                 MessageBoxes.errorBox(JOptionPane.getFrameForComponent(PipelinePanel.this), "Error",
@@ -265,9 +320,7 @@ public class PipelinePanel extends JPanel {
         @Override
         public void actionPerformed(ActionEvent arg0) {
             CvStage stage = getSelectedStage();
-            editor.getPipeline().remove(stage);
-            stagesTableModel.refresh();
-            editor.process();
+            editor.edit(() -> editor.getPipeline().remove(stage), stagesTableModel::refresh);
         }
     };
 
@@ -305,10 +358,19 @@ public class PipelinePanel extends JPanel {
             try {
                 Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
                 String s = (String) clipboard.getData(DataFlavor.stringFlavor);
-                editor.getPipeline().fromXmlString(s);
-                stagesTableModel.refresh();
-                Helpers.selectLastTableRow(stagesTable);
-                editor.process();
+                // Parsed here first so that a bad pipeline is reported to the user.
+                new CvPipeline().fromXmlString(s);
+                editor.edit(() -> {
+                    try {
+                        editor.getPipeline().fromXmlString(s);
+                    }
+                    catch (Exception e) {
+                        Logger.warn(e);
+                    }
+                }, () -> {
+                    stagesTableModel.refresh();
+                    Helpers.selectLastTableRow(stagesTable);
+                });
             }
             catch (Exception e) {
                 MessageBoxes.errorBox(getTopLevelAncestor(), "Paste Failed", e);
@@ -325,7 +387,7 @@ public class PipelinePanel extends JPanel {
 
         @Override
         public void actionPerformed(ActionEvent arg0) {
-            editor.process();
+            editor.processAll();
         }
     };
     private JEditorPane descriptionTa;
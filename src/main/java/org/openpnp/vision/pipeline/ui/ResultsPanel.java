@@ -24,6 +24,7 @@ import javax.swing.SwingConstants;
 
 import org.opencv.core.Mat;
 import org.openpnp.gui.support.Icons;
+import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.CvStage.Result;
 
@@ -146,34 +147,41 @@ public class ResultsPanel extends JPanel {
     private void updateAllEverything() {
         List<CvStage> stages = editor.getPipeline().getStages();
 
-        Result result = null;
-        Mat image = null;
-        Object model = null;
-        if (selectedStage != null) {
-            result = editor.getPipeline().getResult(selectedStage);
-            if (result != null) {
-                image = result.image;
-                model = result.model;
+        CvPipeline pipeline = editor.getPipeline();
+        // The pipeline is processed on a background thread, so hold it while the result is read
+        // to keep the next run from releasing the image part way through.
+        synchronized (pipeline) {
+            Result result = null;
+            Mat image = null;
+            Object model = null;
+            if (selectedStage != null) {
+                result = pipeline.getResult(selectedStage);
+                if (result != null) {
+                    image = result.image;
+                    model = result.model;
+                }
             }
-        }
 
-        if (model instanceof List) {
-            String s = "";
-            for (Object o : ((List) model)) {
-                if (o != null) {
-                    s += o.toString();
+            if (model instanceof List) {
+                String s = "";
+                for (Object o : ((List) model)) {
+                    if (o != null) {
+                        s += o.toString();
+                    }
+                    s += "\n";
                 }
-                s += "\n";
+                modelTextPane.setText(s);
             }
-            modelTextPane.setText(s);
-        }
-        else {
-            modelTextPane.setText(model == null ? "" : model.toString());
+            else {
+                modelTextPane.setText(model == null ? "" : model.toString());
+            }
+            matView.setMat(image);
+            resultStageNameLabel.setText(result == null || selectedStage == null ? ""
+                    : (selectedStage.getName()
+                            + (pipeline.isResultCached(selectedStage) ? " (cached)" : "")
+                            + " ( " + (result.processingTimeNs / 1000000.0) + " ms / "
+                            + (pipeline.getTotalProcessingTimeNs() / 1000000.0) + " ms)"));
         }
-        matView.setMat(image);
-        resultStageNameLabel.setText(result == null || selectedStage == null ? ""
-                : (selectedStage.getName() + " ( " + (result.processingTimeNs / 1000000.0)
-                        + " ms / " + (editor.getPipeline().getTotalProcessingTimeNs() / 1000000.0) + " ms)"));
 
         if (selectedStage == null) {
             firstResultAction.setEnabled(false);
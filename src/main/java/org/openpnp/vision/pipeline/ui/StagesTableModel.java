@@ -5,35 +5,42 @@ import java.util.List;
 import javax.swing.table.AbstractTableModel;
 
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipelinePlan;
 import org.openpnp.vision.pipeline.CvStage;
 
 @SuppressWarnings("serial")
 public class StagesTableModel extends AbstractTableModel implements Reorderable {
-    private static String[] columnNames = {"Enabled", "Name", "Stage"};
+    private static String[] columnNames = {"Enabled", "Name", "Stage", "Production"};
 
-    private static Class<?>[] columnClasses = {Boolean.class, String.class, String.class};
+    private static Class<?>[] columnClasses =
+            {Boolean.class, String.class, String.class, String.class};
 
-    private final List<CvStage> stages;
+    /**
+     * The stages as of the last refresh(), since the editor changes them on its own thread.
+     */
+    private List<CvStage> stages;
+    private final CvPipelineEditor editor;
     private final CvPipeline pipeline;
 
-    public StagesTableModel(CvPipeline pipeline) {
-        this.pipeline = pipeline;
+    public StagesTableModel(CvPipelineEditor editor) {
+        this.editor = editor;
+        this.pipeline = editor.getPipeline();
         this.stages = pipeline.getStages();
     }
 
     public void refresh() {
+        stages = pipeline.getStages();
         fireTableDataChanged();
     }
 
     @Override
     public void reorder(int fromIndex, int toIndex) {
         CvStage stage = getStage(fromIndex);
-        pipeline.remove(stage);
-        if (fromIndex < toIndex) {
-            toIndex--;
-        }
-        pipeline.insert(stage, toIndex);
-        refresh();
+        int index = fromIndex < toIndex ? toIndex - 1 : toIndex;
+        editor.edit(() -> {
+            pipeline.remove(stage);
+            pipeline.insert(stage, index);
+        }, this::refresh);
     }
 
     public CvStage getStage(int rowIndex) {
@@ -55,19 +62,46 @@ public class StagesTableModel extends AbstractTableModel implements Reorderable
                 return stage.getName();
             case 2:
                 return stage.getClass().getSimpleName();
+            case 3:
+                return getPlanSummary(stage);
         }
         return null;
     }
 
+    /**
+     * Describes what the compiled execution plan does with the stage when the pipeline runs
+     * outside of the editor.
+     */
+    private String getPlanSummary(CvStage stage) {
+        if (!stage.isEnabled()) {
+            return "";
+        }
+        CvPipelinePlan plan = pipeline.getPlan();
+        String summary;
+        if (!plan.isExecuted(stage)) {
+            summary = "Skipped";
+        }
+        else if (plan.getRetainedImageStageNames() != null && plan.isImageRetained(stage)) {
+            summary = "Runs, image kept";
+        }
+        else {
+            summary = "Runs";
+        }
+        if (!plan.getProblems(stage).isEmpty()) {
+            summary += " (check references)";
+        }
+        return summary;
+    }
+
     @Override
     public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
         CvStage stage = getStage(rowIndex);
         switch (columnIndex) {
             case 0:
-                stage.setEnabled((Boolean) aValue);
+                editor.edit(() -> stage.setEnabled((Boolean) aValue), this::refresh);
                 break;
             case 1:
-                stage.setName(aValue.toString());
+                editor.edit(() -> stage.setName(aValue.toString()), this::refresh);
                 break;
         }
     }
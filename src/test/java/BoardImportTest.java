@@ -0,0 +1,170 @@
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.gui.importer.BoardImport;
+import org.openpnp.gui.importer.EagleBoardImporter;
+import org.openpnp.gui.importer.EagleMountsmdUlpImporter;
+import org.openpnp.model.Board;
+import org.openpnp.model.Board.Side;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.eagle.EagleBoardReader;
+import org.openpnp.model.eagle.EagleLoader;
+import org.openpnp.model.eagle.xml.Element;
+import org.openpnp.model.eagle.xml.Layer;
+import org.openpnp.model.eagle.xml.Param;
+import org.pmw.tinylog.Logger;
+
+import com.google.common.io.Files;
+
+public class BoardImportTest {
+    /**
+     * Imports a 20,000 line mountsmd file and checks that the placements all end up on the Board,
+     * that progress is reported up to the size of the file and that the new Parts are only added to
+     * the Configuration when the import finishes. Then checks that a cancelled import stops and
+     * adds nothing.
+     */
+    @Test
+    public void testImport() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        int parts = Configuration.get().getParts().size();
+
+        File file = new File(workingDirectory, "panel.mnt");
+        try (PrintWriter out = new PrintWriter(file)) {
+            for (int i = 0; i < 20000; i++) {
+                out.printf("R%d %d.00 %d.00 90 %dk RES0603\n", i, i % 100, i / 100, i % 50);
+            }
+        }
+
+        BoardImport boardImport = new BoardImport(new Board(), file);
+        List<Long> progress = new ArrayList<>();
+        boardImport.setProgressListener((bytesRead, bytesTotal) -> progress.add(bytesRead));
+        long t = System.nanoTime();
+        EagleMountsmdUlpImporter.parseFile(file, Side.Top, true, boardImport);
+        Assert.assertNull(Configuration.get().getPart("RES0603-1k"));
+        boardImport.finish();
+        t = System.nanoTime() - t;
+        Logger.info("Importing 20000 placements: " + t / 1000000 + " ms");
+
+        Board board = boardImport.getBoard();
+        Assert.assertEquals(20000, board.getPlacements().size());
+        Assert.assertEquals("R19999", board.getPlacements().get(19999).getId());
+        Assert.assertEquals(parts + 50, Configuration.get().getParts().size());
+        Assert.assertSame(Configuration.get().getPart("RES0603-1k"),
+                board.getPlacements().get(1).getPart());
+        Assert.assertEquals(file.length(), (long) progress.get(progress.size() - 1));
+        Assert.assertTrue(progress.size() <= 1001);
+
+        file = new File(workingDirectory, "cancelled.mnt");
+        try (PrintWriter out = new PrintWriter(file)) {
+            for (int i = 0; i < 1000; i++) {
+                out.printf("C%d %d.00 %d.00 0 %dn C0402\n", i, i % 100, i / 100, i);
+            }
+        }
+        BoardImport cancelled = new BoardImport(new Board(), file);
+        cancelled.setProgressListener((bytesRead, bytesTotal) -> cancelled.cancel());
+        try {
+            EagleMountsmdUlpImporter.parseFile(file, Side.Top, true, cancelled);
+            Assert.fail("Import was not cancelled.");
+        }
+        catch (CancellationException e) {
+        }
+        Assert.assertEquals(parts + 50, Configuration.get().getParts().size());
+        Assert.assertNull(Configuration.get().getPackage("C0402"));
+    }
+
+    /**
+     * Checks that an EAGLE board import reports progress while it reads the libraries, before any
+     * placement is added, so that a cancel from the progress listener stops it there.
+     */
+    @Test
+    public void testEagleBoardImportCancel() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        int parts = Configuration.get().getParts().size();
+
+        File file = new File(workingDirectory, "eagle.brd");
+        try (InputStream in = ClassLoader.getSystemResourceAsStream("samples/eagle/eagle.brd")) {
+            java.nio.file.Files.copy(in, file.toPath());
+        }
+        BoardImport cancelled = new BoardImport(new Board(), file);
+        cancelled.setProgressListener((bytesRead, bytesTotal) -> cancelled.cancel());
+        try {
+            EagleBoardImporter.parseFile(file, Side.Top, true, cancelled);
+            Assert.fail("Import was not cancelled.");
+        }
+        catch (CancellationException e) {
+        }
+        cancelled.finish();
+        Assert.assertEquals(0, cancelled.getBoard().getPlacements().size());
+        Assert.assertEquals(parts, Configuration.get().getParts().size());
+    }
+
+    /**
+     * Checks that what EagleBoardReader reads is what EagleLoader reads from the same board.
+     */
+    @Test
+    public void testEagleBoardReader() throws Exception {
+        EagleLoader loader =
+                new EagleLoader(ClassLoader.getSystemResourceAsStream("samples/eagle/eagle.brd"));
+        try (EagleBoardReader reader = new EagleBoardReader(
+                ClassLoader.getSystemResourceAsStream("samples/eagle/eagle.brd"))) {
+            List<Layer> layers = loader.layers.getLayer();
+            Assert.assertEquals(layers.size(), reader.getLayers().size());
+            for (int i = 0; i < layers.size(); i++) {
+                Assert.assertEquals(layers.get(i).getNumber(),
+                        reader.getLayers().get(i).getNumber());
+                Assert.assertEquals(layers.get(i).getName(), reader.getLayers().get(i).getName());
+            }
+
+            List<Param> params = loader.board.getDesignrules().getParam();
+            Assert.assertEquals(params.size(), reader.getDesignRules().size());
+            for (int i = 0; i < params.size(); i++) {
+                Assert.assertEquals(params.get(i).getName(),
+                        reader.getDesignRules().get(i).getName());
+                Assert.assertEquals(params.get(i).getValue(),
+                        reader.getDesignRules().get(i).getValue());
+            }
+            Assert.assertEquals(4, reader.getPlainWires().size());
+
+            for (Element expected : loader.board.getElements().getElement()) {
+                Element element = reader.nextElement();
+                Assert.assertEquals(expected.getName(), element.getName());
+                Assert.assertEquals(expected.getLibrary(), element.getLibrary());
+                Assert.assertEquals(expected.getPackage(), element.getPackage());
+                Assert.assertEquals(expected.getValue(), element.getValue());
+                Assert.assertEquals(expected.getX(), element.getX());
+                Assert.assertEquals(expected.getY(), element.getY());
+                Assert.assertEquals(expected.getRot(), element.getRot());
+                Assert.assertEquals(2, reader.getPackage(element.getLibrary(), element.getPackage())
+                        .getPolygonOrWireOrTextOrDimensionOrCircleOrRectangleOrFrameOrHoleOrPadOrSmd()
+                        .size());
+            }
+            Assert.assertNull(reader.nextElement());
+        }
+    }
+
+    /**
+     * Checks that a cancelled EagleBoardReader stops while it is still reading the libraries.
+     */
+    @Test
+    public void testEagleBoardReaderCancel() throws Exception {
+        int[] checks = new int[1];
+        try (EagleBoardReader reader = new EagleBoardReader(
+                ClassLoader.getSystemResourceAsStream("samples/eagle/eagle.brd"),
+                () -> ++checks[0] > 10)) {
+            Assert.fail("Cancelled read completed.");
+        }
+        catch (CancellationException e) {
+        }
+        Assert.assertEquals(11, checks[0]);
+    }
+}
@@ -0,0 +1,100 @@
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Board;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Placement;
+import org.pmw.tinylog.Logger;
+
+public class BoardTest {
+    /**
+     * Checks that the bulk methods and updates fire a single change with the right old and new
+     * lists, and that the placements they add and remove are listened to or not.
+     */
+    @Test
+    public void testBulkChanges() {
+        Board board = new Board();
+        List<PropertyChangeEvent> events = new ArrayList<>();
+        board.addPropertyChangeListener("placements", events::add);
+
+        List<Placement> placements = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            placements.add(new Placement("R" + i));
+        }
+        board.addPlacements(placements);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(0, ((List<?>) events.get(0).getOldValue()).size());
+        Assert.assertEquals(placements, board.getPlacements());
+
+        board.setDirty(false);
+        move(placements.get(0));
+        Assert.assertTrue(board.isDirty());
+
+        events.clear();
+        List<Placement> before = new ArrayList<>(board.getPlacements());
+        board.beginUpdate();
+        board.beginUpdate();
+        Placement extra = new Placement("C1");
+        board.addPlacement(extra);
+        board.removePlacement(placements.get(1));
+        board.endUpdate();
+        board.removePlacements(Arrays.asList(placements.get(2), placements.get(3)));
+        Assert.assertEquals(0, events.size());
+        board.endUpdate();
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(before, events.get(0).getOldValue());
+        Assert.assertEquals(4998, board.getPlacements().size());
+        Assert.assertSame(extra, board.getPlacements().get(4997));
+
+        board.setDirty(false);
+        move(placements.get(1));
+        Assert.assertFalse(board.isDirty());
+
+        events.clear();
+        board.replacePlacements(Arrays.asList(extra));
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(Arrays.asList(extra), board.getPlacements());
+        board.setDirty(false);
+        move(placements.get(0));
+        Assert.assertFalse(board.isDirty());
+        move(extra);
+        Assert.assertTrue(board.isDirty());
+    }
+
+    private static void move(Placement placement) {
+        placement.setLocation(
+                placement.getLocation().add(new Location(LengthUnit.Millimeters, 1, 0, 0, 0)));
+    }
+
+    /**
+     * Compares adding 5,000 placements one at a time with adding them all at once.
+     */
+    @Test
+    public void testBenchmark() {
+        List<Placement> placements = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            placements.add(new Placement("R" + i));
+        }
+
+        long t = System.nanoTime();
+        Board board = new Board();
+        for (Placement placement : placements) {
+            board.addPlacement(placement);
+        }
+        long single = System.nanoTime() - t;
+
+        t = System.nanoTime();
+        board = new Board();
+        board.addPlacements(placements);
+        long bulk = System.nanoTime() - t;
+
+        Logger.info("Adding 5000 placements: " + single / 1000 + " us one at a time, " + bulk / 1000
+                + " us at once");
+        Assert.assertTrue(bulk < single);
+    }
+}
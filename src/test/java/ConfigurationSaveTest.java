@@ -0,0 +1,87 @@
+import java.io.File;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Feeder;
+import org.pmw.tinylog.Logger;
+
+import com.google.common.io.Files;
+
+public class ConfigurationSaveTest {
+    /**
+     * Saves a configuration with a 10,000 part library and checks that saving again without
+     * changes leaves the files alone, and that changing a part writes parts.xml again.
+     */
+    @Test
+    public void testSave() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration configuration = Configuration.get();
+        configuration.load();
+        for (int i = 0; i < 10000; i++) {
+            Part part = new Part("PART-" + i);
+            part.setPackage(configuration.getPackages().get(0));
+            configuration.addPart(part);
+        }
+
+        long t = System.nanoTime();
+        configuration.save();
+        long first = System.nanoTime() - t;
+
+        File parts = new File(workingDirectory, "parts.xml");
+        File machine = new File(workingDirectory, "machine.xml");
+        long lastModified = 1000000000000L;
+        parts.setLastModified(lastModified);
+        machine.setLastModified(lastModified);
+        t = System.nanoTime();
+        configuration.save();
+        long unchanged = System.nanoTime() - t;
+        Assert.assertEquals(lastModified, parts.lastModified());
+        Assert.assertEquals(lastModified, machine.lastModified());
+
+        configuration.getPart("PART-5000").setSpeed(0.5);
+        t = System.nanoTime();
+        configuration.save();
+        long changed = System.nanoTime() - t;
+        Assert.assertNotEquals(lastModified, parts.lastModified());
+        Assert.assertEquals(lastModified, machine.lastModified());
+        Assert.assertFalse(new File(workingDirectory, "parts.xml.tmp").exists());
+
+        Logger.info("Save with 10000 parts: " + first / 1000000 + " ms, unchanged "
+                + unchanged / 1000000 + " ms, one part changed " + changed / 1000000 + " ms");
+    }
+
+    /**
+     * Checks that a requested save skips machine.xml until a feeder fires a property change,
+     * which requests a save by itself.
+     */
+    @Test
+    public void testRequestSave() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration configuration = Configuration.get();
+        configuration.load();
+
+        File machine = new File(workingDirectory, "machine.xml");
+        long lastModified = 1000000000000L;
+        machine.setLastModified(lastModified);
+        configuration.requestSave();
+        waitForRequestedSave();
+        Assert.assertEquals(lastModified, machine.lastModified());
+
+        Feeder feeder = configuration.getMachine().getFeeders().get(0);
+        feeder.setEnabled(!feeder.isEnabled());
+        waitForRequestedSave();
+        Assert.assertNotEquals(lastModified, machine.lastModified());
+    }
+
+    private static void waitForRequestedSave() throws Exception {
+        Thread.sleep(Configuration.SAVE_DELAY_MS + 500);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+    }
+}
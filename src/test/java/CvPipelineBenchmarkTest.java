@@ -0,0 +1,58 @@
+import java.io.File;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.highgui.Highgui;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.vision.pipeline.CvPipelineBenchmark;
+import org.openpnp.vision.pipeline.CvPipelineBenchmark.Report;
+import org.openpnp.vision.pipeline.CvPipelineBenchmark.StageStatistics;
+
+import com.google.common.io.Files;
+
+public class CvPipelineBenchmarkTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Runs the default bottom vision pipeline over two images of a part and checks that every
+     * run finds it in the same place and that the pooled scratch Mats are not allocated again
+     * after the warmup.
+     */
+    @Test
+    public void testBottomVisionPipeline() throws Exception {
+        File directory = Files.createTempDir();
+        for (int i = 0; i < 2; i++) {
+            Mat image = new Mat(480, 640, CvType.CV_8UC3, new Scalar(0, 0, 0));
+            Core.rectangle(image, new Point(280 + i * 10, 200), new Point(360 + i * 10, 260),
+                    new Scalar(255, 255, 255), -1);
+            Highgui.imwrite(new File(directory, "part" + i + ".png").getAbsolutePath(), image);
+            image.release();
+        }
+
+        String xml = IOUtils.toString(ReferenceBottomVision.class
+                .getResource("ReferenceBottomVision-DefaultPipeline.xml"));
+        CvPipelineBenchmark benchmark = new CvPipelineBenchmark(xml);
+        benchmark.setImageDirectory(directory);
+        benchmark.setWarmupIterations(1);
+        benchmark.setIterations(5);
+        benchmark.setMatPoolEnabled(true);
+        Report report = benchmark.run();
+
+        Assert.assertEquals(10, report.getRuns());
+        Assert.assertEquals(0, report.getMatPoolAllocations());
+        StageStatistics result = report.getStage("result");
+        Assert.assertEquals(10, result.getCount());
+        Assert.assertTrue(result.getPercentileNs(99) >= result.getPercentileNs(50));
+        Assert.assertArrayEquals(new double[] {0, 0, 0}, result.getJitter(), 0);
+        Assert.assertEquals("ImageRead", report.getStage("0").getType());
+    }
+}
@@ -0,0 +1,272 @@
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.highgui.Highgui;
+import org.openpnp.machine.reference.feeder.ReferenceLoosePartFeeder;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
+import org.openpnp.vision.pipeline.CvPipelinePlan;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.BlurGaussian;
+import org.openpnp.vision.pipeline.stages.ImageRead;
+import org.openpnp.vision.pipeline.stages.ImageRecall;
+import org.openpnp.vision.pipeline.stages.MaskCircle;
+
+public class CvPipelineTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Runs the same pipeline with each ResultRetention and checks that only the expected stage
+     * images are kept and that the final working image does not depend on the retention.
+     */
+    @Test
+    public void testResultRetention() throws Exception {
+        CvPipeline pipeline = createPipeline();
+        pipeline.process();
+        for (String name : new String[] {"blur1", "blur2", "recall", "blur3"}) {
+            Assert.assertNotNull(pipeline.getResult(name).image);
+        }
+        Mat expected = pipeline.getWorkingImage().clone();
+
+        pipeline.setResultRetention(ResultRetention.Production);
+        pipeline.process();
+        // blur1 is read by the ImageRecall stage so it must be kept.
+        Assert.assertNotNull(pipeline.getResult("blur1").image);
+        Assert.assertNull(pipeline.getResult("blur2").image);
+        Assert.assertNull(pipeline.getResult("recall").image);
+        Assert.assertNull(pipeline.getResult("blur3").image);
+        assertSame(expected, pipeline.getWorkingImage());
+
+        pipeline.setResultRetention(ResultRetention.OnDemand);
+        pipeline.setRetainedImageStageNames(Collections.singleton("blur2"));
+        pipeline.process();
+        Assert.assertNotNull(pipeline.getResult("blur1").image);
+        Assert.assertNotNull(pipeline.getResult("blur2").image);
+        Assert.assertNull(pipeline.getResult("blur3").image);
+        assertSame(expected, pipeline.getWorkingImage());
+        pipeline.release();
+    }
+
+    /**
+     * Checks that the execution plan resolves references, skips stages that cannot affect the
+     * result and that skipping them does not change the result.
+     */
+    @Test
+    public void testPlan() throws Exception {
+        CvPipeline pipeline = createPipeline();
+        // Rename the last stage so the pipeline has a result to prune against. blur2 is then
+        // dead: its output is replaced by the recall of blur1 before anything reads it.
+        pipeline.getStage("blur3").setName("result");
+        pipeline.invalidatePlan();
+        CvPipelinePlan plan = pipeline.getPlan();
+        Assert.assertTrue(plan.isPruning());
+        Assert.assertTrue(plan.isExecuted(pipeline.getStage("blur1")));
+        Assert.assertFalse(plan.isExecuted(pipeline.getStage("blur2")));
+        Assert.assertTrue(plan.isExecuted(pipeline.getStage("recall")));
+        Assert.assertTrue(plan.isExecuted(pipeline.getStage("result")));
+        Assert.assertEquals(Collections.singleton("blur1"), plan.getRetainedImageStageNames());
+        Assert.assertTrue(plan.getDependencies(pipeline.getStage("recall"))
+                .contains(pipeline.getStage("blur1")));
+
+        pipeline.process();
+        Mat expected = pipeline.getWorkingImage().clone();
+        pipeline.setResultRetention(ResultRetention.Production);
+        pipeline.process();
+        Assert.assertNull(pipeline.getResult("blur2"));
+        assertSame(expected, pipeline.getWorkingImage());
+
+        // Asking for blur2's image brings it back into the plan.
+        pipeline.setResultRetention(ResultRetention.OnDemand);
+        pipeline.setRetainedImageStageNames(Collections.singleton("blur2"));
+        pipeline.process();
+        Assert.assertNotNull(pipeline.getResult("blur2").image);
+        assertSame(expected, pipeline.getWorkingImage());
+
+        // A reference to a missing stage is reported and the recall then depends on the stage
+        // before it, so nothing is pruned.
+        ((ImageRecall) pipeline.getStage("recall")).setImageStageName("missing");
+        pipeline.invalidatePlan();
+        plan = pipeline.getPlan();
+        Assert.assertEquals(1, plan.getProblems(pipeline.getStage("recall")).size());
+        Assert.assertTrue(plan.isExecuted(pipeline.getStage("blur2")));
+        pipeline.release();
+    }
+
+    /**
+     * Changes a stage and checks that processIncremental() reuses the results of the stages
+     * before it and produces the same working image as processing everything.
+     */
+    @Test
+    public void testProcessIncremental() throws Exception {
+        CvPipeline pipeline = createPipeline();
+        pipeline.processIncremental(null);
+        Assert.assertFalse(pipeline.isResultCached(pipeline.getStage("blur1")));
+
+        ((BlurGaussian) pipeline.getStage("blur3")).setKernelSize(7);
+        pipeline.processIncremental(null);
+        Assert.assertTrue(pipeline.isResultCached(pipeline.getStage("blur1")));
+        Assert.assertTrue(pipeline.isResultCached(pipeline.getStage("recall")));
+        Assert.assertFalse(pipeline.isResultCached(pipeline.getStage("blur3")));
+        Mat incremental = pipeline.getWorkingImage().clone();
+        pipeline.process();
+        assertSame(pipeline.getWorkingImage(), incremental);
+
+        // A change to the first stage invalidates everything after it.
+        ((BlurGaussian) pipeline.getStage("blur1")).setKernelSize(3);
+        pipeline.processIncremental(null);
+        Assert.assertFalse(pipeline.isResultCached(pipeline.getStage("blur1")));
+        Assert.assertFalse(pipeline.isResultCached(pipeline.getStage("blur3")));
+
+        // A cancelled run keeps what it already had and the next run picks up from there.
+        ((BlurGaussian) pipeline.getStage("blur2")).setKernelSize(5);
+        pipeline.processIncremental(() -> true);
+        Assert.assertNull(pipeline.getResult("blur2"));
+        pipeline.processIncremental(null);
+        Assert.assertTrue(pipeline.isResultCached(pipeline.getStage("blur1")));
+        Assert.assertNotNull(pipeline.getResult("blur2").image);
+        pipeline.release();
+    }
+
+    /**
+     * Processes the pipeline in order and in parallel, where blur2 and the recall of blur1 can
+     * run at the same time, and checks that the results are the same.
+     */
+    @Test
+    public void testParallel() throws Exception {
+        CvPipeline sequential = createPipeline();
+        CvPipeline parallel = createPipeline();
+        parallel.setParallel(true);
+        for (ResultRetention retention : new ResultRetention[] {ResultRetention.Debug,
+                ResultRetention.Production}) {
+            sequential.setResultRetention(retention);
+            parallel.setResultRetention(retention);
+            sequential.process();
+            parallel.process();
+            for (CvStage stage : sequential.getStages()) {
+                Result expected = sequential.getResult(stage);
+                Result actual = parallel.getResult(stage.getName());
+                if (expected.image == null) {
+                    Assert.assertNull(actual.image);
+                }
+                else {
+                    assertSame(expected.image, actual.image);
+                }
+            }
+            assertSame(sequential.getWorkingImage(), parallel.getWorkingImage());
+        }
+        sequential.release();
+        parallel.release();
+    }
+
+    /**
+     * Checks that with the Mat pool enabled the scratch Mats are allocated on the first run only,
+     * and that pooling them does not change the result.
+     */
+    @Test
+    public void testMatPool() throws Exception {
+        CvPipeline unpooled = createMaskPipeline();
+        CvPipeline pooled = createMaskPipeline();
+        pooled.setMatPoolEnabled(true);
+        unpooled.process();
+        pooled.process();
+        long allocations = pooled.getMatPool().getAllocations();
+        Assert.assertTrue(allocations > 0);
+        for (int i = 0; i < 3; i++) {
+            unpooled.process();
+            pooled.process();
+            assertSame(unpooled.getWorkingImage(), pooled.getWorkingImage());
+        }
+        Assert.assertEquals(allocations, pooled.getMatPool().getAllocations());
+        Assert.assertEquals(4 * allocations, unpooled.getMatPool().getAllocations());
+        Assert.assertEquals(0, unpooled.getMatPool().getBytes());
+        Assert.assertTrue(pooled.getMatPool().getBytes() > 0);
+        Assert.assertEquals(pooled.getMatPool().getBytes(),
+                pooled.getMatPool().getHighWaterBytes());
+
+        pooled.release();
+        Assert.assertEquals(0, pooled.getMatPool().getBytes());
+        unpooled.release();
+    }
+
+    /**
+     * Runs the default loose part feeder pipeline in Production and checks that the working image
+     * is the one with the contours and rects drawn on it, as the feeder shows it to the user,
+     * even though the drawing stages come after the results.
+     */
+    @Test
+    public void testProductionWorkingImage() throws Exception {
+        Mat image = new Mat(480, 640, CvType.CV_8UC3, new Scalar(200, 200, 200));
+        for (int i = 0; i < 4; i++) {
+            Core.rectangle(image, new Point(100 + i * 120, 200), new Point(130 + i * 120, 230),
+                    new Scalar(20, 20, 20), -1);
+        }
+        File file = File.createTempFile("parts", ".png");
+        file.deleteOnExit();
+        Highgui.imwrite(file.getAbsolutePath(), image);
+
+        CvPipeline pipeline = ReferenceLoosePartFeeder.createDefaultPipeline();
+        ImageRead read = new ImageRead();
+        read.setFile(file);
+        pipeline.remove("9");
+        pipeline.insert("9", read, 0);
+        pipeline.process();
+        Mat expected = pipeline.getWorkingImage().clone();
+        Assert.assertEquals(4, ((List<?>) pipeline.getResult("results").model).size());
+        Mat diff = new Mat();
+        Core.absdiff(image, expected, diff);
+        Assert.assertTrue(Core.countNonZero(diff.reshape(1)) > 0);
+
+        pipeline.setResultRetention(ResultRetention.Production);
+        Assert.assertTrue(pipeline.getPlan().isPruning());
+        pipeline.process();
+        assertSame(expected, pipeline.getWorkingImage());
+        pipeline.release();
+    }
+
+    private static CvPipeline createMaskPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        BlurGaussian blur = new BlurGaussian();
+        blur.setKernelSize(9);
+        pipeline.add("blur", blur);
+        MaskCircle mask = new MaskCircle();
+        mask.setDiameter(100);
+        pipeline.add("mask", mask);
+        return pipeline;
+    }
+
+    private static CvPipeline createPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        BlurGaussian blur = new BlurGaussian();
+        blur.setKernelSize(9);
+        pipeline.add("blur1", blur);
+        blur = new BlurGaussian();
+        blur.setKernelSize(21);
+        pipeline.add("blur2", blur);
+        ImageRecall recall = new ImageRecall();
+        recall.setImageStageName("blur1");
+        pipeline.add("recall", recall);
+        blur = new BlurGaussian();
+        blur.setKernelSize(5);
+        pipeline.add("blur3", blur);
+        return pipeline;
+    }
+
+    private static void assertSame(Mat expected, Mat actual) {
+        Mat diff = new Mat();
+        Core.absdiff(expected, actual, diff);
+        Assert.assertEquals(0, Core.countNonZero(diff.reshape(1)));
+        diff.release();
+    }
+}
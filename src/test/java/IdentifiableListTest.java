@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.AbstractModelObject;
+import org.openpnp.model.Identifiable;
+import org.openpnp.util.IdentifiableList;
+import org.pmw.tinylog.Logger;
+
+public class IdentifiableListTest {
+    /**
+     * Checks that lookups follow the list through adds, removes, sets and changes to ids, whether
+     * or not the element tells anyone about them.
+     */
+    @Test
+    public void testIdChanges() {
+        IdentifiableList<Element> list = new IdentifiableList<>();
+        Element a = new Element("A");
+        Element b = new Element("B");
+        Element a2 = new Element("A");
+        list.add(a);
+        list.add(b);
+        list.add(a2);
+        Assert.assertSame(a, list.get("A"));
+        Assert.assertSame(b, list.get("B"));
+        Assert.assertNull(list.get("C"));
+
+        list.remove(a);
+        Assert.assertSame(a2, list.get("A"));
+        list.add(0, a);
+        Assert.assertSame(a, list.get("A"));
+
+        // Fires a property change.
+        b.setId("C");
+        Assert.assertNull(list.get("B"));
+        Assert.assertSame(b, list.get("C"));
+
+        // Doesn't.
+        Quiet quiet = new Quiet("D");
+        IdentifiableList<Quiet> quiets = new IdentifiableList<>();
+        quiets.add(quiet);
+        Assert.assertSame(quiet, quiets.get("D"));
+        quiet.id = "E";
+        Assert.assertNull(quiets.get("D"));
+        Assert.assertSame(quiet, quiets.get("E"));
+
+        list.set(0, new Element("F"));
+        Assert.assertSame(a2, list.get("A"));
+        for (Iterator<Element> i = list.iterator(); i.hasNext();) {
+            if (i.next() == a2) {
+                i.remove();
+            }
+        }
+        Assert.assertNull(list.get("A"));
+
+        list.clear();
+        Assert.assertNull(list.get("C"));
+    }
+
+    @Test
+    public void testCreateId() {
+        IdentifiableList<Element> list = new IdentifiableList<>();
+        for (int i = 0; i < 3; i++) {
+            list.add(new Element(list.createId("E")));
+        }
+        Assert.assertEquals("E3", list.createId("E"));
+        Assert.assertEquals("X0", list.createId("X"));
+        list.remove(list.get("E1"));
+        Assert.assertEquals("E1", list.createId("E"));
+        list.get("E2").setId("Y");
+        Assert.assertEquals("E1", list.createId("E"));
+        list.add(new Element("E1"));
+        Assert.assertEquals("E2", list.createId("E"));
+    }
+
+    /**
+     * Looks ids up from several threads while another thread keeps changing the id of an element,
+     * so that the lookups keep rebuilding the index under each other, and checks that every id
+     * in the list is always found.
+     */
+    @Test
+    public void testConcurrentGet() throws Exception {
+        IdentifiableList<Element> list = new IdentifiableList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(new Element("E" + i));
+        }
+        Element renamed = new Element("R0");
+        list.add(renamed);
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<?> renames = executor.submit(() -> {
+                for (int i = 1; !done.get(); i++) {
+                    renamed.setId("R" + i);
+                }
+            });
+            List<Future<?>> lookups = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                lookups.add(executor.submit(() -> {
+                    Random random = new Random();
+                    for (int i = 0; i < 100000; i++) {
+                        String id = "E" + random.nextInt(1000);
+                        Element e = list.get(id);
+                        Assert.assertNotNull(id, e);
+                        Assert.assertEquals(id, e.getId());
+                    }
+                }));
+            }
+            try {
+                for (Future<?> lookup : lookups) {
+                    lookup.get();
+                }
+            }
+            finally {
+                done.set(true);
+            }
+            renames.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates and adds 10,000 ids and looks each of them up, and compares that to the search
+     * through the list that get() used to do.
+     */
+    @Test
+    public void testBenchmark() {
+        int count = 10000;
+        long t = System.nanoTime();
+        IdentifiableList<Element> list = new IdentifiableList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new Element(list.createId("FDR")));
+        }
+        for (int i = 0; i < count; i++) {
+            Assert.assertNotNull(list.get("FDR" + i));
+        }
+        long indexed = System.nanoTime() - t;
+
+        t = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Assert.assertNotNull(search(list, "FDR" + i));
+        }
+        long searched = System.nanoTime() - t;
+
+        Logger.info("IdentifiableList with " + count + " elements: " + indexed / 1000000
+                + " ms to create, add and get, " + searched / 1000000 + " ms to search");
+        Assert.assertTrue(indexed < searched);
+    }
+
+    private static Element search(IdentifiableList<Element> list, String id) {
+        for (Element e : list) {
+            if (e.getId().equals(id)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    public static class Element extends AbstractModelObject implements Identifiable {
+        private String id;
+
+        public Element(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            Object oldValue = this.id;
+            this.id = id;
+            firePropertyChange("id", oldValue, id);
+        }
+    }
+
+    public static class Quiet implements Identifiable {
+        private String id;
+
+        public Quiet(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+}
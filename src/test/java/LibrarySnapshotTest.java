@@ -0,0 +1,129 @@
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Footprint;
+import org.openpnp.model.Footprint.Pad;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.LibrarySnapshot;
+import org.openpnp.model.Outline;
+import org.openpnp.model.Package;
+import org.openpnp.model.Part;
+import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.core.Persister;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+
+public class LibrarySnapshotTest {
+    /**
+     * Loads a 10,000 part library from the XML and then from the snapshot, and checks that saving
+     * what was read from the snapshot gives back the same XML. Also checks that a change to the
+     * XML makes the snapshot stale.
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        File packagesFile = new File(workingDirectory, "packages.xml");
+        File partsFile = new File(workingDirectory, "parts.xml");
+        File snapshotFile = new File(workingDirectory, "library.snapshot");
+
+        Configuration.initialize(workingDirectory);
+        Configuration configuration = Configuration.get();
+        configuration.load();
+        for (int i = 0; i < 10000; i++) {
+            Part part = new Part("PART-" + i);
+            part.setName("Part " + i);
+            part.setSpeed(i % 10 / 10.0);
+            part.setPackage(configuration.getPackages().get(i % 5));
+            configuration.addPart(part);
+        }
+        int partCount = configuration.getParts().size();
+        configuration.save();
+        FileUtils.writeStringToFile(packagesFile, FileUtils.readFileToString(packagesFile)
+                .replaceFirst("<outline units=\"Millimeters\"/>", "<outline units=\"Millimeters\">"
+                        + "<line x1=\"0\" y1=\"0\" x2=\"1\" y2=\"1\"/>"
+                        + "<ellipse x=\"0\" y=\"0\" width=\"2\" height=\"1\"/>"
+                        + "<circle x=\"1\" y=\"1\" radius=\"0.5\"/></outline>"));
+        Assert.assertNull(LibrarySnapshot.read(snapshotFile, packagesFile, partsFile));
+
+        Configuration.initialize(workingDirectory);
+        long t = System.nanoTime();
+        Configuration.get().load();
+        long xml = System.nanoTime() - t;
+        Configuration.get().save();
+        String packagesXml = FileUtils.readFileToString(packagesFile);
+        String partsXml = FileUtils.readFileToString(partsFile);
+        Assert.assertTrue(packagesXml.contains("<circle"));
+
+        Assert.assertNotNull(LibrarySnapshot.read(snapshotFile, packagesFile, partsFile));
+        Configuration.initialize(workingDirectory);
+        t = System.nanoTime();
+        Configuration.get().load();
+        long snapshot = System.nanoTime() - t;
+        Assert.assertEquals(partCount, Configuration.get().getParts().size());
+        Assert.assertSame(Configuration.get().getPackages().get(3),
+                Configuration.get().getPart("PART-3").getPackage());
+        packagesFile.delete();
+        partsFile.delete();
+        Configuration.get().save();
+        Assert.assertEquals(packagesXml, FileUtils.readFileToString(packagesFile));
+        Assert.assertEquals(partsXml, FileUtils.readFileToString(partsFile));
+
+        Logger.info("Load with 10000 parts: " + xml / 1000000 + " ms from XML, " + snapshot / 1000000
+                + " ms from the snapshot");
+    }
+
+    /**
+     * Checks the snapshot written for a fixed library against the digest recorded for its
+     * FORMAT_VERSION, so that changing what is written, such as the Outline layout, without a new
+     * FORMAT_VERSION fails here. After such a change bump LibrarySnapshot.FORMAT_VERSION and
+     * record the new version and digest.
+     */
+    @Test
+    public void testFormatVersion() throws Exception {
+        File directory = Files.createTempDir();
+        // Parts need a Configuration to resolve their Package.
+        Configuration.initialize(new File(directory, ".openpnp"));
+        File packagesFile = new File(directory, "packages.xml");
+        File partsFile = new File(directory, "parts.xml");
+        FileUtils.writeStringToFile(packagesFile, "packages");
+        FileUtils.writeStringToFile(partsFile, "parts");
+        packagesFile.setLastModified(1000000000000L);
+        partsFile.setLastModified(1000000000000L);
+
+        Package pkg = new Package("SOT23");
+        pkg.setDescription("Small outline transistor, \u00b5 sized");
+        pkg.setOutline(new Persister().read(Outline.class, "<outline units=\"Millimeters\">"
+                + "<line x1=\"0\" y1=\"0\" x2=\"1\" y2=\"1\"/>"
+                + "<ellipse x=\"0\" y=\"0\" width=\"2\" height=\"1\"/>"
+                + "<circle x=\"1\" y=\"1\" radius=\"0.5\"/></outline>"));
+        Footprint footprint = new Footprint();
+        Pad pad = new Pad();
+        pad.setName("1");
+        pad.setWidth(1);
+        pad.setHeight(0.5);
+        footprint.addPad(pad);
+        pkg.setFootprint(footprint);
+        Part part = new Part("BC847");
+        part.setName("BC847");
+        part.setHeight(new Length(1.1, LengthUnit.Millimeters));
+        part.setPackage(pkg);
+
+        byte[] bytes = LibrarySnapshot.write(packagesFile, partsFile, Arrays.asList(pkg),
+                Arrays.asList(part));
+        int version = ByteBuffer.wrap(bytes).getInt(4);
+        String digest = BaseEncoding.base16()
+                .encode(MessageDigest.getInstance("SHA-256").digest(bytes));
+        Assert.assertEquals(
+                "The snapshot format changed. Bump LibrarySnapshot.FORMAT_VERSION and record the new version and digest here.",
+                "2:CBD2732195F4DBE8477601BA0E522A92CADB395CE7FB64279507B0E573AB27FA",
+                version + ":" + digest);
+    }
+}
@@ -0,0 +1,115 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.highgui.Highgui;
+import org.openpnp.machine.reference.camera.MjpegCamera;
+import org.openpnp.model.Configuration;
+import org.openpnp.util.OpenCvUtils;
+
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpServer;
+
+public class MjpegCameraTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Serves the sample pnp-test image as an endless MJPEG stream from an in process HTTP server
+     * and checks that the camera decodes and resizes frames while holding a single connection
+     * open across many captures.
+     */
+    @Test
+    public void testStream() throws Exception {
+        testStream(true);
+    }
+
+    /**
+     * Same as testStream, but the server does not send Content-Length headers so the camera must
+     * find the frames by their JPEG markers.
+     */
+    @Test
+    public void testStreamWithoutContentLength() throws Exception {
+        testStream(false);
+    }
+
+    private void testStream(boolean sendContentLength) throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        List<byte[]> frames = recordFrames();
+        AtomicInteger connections = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stream", exchange -> {
+            connections.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type",
+                    "multipart/x-mixed-replace; boundary=frame");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; ; i++) {
+                    byte[] frame = frames.get(i % frames.size());
+                    String headers = "--frame\r\nContent-Type: image/jpeg\r\n"
+                            + (sendContentLength ? "Content-Length: " + frame.length + "\r\n" : "")
+                            + "\r\n";
+                    out.write(headers.getBytes(StandardCharsets.US_ASCII));
+                    out.write(frame);
+                    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    Thread.sleep(5);
+                }
+            }
+            catch (IOException | InterruptedException e) {
+                // Client went away.
+            }
+        });
+        server.start();
+
+        MjpegCamera camera = new MjpegCamera();
+        try {
+            camera.setResizeWidth(320);
+            camera.setResizeHeight(240);
+            camera.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/stream");
+            for (int i = 0; i < 50; i++) {
+                BufferedImage image = camera.capture();
+                Assert.assertEquals(320, image.getWidth());
+                Assert.assertEquals(240, image.getHeight());
+            }
+            Assert.assertEquals(1, connections.get());
+        }
+        finally {
+            camera.close();
+            server.stop(0);
+        }
+    }
+
+    private static List<byte[]> recordFrames() throws Exception {
+        BufferedImage source = ImageIO.read(ClassLoader.getSystemResource("samples/pnp-test/pnp-test.png"));
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BufferedImage tile = source.getSubimage(i * 640, 0, 640, 480);
+            Mat mat = OpenCvUtils.toMat(tile);
+            MatOfByte jpeg = new MatOfByte();
+            Highgui.imencode(".jpg", mat, jpeg);
+            frames.add(jpeg.toArray());
+            mat.release();
+            jpeg.release();
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,134 @@
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.OpenCvUtils;
+
+public class OpenCvUtilsTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Checks matMaxima() against the original pixel at a time implementation, which is kept
+     * below, on random maps with plenty of plateaus and on a real template match result.
+     */
+    @Test
+    public void testMatMaxima() {
+        Random random = new Random(0);
+        for (int type : new int[] {CvType.CV_32FC1, CvType.CV_64FC1, CvType.CV_8UC1}) {
+            for (int i = 0; i < 20; i++) {
+                int rows = 3 + random.nextInt(40);
+                int cols = 3 + random.nextInt(40);
+                Mat mat = new Mat(rows, cols, type);
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
+                        // Few distinct values, so that equal neighbors are common.
+                        mat.put(r, c, random.nextInt(8) * 0.125);
+                    }
+                }
+                Assert.assertEquals(matMaxima(mat, 0.25, 1.0),
+                        OpenCvUtils.matMaxima(mat, 0.25, 1.0));
+                mat.release();
+            }
+        }
+
+        Mat image = new Mat(120, 160, CvType.CV_8UC1);
+        for (int r = 0; r < image.rows(); r++) {
+            for (int c = 0; c < image.cols(); c++) {
+                image.put(r, c, random.nextInt(256));
+            }
+        }
+        Mat template = image.submat(40, 56, 60, 76).clone();
+        Mat result = new Mat();
+        Imgproc.matchTemplate(image, template, result, Imgproc.TM_CCOEFF_NORMED);
+        List<Point> expected = matMaxima(result, 0.1, 1.0);
+        Assert.assertEquals(expected, OpenCvUtils.matMaxima(result, 0.1, 1.0));
+        Assert.assertTrue(expected.contains(new Point(60, 40)));
+        image.release();
+        template.release();
+        result.release();
+    }
+
+    private enum MinMaxState {
+        BEFORE_INFLECTION,
+        AFTER_INFLECTION
+    }
+
+    /**
+     * The implementation of OpenCvUtils.matMaxima() before it was changed to copy the Mat in
+     * bulk, with the comments removed.
+     */
+    private static List<Point> matMaxima(Mat mat, double rangeMin, double rangeMax) {
+        List<Point> locations = new ArrayList<>();
+
+        int rEnd = mat.rows() - 1;
+        int cEnd = mat.cols() - 1;
+
+        for (int r = 0; r <= rEnd; r++) {
+            MinMaxState state = MinMaxState.BEFORE_INFLECTION;
+            double curVal = mat.get(r, 0)[0];
+            for (int c = 1; c <= cEnd; c++) {
+                double val = mat.get(r, c)[0];
+
+                if (val == curVal) {
+                    continue;
+                }
+                else if (curVal < val) {
+                    if (state != MinMaxState.BEFORE_INFLECTION) {
+                        state = MinMaxState.BEFORE_INFLECTION;
+                    }
+                }
+                else {
+                    if (state == MinMaxState.BEFORE_INFLECTION) {
+                        if (rangeMin <= curVal && curVal <= rangeMax) {
+                            if (0 < r && (mat.get(r - 1, c - 1)[0] >= curVal
+                                    || mat.get(r - 1, c)[0] >= curVal)) {
+                            }
+                            else if (r < rEnd && (mat.get(r + 1, c - 1)[0] > curVal
+                                    || mat.get(r + 1, c)[0] > curVal)) {
+                            }
+                            else if (1 < c && (0 < r && mat.get(r - 1, c - 2)[0] >= curVal
+                                    || mat.get(r, c - 2)[0] > curVal
+                                    || r < rEnd && mat.get(r + 1, c - 2)[0] > curVal)) {
+                            }
+                            else {
+                                locations.add(new Point(c - 1, r));
+                            }
+                        }
+                        state = MinMaxState.AFTER_INFLECTION;
+                    }
+                }
+
+                curVal = val;
+            }
+
+            if (state == MinMaxState.BEFORE_INFLECTION) {
+                if (rangeMin <= curVal && curVal <= rangeMax) {
+                    if (0 < r && (mat.get(r - 1, cEnd - 1)[0] >= curVal
+                            || mat.get(r - 1, cEnd)[0] >= curVal)) {
+                    }
+                    else if (r < rEnd && (mat.get(r + 1, cEnd - 1)[0] > curVal
+                            || mat.get(r + 1, cEnd)[0] > curVal)) {
+                    }
+                    else if (1 < r && mat.get(r - 1, cEnd - 2)[0] >= curVal
+                            || mat.get(r, cEnd - 2)[0] > curVal
+                            || r < rEnd && mat.get(r + 1, cEnd - 2)[0] > curVal) {
+                    }
+                    else {
+                        locations.add(new Point(cEnd, r));
+                    }
+                }
+            }
+        }
+
+        return locations;
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.PyramidTemplateMatcher;
+import org.openpnp.vision.PyramidTemplateMatcher.Match;
+
+public class PyramidTemplateMatcherTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Cuts a template out of a smooth random image and checks that the pyramid match finds it at
+     * the same place, with the same score, as a full resolution match.
+     */
+    @Test
+    public void testMatch() {
+        Random random = new Random(0);
+        Mat noise = new Mat(60, 80, CvType.CV_8UC1);
+        for (int r = 0; r < noise.rows(); r++) {
+            for (int c = 0; c < noise.cols(); c++) {
+                noise.put(r, c, random.nextInt(256));
+            }
+        }
+        // Enlarging noise gives features that survive being reduced again.
+        Mat image = new Mat();
+        Imgproc.resize(noise, image, new Size(640, 480), 0, 0, Imgproc.INTER_CUBIC);
+        Mat template = image.submat(203, 267, 301, 365).clone();
+
+        for (int levels = 0; levels <= 3; levels++) {
+            List<Match> matches = new PyramidTemplateMatcher()
+                    .setLevels(levels)
+                    .match(image, template, 0.7, 0.85);
+            Assert.assertFalse(matches.isEmpty());
+            Assert.assertEquals(301, matches.get(0).x, 0);
+            Assert.assertEquals(203, matches.get(0).y, 0);
+            Assert.assertEquals(1.0, matches.get(0).score, 1e-4);
+        }
+
+        List<Match> matches = new PyramidTemplateMatcher()
+                .setSubPixel(true)
+                .match(image, template, 0.7, 0.85);
+        Assert.assertEquals(301, matches.get(0).x, 0.1);
+        Assert.assertEquals(203, matches.get(0).y, 0.1);
+
+        noise.release();
+        image.release();
+        template.release();
+    }
+}
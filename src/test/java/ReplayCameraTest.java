@@ -0,0 +1,117 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.camera.FrameRecording;
+import org.openpnp.machine.reference.camera.FrameRecording.Encoding;
+import org.openpnp.machine.reference.camera.ImageCamera;
+import org.openpnp.machine.reference.camera.ReplayCamera;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+
+import com.google.common.io.Files;
+
+public class ReplayCameraTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Records captures from an ImageCamera at a few locations, including two at the same spot,
+     * then checks that a ReplayCamera moved to the same locations serves back identical frames in
+     * the same order.
+     */
+    @Test
+    public void testRecordAndReplayRaw() throws Exception {
+        testRecordAndReplay(Encoding.Raw);
+    }
+
+    @Test
+    public void testRecordAndReplayPng() throws Exception {
+        testRecordAndReplay(Encoding.Png);
+    }
+
+    private void testRecordAndReplay(Encoding encoding) throws Exception {
+        File workingDirectory = Files.createTempDir();
+        File file = new File(workingDirectory, "test.frames");
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        List<Location> locations = Arrays.asList(
+                new Location(LengthUnit.Millimeters, 20, 20, 0, 0),
+                new Location(LengthUnit.Millimeters, 40, 10, 0, 0),
+                new Location(LengthUnit.Millimeters, 20, 20, 0, 0),
+                new Location(LengthUnit.Millimeters, 60, 30, 0, 0));
+
+        ImageCamera imageCamera = new ImageCamera();
+        imageCamera.startRecording(file, encoding);
+        List<byte[]> recorded = new ArrayList<>();
+        for (Location location : locations) {
+            imageCamera.setHeadOffsets(location);
+            recorded.add(pixels(imageCamera.capture()));
+        }
+        imageCamera.stopRecording();
+        imageCamera.close();
+
+        try (FrameRecording recording = new FrameRecording(file)) {
+            Assert.assertEquals(locations.size(), recording.getFrames().size());
+        }
+
+        ReplayCamera camera = new ReplayCamera();
+        try {
+            camera.setFile(file.getAbsolutePath());
+            // Visit the locations in a different order. The two frames recorded at 20, 20 should
+            // come back in the order they were recorded.
+            int[] order = new int[] {3, 0, 1, 2};
+            for (int i : order) {
+                camera.setHeadOffsets(locations.get(i));
+                Assert.assertArrayEquals(recorded.get(i), pixels(camera.capture()));
+            }
+        }
+        finally {
+            camera.close();
+        }
+    }
+
+    /**
+     * A recording that was cut short part way through a frame should still play back the
+     * frames before it.
+     */
+    @Test
+    public void testTruncatedRecording() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        File file = new File(workingDirectory, "test.frames");
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        ImageCamera imageCamera = new ImageCamera();
+        imageCamera.startRecording(file, Encoding.Raw);
+        for (int i = 0; i < 3; i++) {
+            imageCamera.capture();
+        }
+        imageCamera.stopRecording();
+        imageCamera.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+        try (FrameRecording recording = new FrameRecording(file)) {
+            Assert.assertEquals(2, recording.getFrames().size());
+        }
+    }
+
+    private static byte[] pixels(BufferedImage image) {
+        Assert.assertEquals(BufferedImage.TYPE_3BYTE_BGR, image.getType());
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
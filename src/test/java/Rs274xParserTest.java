@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.gui.importer.rs274x.Rs274xParser;
+import org.openpnp.model.BoardPad;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Pad;
+import org.pmw.tinylog.Logger;
+
+import com.google.common.io.Files;
+
+public class Rs274xParserTest {
+    /**
+     * Parses a generated paste layer of 50,000 flashes both from a Reader and from the memory
+     * mapped file, and checks that both give the same pads. Logs how long each takes.
+     */
+    @Test
+    public void testMappedMatchesReader() throws Exception {
+        File file = new File(Files.createTempDir(), "paste.gtp");
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print(generate(50000));
+        }
+
+        // Best of three, as the first runs are mostly class loading and warm up.
+        List<BoardPad> expected = null;
+        List<BoardPad> pads = null;
+        long reader = Long.MAX_VALUE;
+        long mapped = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t = System.nanoTime();
+            expected = new Rs274xParser().parseSolderPastePads(new FileReader(file));
+            reader = Math.min(reader, System.nanoTime() - t);
+
+            t = System.nanoTime();
+            pads = new ArrayList<>();
+            new Rs274xParser().parseSolderPastePads(file, pads::add);
+            mapped = Math.min(mapped, System.nanoTime() - t);
+        }
+        Logger.info("Parsing 50000 flashes: " + reader / 1000000 + " ms from a Reader, "
+                + mapped / 1000000 + " ms mapped");
+
+        Assert.assertEquals(50000, expected.size());
+        Assert.assertEquals(expected.size(), pads.size());
+        for (int i = 0; i < pads.size(); i++) {
+            assertPadEquals(expected.get(i), pads.get(i));
+        }
+
+        BoardPad first = pads.get(0);
+        Assert.assertEquals("D10-000", first.getName());
+        Assert.assertEquals(LengthUnit.Inches, first.getLocation().getUnits());
+        Assert.assertEquals(1.234, first.getLocation().getX(), 0);
+        Assert.assertEquals(-0.5, first.getLocation().getY(), 0);
+        Assert.assertEquals(0.05, ((Pad.RoundRectangle) first.getPad()).getWidth(), 0);
+    }
+
+    /**
+     * Checks that a file that ends too soon fails the same way either way it is parsed.
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        String gerber = generate(10);
+        gerber = gerber.substring(0, gerber.length() / 2);
+        String expected = null;
+        try {
+            new Rs274xParser().parseSolderPastePads(new StringReader(gerber));
+            Assert.fail("Truncated file parsed.");
+        }
+        catch (Exception e) {
+            expected = e.getMessage();
+        }
+        try {
+            new Rs274xParser().parseSolderPastePads(
+                    ByteBuffer.wrap(gerber.getBytes(StandardCharsets.US_ASCII)), pad -> {
+                    });
+            Assert.fail("Truncated file parsed.");
+        }
+        catch (Exception e) {
+            Assert.assertEquals(expected, e.getMessage());
+        }
+    }
+
+    private static void assertPadEquals(BoardPad expected, BoardPad pad) {
+        Assert.assertEquals(expected.getName(), pad.getName());
+        Assert.assertEquals(expected.getLocation(), pad.getLocation());
+        Assert.assertEquals(expected.getPad().getClass(), pad.getPad().getClass());
+        Assert.assertEquals(expected.getPad().getUnits(), pad.getPad().getUnits());
+        if (pad.getPad() instanceof Pad.Circle) {
+            Assert.assertEquals(((Pad.Circle) expected.getPad()).getRadius(),
+                    ((Pad.Circle) pad.getPad()).getRadius(), 0);
+        }
+        else {
+            Pad.RoundRectangle expectedRectangle = (Pad.RoundRectangle) expected.getPad();
+            Pad.RoundRectangle rectangle = (Pad.RoundRectangle) pad.getPad();
+            Assert.assertEquals(expectedRectangle.getWidth(), rectangle.getWidth(), 0);
+            Assert.assertEquals(expectedRectangle.getHeight(), rectangle.getHeight(), 0);
+        }
+    }
+
+    /**
+     * Generates a paste layer with the given number of flashes, using each kind of aperture and
+     * some of the commands that are skipped over, with CRLF line endings.
+     */
+    private static String generate(int flashes) {
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        sb.append("G04 Generated paste layer*\r\n");
+        sb.append("%FSLAX24Y24*%\r\n");
+        sb.append("%MOIN*%\r\n");
+        sb.append("%AMOC8*\r\n5,1,8,0,0,1.08239X$1,22.5*\r\n%\r\n");
+        sb.append("%ADD10R,0.0500X0.0300*%\r\n");
+        sb.append("%ADD11C,0.0200*%\r\n");
+        sb.append("%ADD12O,0.0600X0.0250*%\r\n");
+        sb.append("%ADD13P,0.0400X6X15.0*%\r\n");
+        sb.append("%ADD105R,0.0100X0.0100X0.0050*%\r\n");
+        sb.append("%LPD*%\r\n");
+        sb.append("G54D10*\r\n");
+        sb.append("X12340Y-5000D03*\r\n");
+        int[] codes = {10, 11, 12, 13, 105};
+        for (int i = 1; i < flashes; i++) {
+            if (i % 500 == 0) {
+                sb.append("G54D" + codes[random.nextInt(codes.length)] + "*\r\n");
+            }
+            int x = random.nextInt(1100000) - 100000;
+            int y = random.nextInt(1000000);
+            if (i % 997 == 0) {
+                sb.append("X" + x + "Y" + y + "D02*\r\n");
+                sb.append("G01X" + (x + 100) + "Y" + y + "D01*\r\n");
+            }
+            else if (i % 1499 == 0) {
+                sb.append("G36*\r\nX" + x + "Y" + y + "D02*\r\n");
+                sb.append("X" + (x + 10) + "Y" + y + "D01*\r\n");
+                sb.append("X" + (x + 10) + "Y" + (y + 10) + "D01*\r\nG37*\r\n");
+            }
+            if (i % 7 == 0) {
+                sb.append("Y" + y + "D03*\r\n");
+            }
+            else if (i % 11 == 0) {
+                sb.append("X" + x + "\r\nY" + y + "D03*\r\n");
+            }
+            else {
+                sb.append("X" + x + "Y" + y + "D03*\r\n");
+            }
+        }
+        sb.append("M02*\r\n");
+        return sb.toString();
+    }
+}
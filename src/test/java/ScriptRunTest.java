@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.FileReader;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.util.CachedScript;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ScriptRun;
+import org.pmw.tinylog.Logger;
+
+import com.google.common.io.Files;
+
+import bsh.engine.BshScriptEngineFactory;
+
+public class ScriptRunTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Checks that the script sees its globals, that variables do not carry over from one run to
+     * the next and that a change to the file is picked up.
+     */
+    @Test
+    public void testScriptRun() throws Exception {
+        for (String extension : new String[] {"js", "bsh"}) {
+            File file = new File(Files.createTempDir(), "script." + extension);
+            boolean js = extension.equals("js");
+            String expression = (js ? "new Packages." : "new ")
+                    + "org.openpnp.vision.pipeline.CvStage.Result(null, args";
+            FileUtils.writeStringToFile(file,
+                    (js ? "if (typeof(seen) !== 'undefined') { throw 'seen'; } "
+                            : "if (seen != void) { throw new Exception(); } ")
+                            + "seen = true; " + expression + ");");
+            CvPipeline pipeline = new CvPipeline();
+            ScriptRun stage = new ScriptRun();
+            stage.setFile(file);
+            stage.setArgs("a");
+            pipeline.add(stage);
+            for (int i = 0; i < 2; i++) {
+                pipeline.process();
+                Result result = pipeline.getResult(stage);
+                Assert.assertEquals(extension, "a", result.model);
+            }
+
+            FileUtils.writeStringToFile(file, expression + " + 'b');");
+            file.setLastModified(file.lastModified() + 2000);
+            pipeline.process();
+            Assert.assertEquals(extension, "ab", pipeline.getResult(stage).model);
+        }
+    }
+
+    /**
+     * Checks that running a script over and over reads and compiles it once, and again only when
+     * the file changes. Also logs the time taken to run a trivial script the way ScriptRun used
+     * to, with a new engine and a fresh read of the file every time, and the time it takes now.
+     */
+    @Test
+    public void testOverhead() throws Exception {
+        for (String extension : new String[] {"js", "bsh"}) {
+            File file = new File(Files.createTempDir(), "script." + extension);
+            FileUtils.writeStringToFile(file, "1 + 1;");
+            int runs = 100;
+
+            long uncached = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                ScriptEngineManager manager = new ScriptEngineManager();
+                manager.registerEngineExtension("bsh", new BshScriptEngineFactory());
+                ScriptEngine engine =
+                        manager.getEngineByExtension(Files.getFileExtension(file.getName()));
+                try (FileReader reader = new FileReader(file)) {
+                    engine.eval(reader);
+                }
+            }
+            uncached = (System.nanoTime() - uncached) / runs;
+
+            CachedScript script = new CachedScript(file);
+            // Warm up.
+            script.eval(null);
+            long cached = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                script.eval(null);
+            }
+            cached = (System.nanoTime() - cached) / runs;
+
+            Logger.info("ScriptRun " + extension + " per call: " + uncached / 1000 + " us before, "
+                    + cached / 1000 + " us after");
+            Assert.assertEquals(extension, 1, script.getLoadCount());
+            // BeanShell can't compile, so it parses the source it kept on every run instead.
+            Assert.assertEquals(extension, extension.equals("js"), script.isCompiled());
+
+            FileUtils.writeStringToFile(file, "2 + 2;");
+            file.setLastModified(file.lastModified() + 2000);
+            script.eval(null);
+            script.eval(null);
+            Assert.assertEquals(extension, 2, script.getLoadCount());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.Scripting;
+import org.openpnp.model.Configuration;
+
+import com.google.common.io.Files;
+
+public class ScriptingTest {
+    /**
+     * Checks that event scripts are found by name, that events without scripts do nothing and
+     * that a changed script is run in its new form.
+     */
+    @Test
+    public void testEvents() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        File events = new File(workingDirectory, "scripts/Events");
+        events.mkdirs();
+        File script = new File(events, "Test.Event.js");
+        FileUtils.writeStringToFile(script, "counter.incrementAndGet();");
+
+        Scripting scripting = new Scripting();
+        Assert.assertTrue(scripting.hasEventScripts("Test.Event"));
+        Assert.assertFalse(scripting.hasEventScripts("Test"));
+
+        AtomicInteger counter = new AtomicInteger();
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("counter", counter);
+        scripting.on("Test.Event", globals);
+        scripting.on("Test.Event", globals);
+        scripting.on("Other.Event", globals);
+        Assert.assertEquals(2, counter.get());
+
+        FileUtils.writeStringToFile(script, "counter.addAndGet(10);");
+        script.setLastModified(script.lastModified() + 2000);
+        scripting.on("Test.Event", globals);
+        Assert.assertEquals(12, counter.get());
+    }
+
+    /**
+     * Checks that a script tagged @async runs on another thread, and that runs are dropped and
+     * counted once the queue is full.
+     */
+    @Test
+    public void testAsyncEvents() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        File events = new File(workingDirectory, "scripts/Events");
+        events.mkdirs();
+        FileUtils.writeStringToFile(new File(events, "Test.Async.js"),
+                "// Reports progress.\n// @async\nstarted.countDown(); gate.await();");
+
+        Scripting scripting = new Scripting();
+        Assert.assertEquals(Scripting.AsyncPolicy.Drop,
+                scripting.getEventScripts().get(0).getAsyncPolicy());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("started", started);
+        globals.put("gate", gate);
+        // The first run holds the event script thread until the gate opens, so the rest queue up.
+        scripting.on("Test.Async", globals);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 65; i++) {
+            scripting.on("Test.Async", globals);
+        }
+        Assert.assertEquals(65, scripting.getAsyncQueued());
+        Assert.assertEquals(1, scripting.getAsyncDropped());
+        Assert.assertEquals(64, scripting.getAsyncQueueLength());
+
+        gate.countDown();
+        for (int i = 0; i < 100 && scripting.getEventScripts().get(0).getRuns() < 65; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(65, scripting.getEventScripts().get(0).getRuns());
+        Assert.assertEquals(0, scripting.getAsyncFailed());
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.feeder.ReferenceStripFeeder;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.StateJournal;
+import org.pmw.tinylog.Logger;
+
+import com.google.common.io.Files;
+
+public class StateJournalTest {
+    /**
+     * Records enough to make the journal compact and grow, and checks that what was recorded last
+     * is what is read back, and that a partly written record is left out.
+     */
+    @Test
+    public void testJournal() throws Exception {
+        File file = new File(Files.createTempDir(), "state.journal");
+        StateJournal journal = new StateJournal(file);
+        int picks = 20000;
+        long t = System.nanoTime();
+        for (int i = 0; i < picks; i++) {
+            journal.putFeedCount("F" + (i % 10), i);
+            journal.putPlacementComplete("job/0/R" + i);
+        }
+        t = (System.nanoTime() - t) / picks;
+        journal.close();
+        Logger.info("StateJournal per pick: " + t + " ns");
+
+        journal = new StateJournal(file);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(picks - 10 + i, (int) journal.getFeedCount("F" + i));
+        }
+        Assert.assertNull(journal.getFeedCount("F10"));
+        Assert.assertEquals(picks, journal.getPlacementCompleteCount());
+        Assert.assertTrue(journal.isPlacementComplete("job/0/R0"));
+        Assert.assertFalse(journal.isPlacementComplete("job/1/R0"));
+
+        long sequence = journal.getSequence();
+        journal.putFeedCount("F0", 1);
+        journal.removeFeedCounts(sequence);
+        journal.removePlacements();
+        journal.putFeedCount("F1", 2);
+        journal.close();
+
+        // Tear the last record written.
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(8);
+            int region = out.readInt();
+            out.seek(4);
+            int capacity = out.readInt();
+            out.seek(32 + (region * capacity + 1) * 32 + 4);
+            out.writeInt(3);
+        }
+        journal = new StateJournal(file);
+        Assert.assertEquals(1, (int) journal.getFeedCount("F0"));
+        Assert.assertNull(journal.getFeedCount("F1"));
+        Assert.assertEquals(0, journal.getPlacementCompleteCount());
+        journal.close();
+    }
+
+    /**
+     * Changes a feed count without saving, loads the configuration again as if OpenPnP had
+     * crashed and checks that the feed count is restored.
+     */
+    @Test
+    public void testFeedCountReplay() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        ReferenceStripFeeder feeder =
+                (ReferenceStripFeeder) Configuration.get().getMachine().getFeeder("F1");
+        feeder.setFeedCount(5);
+
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        feeder = (ReferenceStripFeeder) Configuration.get().getMachine().getFeeder("F1");
+        Assert.assertEquals(5, feeder.getFeedCount());
+
+        Configuration.get().save();
+        Assert.assertNull(Configuration.get().getStateJournal().getFeedCount("F1"));
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.highgui.Highgui;
+import org.openpnp.vision.TemplateImageCache;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.stages.ReadPartTemplateImage;
+
+public class TemplateImageCacheTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        // Room for two 100x100 single channel images.
+        TemplateImageCache cache = new TemplateImageCache(20000);
+        int[] calls = new int[1];
+
+        Mat a = cache.get("a", () -> {
+            calls[0]++;
+            return new Mat(100, 100, CvType.CV_8UC1);
+        });
+        // The caller owns its copy, releasing it does not affect the cache.
+        a.release();
+        Mat again = cache.get("a", () -> {
+            calls[0]++;
+            return new Mat(100, 100, CvType.CV_8UC1);
+        });
+        Assert.assertEquals(1, calls[0]);
+        Assert.assertEquals(100, again.rows());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(10000, cache.getBytes());
+
+        cache.get("b", () -> new Mat(100, 100, CvType.CV_8UC1));
+        // Use a so that b is the least recently used.
+        cache.get("a", () -> null);
+        cache.get("c", () -> new Mat(100, 100, CvType.CV_8UC1));
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(20000, cache.getBytes());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+        Assert.assertNull(cache.get("b", () -> null));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+    /**
+     * Checks that a template file that can't be read gives no result and is not cached, so that
+     * the image is read once the file is fixed.
+     */
+    @Test
+    public void testUnreadableTemplate() throws Exception {
+        File file = File.createTempFile("template", ".png");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "not an image".getBytes());
+        ReadPartTemplateImage stage = new ReadPartTemplateImage();
+        stage.setTemplateFile(file.getAbsolutePath());
+        CvPipeline pipeline = new CvPipeline();
+        int size = TemplateImageCache.get().size();
+        Assert.assertNull(stage.process(pipeline));
+        Assert.assertEquals(size, TemplateImageCache.get().size());
+
+        Highgui.imwrite(file.getAbsolutePath(), new Mat(20, 10, CvType.CV_8UC3, new Scalar(255)));
+        Assert.assertEquals(10, stage.process(pipeline).image.cols());
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.UndistortionMaps;
+
+import com.google.common.io.Files;
+
+public class UndistortionMapsTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Builds maps for a made up calibration, checks that they are saved to and loaded back from
+     * the cache directory unchanged, that a camera's stale maps are deleted and that remapping
+     * with them matches remapping with floating point maps.
+     */
+    @Test
+    public void testCache() throws Exception {
+        File directory = Files.createTempDir();
+        Size size = new Size(320, 240);
+        Mat cameraMatrix = new Mat(3, 3, CvType.CV_64FC1);
+        cameraMatrix.put(0, 0, 300, 0, 160, 0, 300, 120, 0, 0, 1);
+        Mat distortionCoefficients = new Mat(5, 1, CvType.CV_64FC1);
+        distortionCoefficients.put(0, 0, -0.2, 0.05, 0, 0, 0);
+
+        UndistortionMaps built =
+                UndistortionMaps.get(cameraMatrix, distortionCoefficients, size, directory, "CAM1");
+        Assert.assertEquals(1, directory.listFiles().length);
+        Assert.assertEquals(CvType.CV_16SC2, built.getMap1().type());
+
+        UndistortionMaps loaded =
+                UndistortionMaps.get(cameraMatrix, distortionCoefficients, size, directory, "CAM1");
+        Assert.assertEquals(0, Core.countNonZero(difference(built.getMap1(), loaded.getMap1())));
+        Assert.assertEquals(0, Core.countNonZero(difference(built.getMap2(), loaded.getMap2())));
+
+        // A different frame size must not reuse the cached maps.
+        UndistortionMaps other = UndistortionMaps.get(cameraMatrix, distortionCoefficients,
+                new Size(640, 480), directory, "CAM1");
+        Assert.assertEquals(640, other.getMap1().cols());
+        // The camera's maps for the old frame size are deleted, another camera's are kept.
+        UndistortionMaps.get(cameraMatrix, distortionCoefficients, size, directory, "CAM2");
+        Assert.assertEquals(2, directory.listFiles().length);
+        Assert.assertEquals(640, UndistortionMaps
+                .preload(cameraMatrix, distortionCoefficients, directory, "CAM1").getSize().width,
+                0);
+
+        Mat image = new Mat(size, CvType.CV_8UC1);
+        Core.randu(image, 0, 256);
+        Imgproc.GaussianBlur(image, image, new Size(9, 9), 0);
+        Mat floatMap1 = new Mat();
+        Mat floatMap2 = new Mat();
+        Imgproc.initUndistortRectifyMap(cameraMatrix, distortionCoefficients,
+                Mat.eye(3, 3, CvType.CV_32F), cameraMatrix, size, CvType.CV_32FC1, floatMap1,
+                floatMap2);
+        Mat expected = new Mat();
+        Imgproc.remap(image, expected, floatMap1, floatMap2, Imgproc.INTER_LINEAR);
+        Mat actual = loaded.remap(image);
+        Core.MinMaxLocResult result = Core.minMaxLoc(difference(expected, actual));
+        Assert.assertTrue(result.maxVal <= 2);
+    }
+
+    private static Mat difference(Mat a, Mat b) {
+        Mat diff = new Mat();
+        Core.absdiff(a, b, diff);
+        return diff.reshape(1);
+    }
+}
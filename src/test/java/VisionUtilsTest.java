@@ -6,8 +6,10 @@ import javax.swing.Icon;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.opencv.core.Rect;
 import org.openpnp.CameraListener;
 import org.openpnp.gui.support.Wizard;
+import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.spi.Camera;
@@ -15,6 +17,8 @@ import org.openpnp.spi.Head;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.VisionProvider;
 import org.openpnp.util.VisionUtils;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 
 
 public class VisionUtilsTest {
@@ -31,6 +35,56 @@ public class VisionUtilsTest {
         Assert.assertEquals(pixelLocation, new Location(LengthUnit.Millimeters, -220, 140, 0, 0));
     }
 
+    @Test
+    public void testRoi() {
+        Camera camera = new TestCamera();
+        Assert.assertNull(VisionUtils.getCenteredRoi(camera, new Length(0, LengthUnit.Millimeters)));
+        Rect roi = VisionUtils.getCenteredRoi(camera, new Length(100, LengthUnit.Millimeters));
+        Assert.assertEquals(new Rect(270, 190, 100, 100), roi);
+        // Larger than the image is clamped to the image.
+        Assert.assertEquals(new Rect(0, 0, 640, 480),
+                VisionUtils.getCenteredRoi(camera, new Length(1000, LengthUnit.Millimeters)));
+        // Pixel coordinates within the roi map back to the same offsets as the full image.
+        Assert.assertEquals(VisionUtils.getPixelCenterOffsets(camera, 300, 200),
+                VisionUtils.getPixelCenterOffsets(camera, roi, 30, 10));
+        Assert.assertEquals(VisionUtils.getPixelLocation(camera, 300, 200),
+                VisionUtils.getPixelLocation(camera, roi, 30, 10));
+    }
+
+    /**
+     * Checks that an roi that extends past the edge of the frame is clamped by ImageCapture, and
+     * that mapping back with the captured region gives the same Locations as the full frame.
+     */
+    @Test
+    public void testRoiPastFrameEdge() throws Exception {
+        Camera camera = new TestCamera() {
+            @Override
+            public BufferedImage capture() {
+                return new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+            }
+        };
+        Assert.assertEquals(new Rect(600, 400, 40, 80),
+                VisionUtils.clampRoi(new Rect(600, 400, 100, 100), 640, 480));
+        Assert.assertNull(VisionUtils.clampRoi(new Rect(-10, -10, 700, 500), 640, 480));
+        Assert.assertNull(VisionUtils.clampRoi(new Rect(700, 0, 100, 100), 640, 480));
+
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add(new ImageCapture());
+        pipeline.setProperty("camera", camera);
+        pipeline.setProperty("roi", new Rect(600, 400, 100, 100));
+        pipeline.process();
+        Assert.assertEquals(40, pipeline.getWorkingImage().cols());
+        Assert.assertEquals(80, pipeline.getWorkingImage().rows());
+        Rect roi = ImageCapture.getCapturedRoi(pipeline);
+        Assert.assertEquals(new Rect(600, 400, 40, 80), roi);
+        Assert.assertEquals(VisionUtils.getPixelLocation(camera, 630, 470),
+                VisionUtils.getPixelLocation(camera, roi, 30, 70));
+
+        pipeline.setProperty("roi", null);
+        pipeline.process();
+        Assert.assertNull(ImageCapture.getCapturedRoi(pipeline));
+    }
+
     static class TestCamera implements Camera {
         protected Head head;
 